@@ -0,0 +1,18 @@
+package com.fishdishiot.iot.config;
+
+import com.fishdishiot.iot.util.BlockingTaskExecutor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 阻塞任务执行器，按 {@link ExecutionProperties} 选择虚拟线程或平台线程池
+ */
+@Configuration
+public class ExecutionConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public BlockingTaskExecutor blockingTaskExecutor(ExecutionProperties properties) {
+        return new BlockingTaskExecutor("Blocking-Task", properties.getMode(), properties.getPlatformPoolSize(),
+                properties.getPlatformQueueCapacity());
+    }
+}
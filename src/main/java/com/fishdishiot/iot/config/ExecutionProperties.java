@@ -0,0 +1,25 @@
+package com.fishdishiot.iot.config;
+
+import com.fishdishiot.iot.util.BlockingTaskExecutor;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 阻塞流程（手动控制等待总线、延时关闭等）的执行方式配置
+ * mode=auto 时在支持虚拟线程的 JDK 上使用虚拟线程，否则使用固定大小的平台线程池。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "execution")
+public class ExecutionProperties {
+
+    /** 执行模式：auto / virtual / platform */
+    private String mode = BlockingTaskExecutor.MODE_AUTO;
+
+    /** 平台线程池大小（platform 模式或回退时使用） */
+    private int platformPoolSize = 16;
+
+    /** 平台线程池队列容量，队列满时由提交线程自己执行 */
+    private int platformQueueCapacity = 1000;
+}
@@ -0,0 +1,49 @@
+package com.fishdishiot.iot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 采集数据处理流水线配置
+ * 每个阶段有独立的工作线程和有界队列；同一设备的数据固定由同一个工作线程处理，
+ * 预警去重和自动调节的防抖依赖按顺序处理，这两个阶段默认只用一个工作线程。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ingest")
+public class IngestProperties {
+
+    /** 入库 */
+    private Stage persist = new Stage(2, 1024);
+
+    /** MQTT推送 */
+    private Stage publish = new Stage(1, 1024);
+
+    /** 预警检查 */
+    private Stage alert = new Stage(1, 1024);
+
+    /** 自适应轮询和自动调节策略 */
+    private Stage control = new Stage(1, 256);
+
+    /** 停止时等待队列处理完的时间 */
+    private long shutdownTimeoutMs = 5000;
+
+    @Data
+    public static class Stage {
+
+        /** 工作线程数 */
+        private int workers;
+
+        /** 每个工作线程的队列容量，满时丢弃最旧的数据 */
+        private int capacity;
+
+        public Stage() {
+        }
+
+        public Stage(int workers, int capacity) {
+            this.workers = workers;
+            this.capacity = capacity;
+        }
+    }
+}
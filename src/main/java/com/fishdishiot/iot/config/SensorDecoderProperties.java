@@ -0,0 +1,76 @@
+package com.fishdishiot.iot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 传感器型号解码配置
+ * 每个型号声明响应数据区中各寄存器对应的参数，新增传感器型号只需增加配置。
+ * 设备使用的型号：devices 中按设备ID指定；未指定时按设备类型在 device-types 列出的型号中依次尝试，
+ * 取第一个从站地址和帧长度都符合的型号；设备类型也没有配置时使用 default-model。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sensor-decoder")
+public class SensorDecoderProperties {
+
+    /** 型号名称 -> 型号 */
+    private Map<String, Model> models = new LinkedHashMap<>();
+
+    /** 设备类型ID -> 依次尝试的型号 */
+    private Map<String, List<String>> deviceTypes = new HashMap<>();
+
+    /** 设备ID -> 型号 */
+    private Map<Long, String> devices = new HashMap<>();
+
+    /** 设备类型没有配置型号时使用的型号 */
+    private String defaultModel = "raw";
+
+    @Data
+    public static class Model {
+
+        /** 限定的从站地址，按设备类型推断型号时使用，为空表示不限定 */
+        private Integer slaveAddress;
+
+        /** 是否输出整帧的十六进制原始数据（raw_data） */
+        private boolean raw;
+
+        /** 字段 */
+        private List<Field> fields = new ArrayList<>();
+    }
+
+    @Data
+    public static class Field {
+
+        /** 参数名 */
+        private String name;
+
+        /** 同一个值的其他参数名 */
+        private List<String> aliases = new ArrayList<>();
+
+        /** 在响应数据区中的寄存器偏移，第一个寄存器为 0 */
+        private int register;
+
+        /** 数据类型：u16 / s16 / u32 / s32 */
+        private String type = "u16";
+
+        /** 缩放系数，如 0.1 */
+        private double scale = 1.0;
+
+        /** 小数位数所在寄存器的偏移，值再除以 10 的该次方，为空表示没有 */
+        private Integer decimalRegister;
+
+        /** 枚举值的标签，按原始值下标输出 */
+        private List<String> labels = new ArrayList<>();
+
+        /** 原始值超出标签范围时的输出 */
+        private String unknownLabel = "未知";
+    }
+}
@@ -0,0 +1,316 @@
+package com.fishdishiot.iot.config;
+
+import com.fishdishiot.iot.util.SerialTaskPriority;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 串口总线配置
+ * 未配置 serial.buses 时，使用 serial.port-name / serial.baud-rate 作为唯一的默认总线。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "serial")
+public class SerialBusProperties {
+
+    /** 默认总线名称 */
+    public static final String DEFAULT_BUS = "default";
+
+    /** 串口传输方式：物理串口 */
+    public static final String TRANSPORT_SERIAL = "serial";
+
+    /** 串口传输方式：内存中的虚拟 Modbus 总线 */
+    public static final String TRANSPORT_VIRTUAL = "virtual";
+
+    /** 默认串口名称（单总线模式） */
+    private String portName;
+
+    /** 默认波特率 */
+    private int baudRate = 9600;
+
+    /** 默认传输方式（单总线模式）：serial 物理串口，virtual 虚拟总线 */
+    private String transport = TRANSPORT_SERIAL;
+
+    /** 默认虚拟总线参数（单总线模式，transport=virtual 时生效） */
+    private Virtual virtual = new Virtual();
+
+    /** 等待响应首字节的超时时间 */
+    private int responseTimeoutMs = 500;
+
+    /** 字符间超时：收到部分数据后，超过该时间没有新字节即认为帧结束 */
+    private int interCharTimeoutMs = 20;
+
+    /** 一次 Modbus 事务（含重试）的默认超时预算 */
+    private int transactionTimeoutMs = 1500;
+
+    /** 超时、CRC错误或响应不匹配时的重试次数 */
+    private int retries = 2;
+
+    /** 按设备覆盖的事务超时预算：设备ID -> 毫秒 */
+    private Map<Long, Integer> deviceTimeoutMs = new HashMap<>();
+
+    /** 按周转时间自适应等待响应时的下限余量 */
+    private int minResponseTimeoutMs = 50;
+
+    /** 可选：按设备覆盖的固定指令间隔，设备ID -> 毫秒（默认只保留 3.5 字符的帧间静默） */
+    private Map<Long, Integer> deviceGapMs = new HashMap<>();
+
+    /** 传感器默认轮询间隔 */
+    private int pollIntervalMs = 5000;
+
+    /** 按设备覆盖的轮询间隔：设备ID -> 毫秒 */
+    private Map<Long, Integer> devicePollIntervalMs = new HashMap<>();
+
+    /** 是否按设备ID把各传感器的轮询相位均匀错开在整个周期内（关闭时所有计划在启动时同时开始） */
+    private boolean pollPhaseSpread = true;
+
+    /** 每轮轮询随机推迟的上限，0 表示不抖动 */
+    private int pollJitterMs = 0;
+
+    /** 即时读取允许的最长等待时间（含排队） */
+    private long readNowMaxTimeoutMs = 30000;
+
+    /** 自适应轮询：按读数变化快慢和与阈值的距离调整每个传感器的轮询间隔 */
+    private AdaptivePoll adaptivePoll = new AdaptivePoll();
+
+    /** 传感器熔断：连续无响应的设备暂停轮询，按指数退避探测 */
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /** 每条总线各优先级指令队列的容量 */
+    private QueueCapacity queueCapacity = new QueueCapacity();
+
+    /** 总线容量规划：预计利用率超过上限时的准入策略 */
+    private Capacity capacity = new Capacity();
+
+    /** 串口看门狗：检测串口丢失后暂停总线、按退避重新打开并恢复 */
+    private Watchdog watchdog = new Watchdog();
+
+    /** 收发帧抓包 */
+    private Capture capture = new Capture();
+
+    /** 开关控制指令 */
+    private Control control = new Control();
+
+    /** 是否合并同一从站上寄存器相邻的读请求 */
+    private boolean coalesceReads = true;
+
+    /** 合并读取允许的最大寄存器间隔（间隔中的寄存器会被一并读取后丢弃），0 表示只合并相邻或重叠的范围 */
+    private int coalesceMaxGap = 0;
+
+    /** 多总线配置，每条 RS-485 线路一项 */
+    private List<Bus> buses = new ArrayList<>();
+
+    @Data
+    public static class Bus {
+
+        /** 总线名称 */
+        private String name;
+
+        /** 串口名称，如 COM3、/dev/ttyUSB0 */
+        private String portName;
+
+        /** 波特率，为空时使用 serial.baud-rate */
+        private Integer baudRate;
+
+        /** 挂在该总线上的设备ID */
+        private List<Long> deviceIds = new ArrayList<>();
+
+        /** 传输方式，为空时使用 serial.transport */
+        private String transport;
+
+        /** 虚拟总线参数，为空时使用 serial.virtual */
+        private Virtual virtual;
+    }
+
+    /**
+     * 虚拟 Modbus 总线参数，用于在没有串口硬件的机器上压测
+     */
+    @Data
+    public static class Virtual {
+
+        /** 从站处理时间（请求收完到开始回复） */
+        private int latencyMs = 20;
+
+        /** 处理时间的随机抖动上限 */
+        private int jitterMs = 0;
+
+        /** 出错概率（0~1），一半模拟无响应，一半模拟CRC错误 */
+        private double errorRate = 0.0;
+
+        /** 在线的从站地址，为空表示 1~247 全部在线 */
+        private Set<Integer> slaves = new HashSet<>();
+
+        /** 寄存器初值：寄存器地址 -> 值，未配置的寄存器返回由从站地址和寄存器地址决定的固定值 */
+        private Map<Integer, Integer> registers = new HashMap<>();
+    }
+
+    /**
+     * 自适应轮询参数
+     * 读数平稳时间隔逐步放大到 maxIntervalMs；读数变化快、临近阈值或策略条件值、或按当前趋势即将越过时缩短间隔。
+     * “量程”取阈值上下限之差，只有单侧阈值或策略条件值时取其绝对值，都没有时取读数本身的绝对值（不小于1）。
+     */
+    @Data
+    public static class AdaptivePoll {
+
+        /** 是否启用，关闭时所有传感器按固定间隔轮询 */
+        private boolean enabled = false;
+
+        /** 最短轮询间隔 */
+        private int minIntervalMs = 1000;
+
+        /** 最长轮询间隔 */
+        private int maxIntervalMs = 60000;
+
+        /** 读数平稳时每轮间隔放大的倍数 */
+        private double backoffFactor = 1.5;
+
+        /** 相邻两次读数变化超过量程的该比例时视为快速变化，间隔减半 */
+        private double changeRatio = 0.02;
+
+        /** 读数与阈值或策略条件值的距离不超过量程的该比例时视为临近，使用最短间隔 */
+        private double proximityRatio = 0.1;
+
+        /** 按当前变化趋势预计越过阈值前，至少要采样的次数 */
+        private int samplesBeforeCrossing = 4;
+
+        /** 阈值配置和自动调节策略的缓存刷新间隔 */
+        private int watchRefreshMs = 60000;
+    }
+
+    /**
+     * 传感器熔断参数
+     */
+    @Data
+    public static class CircuitBreaker {
+
+        /** 是否启用 */
+        private boolean enabled = true;
+
+        /** 连续多少次无响应或响应无效后熔断 */
+        private int failureThreshold = 3;
+
+        /** 熔断后首次探测的等待时间 */
+        private long initialBackoffMs = 10000;
+
+        /** 探测等待时间上限 */
+        private long maxBackoffMs = 300000;
+
+        /** 每次探测失败后等待时间的增长倍数 */
+        private double backoffMultiplier = 2.0;
+    }
+
+    /**
+     * 指令队列容量：控制指令队列满时拒绝新指令并返回错误，轮询队列满时丢弃最旧的轮询
+     */
+    @Data
+    public static class QueueCapacity {
+
+        /** 人工操作 */
+        private int interactive = 32;
+
+        /** 自动调节 */
+        private int autoControl = 64;
+
+        /** 后台轮询（同一设备只保留一个在排队，容量通常只需不小于该总线上的读取计划数） */
+        private int polling = 256;
+
+        public Map<SerialTaskPriority, Integer> toMap() {
+            Map<SerialTaskPriority, Integer> map = new EnumMap<>(SerialTaskPriority.class);
+            map.put(SerialTaskPriority.INTERACTIVE, interactive);
+            map.put(SerialTaskPriority.AUTO_CONTROL, autoControl);
+            map.put(SerialTaskPriority.POLLING, polling);
+            return map;
+        }
+    }
+
+    /**
+     * 总线容量规划：按轮询间隔和每次事务占用总线的时间计算预计利用率和最坏数据陈旧度
+     */
+    @Data
+    public static class Capacity {
+
+        /** 预计利用率超过该值时告警 */
+        private double warnUtilization = 0.7;
+
+        /** 预计利用率上限，超过后新加入的传感器按 admission 处理 */
+        private double maxUtilization = 0.9;
+
+        /** 超过上限时的准入策略：warn 只告警仍然调度，refuse 拒绝调度新加入的传感器 */
+        private String admission = "warn";
+
+        /** 没有实测数据时估算事务耗时使用的从站处理时间 */
+        private int assumedTurnaroundMs = 20;
+
+        /** 设备至少有多少次事务记录才使用实测耗时 */
+        private int minSamples = 5;
+    }
+
+    /**
+     * 串口看门狗：写入失败、串口断开事件或连续读取无数据时认为串口丢失
+     */
+    @Data
+    public static class Watchdog {
+
+        /** 是否启用 */
+        private boolean enabled = true;
+
+        /** 检查间隔 */
+        private long checkIntervalMs = 1000;
+
+        /** 连续多少次读取无数据视为串口丢失，0 表示不按读取判断（总线上的设备可能确实都离线） */
+        private int emptyReadThreshold = 30;
+
+        /**
+         * 只有在这段时间内总线上有设备应答过，连续读取无数据才视为串口丢失；
+         * 总线上的设备长时间都没有应答（如唯一的传感器离线）时按设备离线处理，不反复重开串口
+         */
+        private long emptyReadAnsweredWithinMs = 60000;
+
+        /** 首次重新打开失败后的等待时间 */
+        private long initialBackoffMs = 1000;
+
+        /** 重新打开的等待时间上限 */
+        private long maxBackoffMs = 30000;
+    }
+
+    /**
+     * 开关控制指令：默认只写入、写入成功即视为成功（兼容非标准帧和不回显的继电器）
+     */
+    @Data
+    public static class Control {
+
+        /**
+         * 需要回显确认的设备ID：这些设备的开关指令必须是CRC正确的 Modbus 帧，
+         * 其中标准写指令（05/06/0F/10）收到匹配的回显才算成功，其它功能码仍只写入
+         */
+        private Set<Long> confirmDeviceIds = new HashSet<>();
+    }
+
+    /**
+     * 收发帧抓包：每次事务尝试的请求帧和响应帧以二进制追加写入抓包文件，用于排查解析问题和回放
+     */
+    @Data
+    public static class Capture {
+
+        /** 是否启用 */
+        private boolean enabled = false;
+
+        /** 抓包文件目录 */
+        private String directory = "capture";
+
+        /** 单个文件大小（MB），写满后换新文件 */
+        private int fileSizeMb = 64;
+
+        /** 保留的文件数，超过后删除最旧的 */
+        private int maxFiles = 16;
+    }
+}
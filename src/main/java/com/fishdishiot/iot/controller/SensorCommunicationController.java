@@ -1,17 +1,32 @@
 package com.fishdishiot.iot.controller;
 
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import com.fishdishiot.iot.service.AdaptivePollingService;
+import com.fishdishiot.iot.service.FrameReplayService;
+import com.fishdishiot.iot.service.IngestPipeline;
 import com.fishdishiot.iot.service.SensorCommunicationService;
-import com.fishdishiot.iot.service.SerialPortService;
+import com.fishdishiot.iot.service.SerialBus;
+import com.fishdishiot.iot.service.SerialBusManager;
+import com.fishdishiot.iot.service.SerialPortWatchdog;
+import com.fishdishiot.iot.util.BlockingTaskExecutor;
+import com.fishdishiot.iot.util.FrameCaptureLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 传感器通信控制器
@@ -27,7 +42,22 @@ public class SensorCommunicationController {
     private SensorCommunicationService sensorCommunicationService;
 
     @Autowired
-    private SerialPortService serialPortService;
+    private BlockingTaskExecutor blockingTaskExecutor;
+
+    @Autowired
+    private AdaptivePollingService adaptivePollingService;
+
+    @Autowired
+    private SerialBusManager serialBusManager;
+
+    @Autowired
+    private SerialPortWatchdog serialPortWatchdog;
+
+    @Autowired
+    private FrameReplayService frameReplayService;
+
+    @Autowired
+    private IngestPipeline ingestPipeline;
 
     /**
      * 获取传感器任务状态
@@ -36,11 +66,150 @@ public class SensorCommunicationController {
     public Map<String, Object> getSensorStatus() {
         Map<String, Object> result = new HashMap<>();
         result.put("sensorTasks", sensorCommunicationService.getSensorTaskStatus());
-        result.put("serialPortStatus", serialPortService.getPortStatus());
-        result.put("serialPortConnected", serialPortService.isConnected());
+        result.put("breakers", sensorCommunicationService.getBreakerSummary());
+        result.put("pollSchedule", sensorCommunicationService.getPollSchedule());
+        result.put("adaptivePoll", adaptivePollingService.getStats());
+        result.put("execution", blockingTaskExecutor.getStats());
+        result.put("ingest", ingestPipeline.getStats());
+        result.put("serialPortStatus", serialBusManager.getDefaultBus().getPort().getPortStatus());
+        result.put("serialPortConnected", serialBusManager.getDefaultBus().getPort().isConnected());
+        result.put("buses", serialBusManager.getBusStatus());
+        result.put("watchdog", serialPortWatchdog.getStatus());
+        return result;
+    }
+
+    /**
+     * 获取串口总线运行指标
+     * @param bus 总线名称，为空时返回所有总线
+     * @param deviceId 设备ID，指定时只返回该设备的指标
+     * @param devices 是否包含每个设备的明细
+     */
+    @GetMapping("/metrics")
+    public Map<String, Object> getBusMetrics(@RequestParam(required = false) String bus,
+                                             @RequestParam(required = false) Long deviceId,
+                                             @RequestParam(defaultValue = "false") boolean devices) {
+        Map<String, Object> result = new HashMap<>();
+        if (deviceId != null) {
+            result.put("deviceId", deviceId);
+            result.put("bus", serialBusManager.getBusForDevice(deviceId).getName());
+            result.put("metrics", serialBusManager.getDeviceMetrics(deviceId));
+            return result;
+        }
+        result.put("buses", serialBusManager.getBusMetrics(bus, devices));
         return result;
     }
 
+    /**
+     * 立即读取一个传感器并返回解析后的数据
+     * 同一设备的并发请求和正在进行的轮询共享同一次总线事务，多个页面同时刷新不会放大总线负载。
+     * @param deviceId 传感器ID
+     * @param timeoutMs 最长等待时间（含排队）
+     */
+    @GetMapping("/read")
+    public Map<String, Object> readSensor(@RequestParam Long deviceId,
+                                          @RequestParam(defaultValue = "5000") long timeoutMs) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.putAll(sensorCommunicationService.readNow(deviceId, timeoutMs));
+        } catch (IllegalArgumentException | RejectedExecutionException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (TimeoutException e) {
+            result.put("success", false);
+            result.put("message", "读取超时（" + timeoutMs + " ms）");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("success", false);
+            result.put("message", "读取被中断");
+        } catch (Exception e) {
+            log.error("Failed to read sensor {}", deviceId, e);
+            result.put("success", false);
+            result.put("message", "读取失败: " + e.getMessage());
+        }
+        result.put("deviceId", deviceId);
+        return result;
+    }
+
+    /**
+     * 获取各总线的容量报告：预计利用率、每个读取计划的事务耗时和最坏数据陈旧度
+     */
+    @GetMapping("/capacity")
+    public Map<String, Object> getCapacityReport() {
+        return sensorCommunicationService.getCapacityReport();
+    }
+
+    /**
+     * 容量预检：在录入设备或安装硬件之前，计算加入该传感器后所在总线的预计利用率和最坏数据陈旧度
+     * @param device 待加入的设备（至少包含采集指令 sensorCommand）
+     * @param bus 所在总线，为空时按设备ID的映射
+     * @param intervalMs 轮询间隔，为空时使用配置的间隔
+     */
+    @PostMapping("/capacity/check")
+    public Map<String, Object> checkCapacity(@RequestBody AgricultureDevice device,
+                                             @RequestParam(required = false) String bus,
+                                             @RequestParam(required = false) Long intervalMs) {
+        return sensorCommunicationService.checkCapacity(device, bus, intervalMs);
+    }
+
+    /**
+     * 抓包状态和抓包目录中的文件
+     */
+    @GetMapping("/capture")
+    public Map<String, Object> getCaptureStatus() {
+        Map<String, Object> result = new HashMap<>();
+        FrameCaptureLog captureLog = serialBusManager.getCaptureLog();
+        result.put("capture", captureLog != null ? captureLog.getStats() : null);
+        try {
+            result.put("files", frameReplayService.listCaptures());
+        } catch (IOException e) {
+            log.error("Failed to list capture files", e);
+            result.put("message", "列出抓包文件失败: " + e.getMessage());
+        }
+        result.put("replay", frameReplayService.getStatus());
+        return result;
+    }
+
+    /**
+     * 回放抓包文件：把录制的响应帧重新解析，默认只解析不入库
+     * @param file 抓包文件名，为空时回放目录中的全部文件
+     * @param speed 回放倍速，1 为按录制节奏，0 为尽可能快
+     * @param decodeOnly 只解析不入库；为 false 时读数进入生产的入库、推送和预警阶段
+     */
+    @PostMapping("/replay")
+    public Map<String, Object> startReplay(@RequestParam(required = false) String file,
+                                           @RequestParam(defaultValue = "1") double speed,
+                                           @RequestParam(defaultValue = "true") boolean decodeOnly) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("replay", frameReplayService.start(file, speed, decodeOnly));
+            result.put("success", true);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to start replay", e);
+            result.put("success", false);
+            result.put("message", "开始回放失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 回放进度：已回放的记录数、产生的读数、跳过和出错的记录数以及吞吐量
+     */
+    @GetMapping("/replay")
+    public Map<String, Object> getReplayStatus() {
+        return frameReplayService.getStatus();
+    }
+
+    /**
+     * 停止回放
+     */
+    @PostMapping("/replay/stop")
+    public Map<String, Object> stopReplay() {
+        return frameReplayService.stop();
+    }
+
     /**
      * 重新加载传感器配置
      */
@@ -48,7 +217,7 @@ public class SensorCommunicationController {
     public Map<String, Object> reloadSensorConfig() {
         Map<String, Object> result = new HashMap<>();
         try {
-            sensorCommunicationService.reloadSensorConfig();
+            result.put("summary", sensorCommunicationService.reloadSensorConfig());
             result.put("success", true);
             result.put("message", "传感器配置重新加载成功");
         } catch (Exception e) {
@@ -65,21 +234,41 @@ public class SensorCommunicationController {
     @GetMapping("/serial/status")
     public Map<String, Object> getSerialPortStatus() {
         Map<String, Object> result = new HashMap<>();
-        result.put("status", serialPortService.getPortStatus());
-        result.put("connected", serialPortService.isConnected());
+        result.put("status", serialBusManager.getDefaultBus().getPort().getPortStatus());
+        result.put("connected", serialBusManager.getDefaultBus().getPort().isConnected());
+        result.put("buses", serialBusManager.getBusStatus());
+        result.put("watchdog", serialPortWatchdog.getStatus());
         return result;
     }
 
     /**
-     * 重新连接串口
+     * 重新连接串口：经串口看门狗暂停总线、重新打开串口并恢复，打开失败时由看门狗继续重连
+     * @param bus 总线名称，为空时重连所有总线
      */
     @PostMapping("/serial/reconnect")
-    public Map<String, Object> reconnectSerialPort() {
+    public Map<String, Object> reconnectSerialPort(@RequestParam(required = false) String bus) {
         Map<String, Object> result = new HashMap<>();
+        List<String> failed = new ArrayList<>();
         try {
-            serialPortService.connect();
-            result.put("success", true);
-            result.put("message", "串口重新连接成功");
+            if (bus != null) {
+                SerialBus target = serialBusManager.getBus(bus);
+                if (target == null) {
+                    result.put("success", false);
+                    result.put("message", "总线不存在: " + bus);
+                    return result;
+                }
+                if (!serialPortWatchdog.reconnect(target)) {
+                    failed.add(target.getName());
+                }
+            } else {
+                for (SerialBus target : serialBusManager.getBuses()) {
+                    if (!serialPortWatchdog.reconnect(target)) {
+                        failed.add(target.getName());
+                    }
+                }
+            }
+            result.put("success", failed.isEmpty());
+            result.put("message", failed.isEmpty() ? "串口重新连接成功" : "串口重新连接失败: " + failed);
         } catch (Exception e) {
             log.error("Failed to reconnect serial port", e);
             result.put("success", false);
@@ -0,0 +1,289 @@
+package com.fishdishiot.iot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fishdishiot.iot.config.SerialBusProperties;
+import com.fishdishiot.iot.domain.AgricultureAutoControlStrategy;
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import com.fishdishiot.iot.domain.AgricultureThresholdConfig;
+import com.fishdishiot.iot.util.ParamIndex;
+import com.fishdishiot.iot.util.SensorReading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 自适应轮询服务
+ * 根据每次采集到的读数计算传感器下一轮的轮询间隔：
+ * <ul>
+ *     <li>读数临近阈值配置（AgricultureThresholdConfig）的上下限或自动调节策略的条件值：使用最短间隔</li>
+ *     <li>按当前变化趋势预计很快越过上述值：间隔不超过预计时间 / samplesBeforeCrossing</li>
+ *     <li>读数变化快：间隔减半</li>
+ *     <li>读数平稳：间隔按 backoffFactor 逐步放大，直到最长间隔</li>
+ * </ul>
+ * 阈值和策略按 watchRefreshMs 缓存，计算本身不访问数据库。
+ */
+@Service
+public class AdaptivePollingService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePollingService.class);
+
+    @Autowired
+    private SerialBusProperties serialBusProperties;
+
+    @Autowired
+    private AgricultureThresholdConfigService thresholdConfigService;
+
+    @Autowired
+    private AgricultureAutoControlStrategyService strategyService;
+
+    /** 设备ID -> 自适应状态 */
+    private final Map<Long, DeviceState> states = new ConcurrentHashMap<>();
+
+    /** 缓存的阈值配置：设备ID -> (参数 -> 配置) */
+    private volatile Map<Long, Map<String, AgricultureThresholdConfig>> thresholds = Collections.emptyMap();
+
+    /** 缓存的启用策略 */
+    private volatile List<AgricultureAutoControlStrategy> strategies = Collections.emptyList();
+
+    private volatile long watchesLoadedAt;
+
+    public boolean isEnabled() {
+        return serialBusProperties.getAdaptivePoll().isEnabled();
+    }
+
+    /**
+     * 获取设备当前的自适应间隔
+     * @param deviceId 设备ID
+     * @param baseIntervalMs 固定间隔，设备还没有读数或未启用自适应时使用
+     */
+    public long getIntervalMs(Long deviceId, long baseIntervalMs) {
+        if (!isEnabled()) {
+            return baseIntervalMs;
+        }
+        DeviceState state = states.get(deviceId);
+        return state != null ? state.intervalMs : clamp(baseIntervalMs);
+    }
+
+    /**
+     * 根据一次成功采集的读数计算设备下一轮的轮询间隔
+     * @param sensor 传感器
+     * @param reading 本次读数
+     * @param baseIntervalMs 固定间隔
+     * @return 新的间隔（毫秒）
+     */
+    public long evaluate(AgricultureDevice sensor, SensorReading reading, long baseIntervalMs) {
+        SerialBusProperties.AdaptivePoll config = serialBusProperties.getAdaptivePoll();
+        refreshWatchesIfStale(config);
+        long now = reading.getTimestamp();
+        DeviceState state = states.computeIfAbsent(sensor.getId(), k -> new DeviceState(clamp(baseIntervalMs)));
+        synchronized (state) {
+            state.baseIntervalMs = baseIntervalMs;
+            boolean near = false;
+            boolean fast = false;
+            double crossingLimitMs = Double.MAX_VALUE;
+            String reason = null;
+            Map<String, AgricultureThresholdConfig> deviceThresholds = thresholds.get(sensor.getId());
+            for (int index = reading.nextValid(0); index >= 0; index = reading.nextValid(index + 1)) {
+                // 只看传感器实际测得的值，补充的模拟值不反映水质变化
+                if (!reading.isMeasured(index)) {
+                    continue;
+                }
+                String param = ParamIndex.name(index);
+                double value = reading.get(index);
+                AgricultureThresholdConfig threshold = deviceThresholds != null ? deviceThresholds.get(param) : null;
+                List<Double> watches = watchValues(sensor, param, threshold);
+                double scale = scale(threshold, watches, value);
+
+                for (Double watch : watches) {
+                    if (Math.abs(value - watch) <= config.getProximityRatio() * scale) {
+                        near = true;
+                        reason = "临近阈值: " + param + "=" + value + "，阈值/条件值 " + watch;
+                    }
+                }
+
+                ParamState previous = state.params.get(param);
+                if (previous != null && now > previous.timeMs) {
+                    double delta = value - previous.value;
+                    if (Math.abs(delta) > config.getChangeRatio() * scale) {
+                        fast = true;
+                        if (reason == null) {
+                            reason = "变化较快: " + param + " " + previous.value + " -> " + value;
+                        }
+                    }
+                    double slopePerMs = delta / (now - previous.timeMs);
+                    for (Double watch : watches) {
+                        double crossingMs = slopePerMs != 0 ? (watch - value) / slopePerMs : -1;
+                        if (crossingMs > 0 && crossingMs / config.getSamplesBeforeCrossing() < crossingLimitMs) {
+                            crossingLimitMs = crossingMs / config.getSamplesBeforeCrossing();
+                            if (!near) {
+                                reason = "趋近阈值: " + param + " 预计 " + (long) (crossingMs / 1000) + " 秒后达到 " + watch;
+                            }
+                        }
+                    }
+                }
+                state.params.put(param, new ParamState(value, now));
+            }
+
+            long next;
+            if (near) {
+                next = config.getMinIntervalMs();
+            } else if (fast) {
+                next = state.intervalMs / 2;
+            } else {
+                next = (long) (state.intervalMs * config.getBackoffFactor());
+                if (reason == null) {
+                    reason = "读数平稳";
+                }
+            }
+            next = clamp((long) Math.min(next, crossingLimitMs));
+            if (next != state.intervalMs) {
+                log.debug("设备 {} 轮询间隔 {} ms -> {} ms（{}）", sensor.getId(), state.intervalMs, next, reason);
+            }
+            state.intervalMs = next;
+            state.reason = reason;
+            return next;
+        }
+    }
+
+    /**
+     * 参数需要关注的值：设备该参数的阈值上下限，以及同一大棚（或未限定大棚）中以该参数为条件的启用策略的条件值
+     */
+    private List<Double> watchValues(AgricultureDevice sensor, String param, AgricultureThresholdConfig threshold) {
+        List<Double> watches = new ArrayList<>();
+        if (threshold != null) {
+            if (threshold.getThresholdMin() != null) {
+                watches.add(threshold.getThresholdMin());
+            }
+            if (threshold.getThresholdMax() != null) {
+                watches.add(threshold.getThresholdMax());
+            }
+        }
+        for (AgricultureAutoControlStrategy strategy : strategies) {
+            if (param.equals(strategy.getParameter()) && strategy.getConditionValue() != null
+                    && (strategy.getPastureId() == null || strategy.getPastureId().isEmpty()
+                    || strategy.getPastureId().equals(sensor.getPastureId()))) {
+                watches.add(strategy.getConditionValue().doubleValue());
+            }
+        }
+        return watches;
+    }
+
+    /**
+     * 量程：阈值上下限之差；只有单侧阈值或策略条件值时取其中最大的绝对值；都没有时取读数的绝对值。不小于 1。
+     */
+    private static double scale(AgricultureThresholdConfig threshold, List<Double> watches, double value) {
+        if (threshold != null && threshold.getThresholdMin() != null && threshold.getThresholdMax() != null
+                && threshold.getThresholdMax() > threshold.getThresholdMin()) {
+            return threshold.getThresholdMax() - threshold.getThresholdMin();
+        }
+        double scale = 1;
+        for (Double watch : watches) {
+            scale = Math.max(scale, Math.abs(watch));
+        }
+        return watches.isEmpty() ? Math.max(1, Math.abs(value)) : scale;
+    }
+
+    private long clamp(long intervalMs) {
+        SerialBusProperties.AdaptivePoll config = serialBusProperties.getAdaptivePoll();
+        return Math.max(config.getMinIntervalMs(), Math.min(config.getMaxIntervalMs(), intervalMs));
+    }
+
+    /**
+     * 阈值配置和策略缓存过期时重新加载；加载失败时沿用旧缓存
+     */
+    private void refreshWatchesIfStale(SerialBusProperties.AdaptivePoll config) {
+        if (System.currentTimeMillis() - watchesLoadedAt < config.getWatchRefreshMs()) {
+            return;
+        }
+        synchronized (this) {
+            if (System.currentTimeMillis() - watchesLoadedAt < config.getWatchRefreshMs()) {
+                return;
+            }
+            try {
+                QueryWrapper<AgricultureThresholdConfig> queryWrapper = new QueryWrapper<>();
+                queryWrapper.eq("is_enabled", 1);
+                Map<Long, Map<String, AgricultureThresholdConfig>> loaded = new HashMap<>();
+                for (AgricultureThresholdConfig threshold : thresholdConfigService.list(queryWrapper)) {
+                    if (threshold.getDeviceId() != null && threshold.getParamType() != null) {
+                        loaded.computeIfAbsent(threshold.getDeviceId(), k -> new HashMap<>()).put(threshold.getParamType(), threshold);
+                    }
+                }
+                thresholds = loaded;
+                strategies = new ArrayList<>(strategyService.getAllActiveStrategies());
+            } catch (Exception e) {
+                log.error("加载阈值配置和自动调节策略失败，沿用上次的缓存: {}", e.getMessage(), e);
+            }
+            watchesLoadedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 设备从采集任务中移除时清理状态
+     */
+    public void forget(Long deviceId) {
+        states.remove(deviceId);
+    }
+
+    /**
+     * 自适应轮询统计：每个设备的当前间隔和原因，以及与固定间隔相比每分钟的轮询次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", isEnabled());
+        double fixedPerMinute = 0;
+        double adaptivePerMinute = 0;
+        Map<Long, Map<String, Object>> devices = new TreeMap<>();
+        for (Map.Entry<Long, DeviceState> entry : states.entrySet()) {
+            DeviceState state = entry.getValue();
+            fixedPerMinute += 60000.0 / state.baseIntervalMs;
+            adaptivePerMinute += 60000.0 / state.intervalMs;
+            Map<String, Object> device = new LinkedHashMap<>();
+            device.put("intervalMs", state.intervalMs);
+            device.put("baseIntervalMs", state.baseIntervalMs);
+            device.put("reason", state.reason);
+            devices.put(entry.getKey(), device);
+        }
+        result.put("fixedPollsPerMinute", Math.round(fixedPerMinute));
+        result.put("adaptivePollsPerMinute", Math.round(adaptivePerMinute));
+        result.put("devices", devices);
+        return result;
+    }
+
+    /**
+     * 单个设备的自适应状态
+     */
+    private static class DeviceState {
+        volatile long intervalMs;
+        volatile long baseIntervalMs;
+        volatile String reason;
+        final Map<String, ParamState> params = new HashMap<>();
+
+        DeviceState(long intervalMs) {
+            this.intervalMs = intervalMs;
+            this.baseIntervalMs = intervalMs;
+        }
+    }
+
+    /**
+     * 参数的上一次读数
+     */
+    private static class ParamState {
+        final double value;
+        final long timeMs;
+
+        ParamState(double value, long timeMs) {
+            this.value = value;
+            this.timeMs = timeMs;
+        }
+    }
+}
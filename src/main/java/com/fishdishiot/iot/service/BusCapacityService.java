@@ -0,0 +1,111 @@
+package com.fishdishiot.iot.service;
+
+import com.fishdishiot.iot.config.SerialBusProperties;
+import com.fishdishiot.iot.util.BusCapacityPlanner;
+import com.fishdishiot.iot.util.ModbusReadPlanner;
+import com.fishdishiot.iot.util.ModbusRequest;
+import com.fishdishiot.iot.util.SerialBusMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 总线容量服务
+ * 为每个读取计划估算一次事务占用总线的时间，交给 {@link BusCapacityPlanner} 计算利用率和最坏陈旧度：
+ * 计划的主设备有足够的事务记录时使用实测值（平均总线占用时间与 p95 响应耗时取大），
+ * 否则按请求帧和预期响应帧的长度、波特率和假定的从站处理时间估算；两种情况都加上执行器的帧间静默或设备固定间隔。
+ */
+@Service
+public class BusCapacityService {
+
+    public static final String ADMISSION_REFUSE = "refuse";
+
+    @Autowired
+    private SerialBusProperties serialBusProperties;
+
+    /**
+     * 一个读取计划的负载
+     * @param bus 所在总线
+     * @param plan 读取计划
+     * @param intervalMs 轮询间隔
+     */
+    public BusCapacityPlanner.PlanLoad load(SerialBus bus, ModbusReadPlanner.ReadPlan plan, long intervalMs) {
+        Long leadId = plan.getMembers().get(0).getDeviceId();
+        List<Long> deviceIds = new ArrayList<>(plan.getMembers().size());
+        for (ModbusReadPlanner.Member member : plan.getMembers()) {
+            deviceIds.add(member.getDeviceId());
+        }
+        double gapMs = bus.getExecutor().getGapNanos(leadId) / 1e6;
+        SerialBusMetrics metrics = bus.getMetrics();
+        if (leadId != null && metrics.deviceTransactions(leadId) >= serialBusProperties.getCapacity().getMinSamples()) {
+            double measuredMs = Math.max(metrics.deviceMeanBusyMillis(leadId), metrics.deviceLatencyMillis(leadId, 0.95));
+            return new BusCapacityPlanner.PlanLoad(leadId, deviceIds, intervalMs, measuredMs + gapMs, "measured");
+        }
+        ModbusRequest request = plan.getRequest();
+        double estimatedMs = BusCapacityPlanner.estimateTransactionMs(request.getFrame().length,
+                BusCapacityPlanner.expectedResponseBytes(request), bus.getPort().getBaudRate(),
+                serialBusProperties.getCapacity().getAssumedTurnaroundMs(), gapMs);
+        return new BusCapacityPlanner.PlanLoad(leadId, deviceIds, intervalMs, estimatedMs, "estimated");
+    }
+
+    /**
+     * 预计利用率，不做响应时间分析（重载时逐个准入计划使用）
+     */
+    public double utilization(List<BusCapacityPlanner.PlanLoad> loads) {
+        double utilization = 0;
+        for (BusCapacityPlanner.PlanLoad load : loads) {
+            utilization += load.getCostMs() / load.getIntervalMs();
+        }
+        return utilization;
+    }
+
+    public double getMaxUtilization() {
+        return serialBusProperties.getCapacity().getMaxUtilization();
+    }
+
+    /**
+     * 超过利用率上限时是否拒绝调度新加入的传感器
+     */
+    public boolean isRefuseOnOverload() {
+        return ADMISSION_REFUSE.equalsIgnoreCase(serialBusProperties.getCapacity().getAdmission());
+    }
+
+    /**
+     * 分析一条总线，并按配置的告警线和上限给出结论
+     * @return 分析结果，status 为 OK / WARN / OVERLOADED
+     */
+    public Map<String, Object> report(SerialBus bus, List<BusCapacityPlanner.PlanLoad> loads) {
+        BusCapacityPlanner.BusReport busReport = BusCapacityPlanner.analyze(bus.getName(), loads);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", status(busReport.getUtilization()));
+        result.put("baudRate", bus.getPort().getBaudRate());
+        result.putAll(busReport.toMap());
+        return result;
+    }
+
+    private String status(double utilization) {
+        SerialBusProperties.Capacity capacity = serialBusProperties.getCapacity();
+        if (utilization > capacity.getMaxUtilization()) {
+            return "OVERLOADED";
+        }
+        return utilization > capacity.getWarnUtilization() ? "WARN" : "OK";
+    }
+
+    /**
+     * 容量配置，随报告一起返回
+     */
+    public Map<String, Object> getLimits() {
+        SerialBusProperties.Capacity capacity = serialBusProperties.getCapacity();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("warnUtilization", capacity.getWarnUtilization());
+        result.put("maxUtilization", capacity.getMaxUtilization());
+        result.put("admission", capacity.getAdmission());
+        result.put("assumedTurnaroundMs", capacity.getAssumedTurnaroundMs());
+        result.put("minSamples", capacity.getMinSamples());
+        return result;
+    }
+}
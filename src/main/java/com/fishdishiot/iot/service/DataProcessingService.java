@@ -1,6 +1,6 @@
 package com.fishdishiot.iot.service;
 
-import java.util.Map;
+import com.fishdishiot.iot.util.SensorReading;
 
 public interface DataProcessingService {
 //    /**
@@ -11,8 +11,31 @@ public interface DataProcessingService {
 //    void processAndStore(byte[] data);
 
     /**
-     * 处理Map类型的数据，这是由SensorCommunicationService调用的主要方法。
-     * @param parsedData 从传感器通信服务传递过来的，已解析的数据Map
+     * 在调用方线程中依次完成一次读数的全部处理（补充指标、入库、推送、预警、自动调节）。
+     * 采集流程通过 IngestPipeline 分阶段异步处理，不直接调用该方法。
+     * @param reading 已解析的读数
      */
-    void processAndStore(Map<String, Object> parsedData);
+    void processAndStore(SensorReading reading);
+
+    /**
+     * 补充传感器没有的指标（水质暂用模拟值）。读数交给各处理阶段之前调用，之后读数不再修改。
+     */
+    void prepare(SensorReading reading);
+
+    /**
+     * 按数据类型保存到对应的表
+     * @return 保存的实体，不入库的类型返回 null
+     */
+    Object persist(SensorReading reading);
+
+    /**
+     * 推送到设备专属的MQTT主题
+     * @param entity {@link #persist} 保存的实体，为 null 时推送读数本身
+     */
+    void publish(SensorReading reading, Object entity);
+
+    /**
+     * 检查读数中各项指标是否需要预警
+     */
+    void checkAlerts(SensorReading reading);
 }
\ No newline at end of file
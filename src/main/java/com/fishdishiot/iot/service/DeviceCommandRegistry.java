@@ -0,0 +1,95 @@
+package com.fishdishiot.iot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fishdishiot.iot.config.SerialBusProperties;
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import com.fishdishiot.iot.util.DeviceCommandSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备指令注册表
+ * 采集、手动控制、自动调节共用的已编译指令缓存。每台设备的指令只在首次使用或设备行的指令配置变化时编译一次，
+ * 之后直接复用不可变的请求帧；配置错误在加载时就记录日志，而不是等到发送到总线上才发现。
+ */
+@Service
+public class DeviceCommandRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceCommandRegistry.class);
+
+    @Autowired
+    private AgricultureDeviceService deviceService;
+
+    @Autowired
+    private SerialBusProperties serialBusProperties;
+
+    private final Map<Long, DeviceCommandSet> commandSets = new ConcurrentHashMap<>();
+
+    /**
+     * 应用启动后预编译所有配置了指令的设备
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            List<AgricultureDevice> devices = deviceService.list(new QueryWrapper<AgricultureDevice>()
+                    .isNotNull("sensor_command").or().isNotNull("command_on").or().isNotNull("command_off"));
+            int invalid = 0;
+            for (AgricultureDevice device : devices) {
+                if (get(device).hasErrors()) {
+                    invalid++;
+                }
+            }
+            log.info("设备指令预编译完成，共 {} 台设备，其中 {} 台存在无效指令", devices.size(), invalid);
+        } catch (Exception e) {
+            log.error("设备指令预编译失败", e);
+        }
+    }
+
+    /**
+     * 获取设备的已编译指令。设备行的指令配置与缓存一致时直接返回缓存，否则重新编译并替换缓存。
+     * @param device 设备行
+     * @return 指令集
+     */
+    public DeviceCommandSet get(AgricultureDevice device) {
+        boolean confirmEcho = isConfirmEcho(device.getId());
+        DeviceCommandSet cached = commandSets.get(device.getId());
+        if (cached != null && cached.isSameSource(device, confirmEcho)) {
+            return cached;
+        }
+        return commandSets.compute(device.getId(), (id, current) -> {
+            if (current != null && current.isSameSource(device, confirmEcho)) {
+                return current;
+            }
+            DeviceCommandSet compiled = DeviceCommandSet.compile(device, confirmEcho);
+            for (String error : compiled.getErrors()) {
+                log.error("设备 {} (ID: {}) {}", device.getDeviceName(), id, error);
+            }
+            if (current != null) {
+                log.info("设备 {} (ID: {}) 指令配置已变化，已重新编译", device.getDeviceName(), id);
+            }
+            return compiled;
+        });
+    }
+
+    /**
+     * 设备的开关指令是否要求回显确认（serial.control.confirm-device-ids）
+     */
+    public boolean isConfirmEcho(Long deviceId) {
+        return serialBusProperties.getControl().getConfirmDeviceIds().contains(deviceId);
+    }
+
+    /**
+     * 移除设备的缓存（设备被删除时），下次使用时重新编译
+     */
+    public void evict(Long deviceId) {
+        commandSets.remove(deviceId);
+    }
+}
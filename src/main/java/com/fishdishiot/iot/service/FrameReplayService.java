@@ -0,0 +1,344 @@
+package com.fishdishiot.iot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fishdishiot.iot.config.SerialBusProperties;
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import com.fishdishiot.iot.util.FrameCaptureLog;
+import com.fishdishiot.iot.util.ModbusRequest;
+import com.fishdishiot.iot.util.ModbusResponse;
+import com.fishdishiot.iot.util.SensorReading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 抓包回放
+ * 把抓包文件中的响应帧按录制时的节奏（1 倍或 N 倍速）或尽可能快地重新送入解析和处理流水线，
+ * 用于复现现场的解析和预警问题、用一天的真实流量验证新版本，以及测量处理吞吐量。
+ * 回放不访问串口；读数使用录制时的时间，并标记为回放，不会触发自动调节去操作现场设备。
+ * 默认只解析不进入处理流水线；显式要求处理时读数会进入生产的入库、MQTT 推送和预警阶段，
+ * 产生真实的数据记录、推送和告警，只应在测试环境或确认需要补录数据时使用。
+ * 进入流水线时队列满则回放等待而不丢弃数据，最快回放测得的是流水线实际的处理吞吐量。
+ * 合并读取的响应按当前设备的采集指令拆分给范围内的各个设备。同一时刻只运行一个回放。
+ */
+@Service
+public class FrameReplayService {
+
+    private static final Logger log = LoggerFactory.getLogger(FrameReplayService.class);
+
+    @Autowired
+    private SerialBusProperties serialBusProperties;
+
+    @Autowired
+    private SerialBusManager serialBusManager;
+
+    @Autowired
+    private AgricultureDeviceService deviceService;
+
+    @Autowired
+    private DeviceCommandRegistry commandRegistry;
+
+    @Autowired
+    private SensorDecoderRegistry decoderRegistry;
+
+    @Autowired
+    private SensorCommunicationService sensorCommunicationService;
+
+    @Autowired
+    private IngestPipeline ingestPipeline;
+
+    private volatile ReplayRun current;
+
+    /**
+     * 抓包目录中的文件及大小，从旧到新
+     */
+    public List<Map<String, Object>> listCaptures() throws IOException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Path file : FrameCaptureLog.listFiles(captureDirectory())) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("file", file.getFileName().toString());
+            item.put("sizeBytes", Files.size(file));
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 开始回放
+     * @param file 抓包目录中的文件名，为空时按时间顺序回放目录中的全部文件
+     * @param speed 回放倍速，1 为按录制节奏，小于等于 0 为不等待、尽可能快
+     * @param decodeOnly 只解析不入库（默认），用于测量解析吞吐量或检查解析结果；为 false 时送入生产的处理流水线
+     * @return 回放状态
+     * @throws IllegalArgumentException 文件名无效或文件不存在
+     * @throws IllegalStateException 已有回放在运行
+     */
+    public synchronized Map<String, Object> start(String file, double speed, boolean decodeOnly) throws IOException {
+        if (current != null && current.running) {
+            throw new IllegalStateException("已有回放在运行: " + current.files);
+        }
+        List<Path> files;
+        if (file == null || file.isEmpty()) {
+            files = FrameCaptureLog.listFiles(captureDirectory());
+        } else {
+            if (file.contains("/") || file.contains("\\") || file.contains("..")) {
+                throw new IllegalArgumentException("文件名无效: " + file);
+            }
+            Path path = captureDirectory().resolve(file);
+            if (!Files.isRegularFile(path)) {
+                throw new IllegalArgumentException("抓包文件不存在: " + file);
+            }
+            files = Collections.singletonList(path);
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("抓包目录中没有文件: " + captureDirectory().toAbsolutePath());
+        }
+        ReplayRun run = new ReplayRun(files, speed, decodeOnly, loadTargets());
+        current = run;
+        Thread thread = new Thread(() -> replay(run), "Frame-Replay");
+        thread.setDaemon(true);
+        thread.start();
+        if (decodeOnly) {
+            log.info("开始回放抓包 {}，倍速 {}，只解析", files, speed > 0 ? speed : "最快");
+        } else {
+            log.warn("开始回放抓包 {}，倍速 {}，读数将入库、推送并检查预警", files, speed > 0 ? speed : "最快");
+        }
+        return run.toMap();
+    }
+
+    /**
+     * 停止正在运行的回放
+     */
+    public Map<String, Object> stop() {
+        ReplayRun run = current;
+        if (run != null) {
+            run.stopRequested = true;
+        }
+        return getStatus();
+    }
+
+    /**
+     * 最近一次回放的状态
+     */
+    public Map<String, Object> getStatus() {
+        ReplayRun run = current;
+        if (run == null) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("running", false);
+            return result;
+        }
+        return run.toMap();
+    }
+
+    private Path captureDirectory() {
+        return Paths.get(serialBusProperties.getCapture().getDirectory());
+    }
+
+    /**
+     * 按总线整理当前的传感器及其采集指令，用于把抓包中的响应对应到设备
+     */
+    private Map<String, List<Target>> loadTargets() {
+        QueryWrapper<AgricultureDevice> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("device_type_id", Arrays.asList("1", "2", "6"));
+        Map<String, List<Target>> targets = new HashMap<>();
+        for (AgricultureDevice device : deviceService.list(queryWrapper)) {
+            ModbusRequest request = commandRegistry.get(device).getPollRequest();
+            if (request != null && request.isRegisterRead()) {
+                String bus = serialBusManager.getBusForDevice(device.getId()).getName();
+                targets.computeIfAbsent(bus, k -> new ArrayList<>()).add(new Target(device, request));
+            }
+        }
+        return targets;
+    }
+
+    private void replay(ReplayRun run) {
+        FrameCaptureLog.Record record = new FrameCaptureLog.Record();
+        try {
+            for (Path file : run.files) {
+                try (FrameCaptureLog.Reader reader = new FrameCaptureLog.Reader(file)) {
+                    while (!run.stopRequested && reader.next(record)) {
+                        run.records++;
+                        if (run.firstTimestamp < 0) {
+                            run.firstTimestamp = record.getTimestamp();
+                        }
+                        run.lastTimestamp = record.getTimestamp();
+                        pace(run, record.getTimestamp() - run.firstTimestamp);
+                        try {
+                            replayRecord(run, record);
+                        } catch (Exception e) {
+                            run.errors++;
+                            log.warn("回放记录失败 [{}]: {}", record, e.getMessage());
+                        }
+                    }
+                } catch (IOException e) {
+                    run.errors++;
+                    log.error("读取抓包文件 {} 失败: {}", file, e.getMessage());
+                }
+                if (run.stopRequested) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            run.endNanos = System.nanoTime();
+            run.running = false;
+            log.info("抓包回放结束: {}", run.toMap());
+        }
+    }
+
+    /**
+     * 按倍速等到该记录在回放时间轴上的位置
+     * @param offsetMs 记录相对第一条记录的录制时间
+     */
+    private static void pace(ReplayRun run, long offsetMs) throws InterruptedException {
+        if (run.speed <= 0 || offsetMs <= 0) {
+            return;
+        }
+        long dueNanos = run.startNanos + (long) (offsetMs * 1_000_000L / run.speed);
+        long waitNanos;
+        // 分段等待，录制中间隔很长时也能及时响应停止
+        while (!run.stopRequested && (waitNanos = dueNanos - System.nanoTime()) > 0) {
+            long sliceNanos = Math.min(waitNanos, 200_000_000L);
+            Thread.sleep(sliceNanos / 1_000_000L, (int) (sliceNanos % 1_000_000L));
+        }
+    }
+
+    /**
+     * 回放一条记录：只处理成功的读寄存器事务，把响应交给对应的设备解析
+     */
+    private void replayRecord(ReplayRun run, FrameCaptureLog.Record record) {
+        // 只写入不等待回显的开关指令没有响应，可能也不是标准 Modbus 帧
+        if (record.getStatus() != FrameCaptureLog.STATUS_OK || record.getResponseLength() == 0) {
+            run.skipped++;
+            return;
+        }
+        ModbusRequest request = ModbusRequest.fromFrame(record.copyRequest());
+        ModbusResponse response = request.isRegisterRead() ? ModbusResponse.parse(record.copyResponse()) : null;
+        if (response == null || response.isException()) {
+            run.skipped++;
+            return;
+        }
+        Long recordedId = record.getDeviceId() >= 0 ? record.getDeviceId() : null;
+        List<Target> targets = run.targets.getOrDefault(serialBusManager.getBusForDevice(recordedId).getName(),
+                Collections.emptyList());
+        // 录制的是设备自己的采集指令时只交给该设备，否则是合并读取，按寄存器范围拆给各成员
+        for (Target target : targets) {
+            if (target.device.getId().equals(recordedId) && Arrays.equals(target.request.getFrame(), request.getFrame())) {
+                handle(run, target, response, record.getTimestamp());
+                return;
+            }
+        }
+        int matched = 0;
+        for (Target target : targets) {
+            ModbusRequest own = target.request;
+            int offset = own.getStartAddress() - request.getStartAddress();
+            if (own.getSlaveAddress() == request.getSlaveAddress() && own.getFunctionCode() == request.getFunctionCode()
+                    && offset >= 0 && offset + own.getQuantityOrValue() <= request.getQuantityOrValue()) {
+                handle(run, target, response.slice(offset, own.getQuantityOrValue()), record.getTimestamp());
+                matched++;
+            }
+        }
+        if (matched == 0) {
+            run.skipped++;
+        }
+    }
+
+    private void handle(ReplayRun run, Target target, ModbusResponse response, long timestamp) {
+        AgricultureDevice device = target.device;
+        SensorReading reading = new SensorReading();
+        decoderRegistry.decode(device, response.getFrame(), timestamp, reading);
+        reading.setType(sensorCommunicationService.getDataTypeByDeviceType(device.getDeviceTypeId()));
+        reading.setReplayed(true);
+        if (!run.decodeOnly) {
+            try {
+                ingestPipeline.put(reading);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                run.stopRequested = true;
+                return;
+            }
+        }
+        run.readings++;
+    }
+
+    /**
+     * 回放目标：一个传感器及其当前的采集指令
+     */
+    private static class Target {
+        final AgricultureDevice device;
+        final ModbusRequest request;
+
+        Target(AgricultureDevice device, ModbusRequest request) {
+            this.device = device;
+            this.request = request;
+        }
+    }
+
+    /**
+     * 一次回放的参数和进度；计数只由回放线程写入
+     */
+    private static class ReplayRun {
+        final List<Path> files;
+        final double speed;
+        final boolean decodeOnly;
+        final Map<String, List<Target>> targets;
+        final long startedAt = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        volatile long endNanos;
+        volatile boolean running = true;
+        volatile boolean stopRequested;
+        volatile long records;
+        volatile long readings;
+        volatile long skipped;
+        volatile long errors;
+        volatile long firstTimestamp = -1;
+        volatile long lastTimestamp = -1;
+
+        ReplayRun(List<Path> files, double speed, boolean decodeOnly, Map<String, List<Target>> targets) {
+            this.files = files;
+            this.speed = speed;
+            this.decodeOnly = decodeOnly;
+            this.targets = targets;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            List<String> names = new ArrayList<>();
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+            long elapsedNanos = (running ? System.nanoTime() : endNanos) - startNanos;
+            double elapsedSeconds = Math.max(elapsedNanos, 1) / 1e9;
+            result.put("running", running);
+            result.put("stopped", stopRequested);
+            result.put("files", names);
+            result.put("speed", speed > 0 ? speed : "max");
+            result.put("decodeOnly", decodeOnly);
+            result.put("startedAt", startedAt);
+            result.put("elapsedMs", elapsedNanos / 1_000_000L);
+            result.put("records", records);
+            result.put("readings", readings);
+            result.put("skipped", skipped);
+            result.put("errors", errors);
+            result.put("recordsPerSecond", Math.round(records / elapsedSeconds));
+            result.put("readingsPerSecond", Math.round(readings / elapsedSeconds));
+            if (lastTimestamp >= 0 && firstTimestamp >= 0) {
+                result.put("capturedSpanMs", lastTimestamp - firstTimestamp);
+            }
+            return result;
+        }
+    }
+}
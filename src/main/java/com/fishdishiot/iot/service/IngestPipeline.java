@@ -0,0 +1,157 @@
+package com.fishdishiot.iot.service;
+
+import com.fishdishiot.iot.config.IngestProperties;
+import com.fishdishiot.iot.util.IngestStage;
+import com.fishdishiot.iot.util.SensorReading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 采集数据处理流水线
+ * 串口采集线程只把解析好的读数交给流水线，入库、推送、预警和自动调节分别在各自的阶段中异步执行：
+ * <pre>
+ *   读数 ─┬─> 入库(persist) ──> 推送(publish)
+ *         ├─> 预警(alert)
+ *         └─> 控制(control：自适应轮询、自动调节策略)
+ * </pre>
+ * 每个阶段有独立的工作线程和有界队列，数据库或 MQTT 变慢只会让对应阶段积压（满时丢弃最旧的数据），
+ * 不会阻塞串口轮询；各阶段的吞吐量、积压和等待时间见 {@link #getStats()}。
+ * 读数交给流水线之前补齐所有指标，之后各阶段只读，不再修改。
+ */
+@Service
+public class IngestPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestPipeline.class);
+
+    @Autowired
+    private IngestProperties properties;
+
+    @Autowired
+    private DataProcessingService dataProcessingService;
+
+    @Autowired
+    private AutoControlService autoControlService;
+
+    @Autowired
+    private AgricultureDeviceStatusService deviceStatusService;
+
+    /** 控制阶段中每个读数都要通知的监听器（如自适应轮询） */
+    private final List<Consumer<SensorReading>> controlListeners = new CopyOnWriteArrayList<>();
+
+    private IngestStage<SensorReading> persistStage;
+    private IngestStage<Persisted> publishStage;
+    private IngestStage<SensorReading> alertStage;
+    private IngestStage<SensorReading> controlStage;
+
+    @PostConstruct
+    public void init() {
+        publishStage = new IngestStage<>("publish", properties.getPublish().getWorkers(), properties.getPublish().getCapacity(),
+                persisted -> dataProcessingService.publish(persisted.reading, persisted.entity));
+        persistStage = new IngestStage<>("persist", properties.getPersist().getWorkers(), properties.getPersist().getCapacity(),
+                this::persist);
+        alertStage = new IngestStage<>("alert", properties.getAlert().getWorkers(), properties.getAlert().getCapacity(),
+                dataProcessingService::checkAlerts);
+        controlStage = new IngestStage<>("control", properties.getControl().getWorkers(), properties.getControl().getCapacity(),
+                this::control);
+        log.info("数据处理流水线已启动：入库 {} 线程，推送 {} 线程，预警 {} 线程，控制 {} 线程",
+                properties.getPersist().getWorkers(), properties.getPublish().getWorkers(),
+                properties.getAlert().getWorkers(), properties.getControl().getWorkers());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 先停上游，入库阶段剩余的数据仍能交给推送阶段
+        long timeoutMs = properties.getShutdownTimeoutMs();
+        persistStage.shutdown(timeoutMs);
+        publishStage.shutdown(timeoutMs);
+        alertStage.shutdown(timeoutMs);
+        controlStage.shutdown(timeoutMs);
+    }
+
+    /**
+     * 注册控制阶段的监听器，每个读数（回放的读数除外）都会在控制阶段通知
+     */
+    public void addControlListener(Consumer<SensorReading> listener) {
+        controlListeners.add(listener);
+    }
+
+    /**
+     * 提交一个读数，不阻塞；供串口采集线程调用
+     */
+    public void submit(SensorReading reading) {
+        dataProcessingService.prepare(reading);
+        long key = reading.getDeviceId();
+        persistStage.submit(key, reading);
+        alertStage.submit(key, reading);
+        controlStage.submit(key, reading);
+    }
+
+    /**
+     * 提交一个读数，阶段队列满时等待；供回放按流水线的实际处理能力送入数据
+     * @throws InterruptedException 等待时被中断
+     */
+    public void put(SensorReading reading) throws InterruptedException {
+        dataProcessingService.prepare(reading);
+        long key = reading.getDeviceId();
+        persistStage.put(key, reading);
+        alertStage.put(key, reading);
+        controlStage.put(key, reading);
+    }
+
+    private void persist(SensorReading reading) {
+        if (!reading.isReplayed()) {
+            deviceStatusService.updateDeviceOnline(String.valueOf(reading.getDeviceId()));
+        }
+        Object entity = dataProcessingService.persist(reading);
+        try {
+            // 推送变慢时入库随之等待，积压体现在入库阶段的队列上
+            publishStage.put(reading.getDeviceId(), new Persisted(reading, entity));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void control(SensorReading reading) {
+        if (!reading.isReplayed()) {
+            for (Consumer<SensorReading> listener : controlListeners) {
+                listener.accept(reading);
+            }
+        }
+        autoControlService.checkAndExecuteStrategy(reading);
+    }
+
+    /**
+     * 各阶段的统计：工作线程数、队列容量、积压、最旧一条的等待时间、提交/处理/失败/丢弃条数、吞吐量、等待和处理耗时
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put(persistStage.getName(), persistStage.getStats());
+        result.put(publishStage.getName(), publishStage.getStats());
+        result.put(alertStage.getName(), alertStage.getStats());
+        result.put(controlStage.getName(), controlStage.getStats());
+        return result;
+    }
+
+    /**
+     * 已入库的读数和保存的实体，交给推送阶段
+     */
+    private static class Persisted {
+        final SensorReading reading;
+        final Object entity;
+
+        Persisted(SensorReading reading, Object entity) {
+            this.reading = reading;
+            this.entity = entity;
+        }
+    }
+}
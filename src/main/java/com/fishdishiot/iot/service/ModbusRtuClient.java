@@ -0,0 +1,187 @@
+package com.fishdishiot.iot.service;
+
+import com.fishdishiot.iot.util.DeviceTurnaroundTracker;
+import com.fishdishiot.iot.util.FrameCaptureLog;
+import com.fishdishiot.iot.util.HexCodec;
+import com.fishdishiot.iot.util.ModbusRequest;
+import com.fishdishiot.iot.util.ModbusResponse;
+import com.fishdishiot.iot.util.SerialBusMetrics;
+import com.fishdishiot.iot.util.SerialCommandExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Modbus RTU 客户端
+ * 在 SerialPortService 之上完成一次完整的请求/响应事务：
+ * 发送请求 -> 按帧接收 -> CRC校验 -> 与请求匹配，失败时在超时预算内重试。
+ * 损坏、不完整或不匹配的帧在这里被丢弃，不会进入后续的入库、推送、预警和策略流程。
+ * 每个设备的响应周转时间会被测量并记录，首次尝试按设备的实际周转时间等待响应，
+ * 离线或变慢的设备不会每次都占满完整的响应超时。
+ */
+public class ModbusRtuClient {
+
+    private static final Logger log = LoggerFactory.getLogger(ModbusRtuClient.class);
+
+    /** RTU 帧最大长度 */
+    private static final int MAX_FRAME_LENGTH = 256;
+
+    private final SerialPortService port;
+
+    /** 失败后的重试次数 */
+    private final int retries;
+
+    /** 按周转时间计算的响应等待时间下限 */
+    private final int minResponseTimeoutMs;
+
+    private final DeviceTurnaroundTracker turnaroundTracker = new DeviceTurnaroundTracker();
+
+    /** 接收缓冲区，只在持有串口锁时使用，每次事务复用 */
+    private final byte[] receiveBuffer = new byte[MAX_FRAME_LENGTH];
+
+    /** 所在总线的运行指标 */
+    private final SerialBusMetrics metrics;
+
+    /** 抓包日志，未启用时为 null */
+    private volatile FrameCaptureLog captureLog;
+
+    public ModbusRtuClient(SerialPortService port, int retries, int minResponseTimeoutMs, SerialBusMetrics metrics) {
+        this.port = port;
+        this.retries = retries;
+        this.minResponseTimeoutMs = minResponseTimeoutMs;
+        this.metrics = metrics;
+    }
+
+    public DeviceTurnaroundTracker getTurnaroundTracker() {
+        return turnaroundTracker;
+    }
+
+    public void setCaptureLog(FrameCaptureLog captureLog) {
+        this.captureLog = captureLog;
+    }
+
+    /**
+     * 执行一次 Modbus 事务
+     * @param deviceId 设备ID，用于统计周转时间，可为 null
+     * @param request 请求
+     * @param timeoutBudgetMs 本次事务（含重试）的总超时预算
+     * @return 与请求匹配且CRC正确的响应（可能是异常响应）；超时或全部重试失败返回 null
+     */
+    public ModbusResponse execute(Long deviceId, ModbusRequest request, int timeoutBudgetMs) {
+        synchronized (port.getSerialLock()) {
+            long transactionStart = System.nanoTime();
+            long deadline = System.currentTimeMillis() + timeoutBudgetMs;
+            int attempt = 0;
+            while (attempt <= retries) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                attempt++;
+                long start = System.nanoTime();
+                if (port.writeToSerial(request.getFrame()) <= 0) {
+                    log.error("[Modbus] 从站 {} 指令发送失败，串口: {}", request.getSlaveAddress(), port.getPortName());
+                    capture(deviceId, FrameCaptureLog.STATUS_WRITE_FAILED, request, 0);
+                    metrics.recordTransaction(deviceId, 0, System.nanoTime() - transactionStart, false, false);
+                    return null;
+                }
+                metrics.recordWrite(deviceId, request.getFrame().length);
+                // 首次尝试按设备的实际周转时间等待，重试时使用完整的响应超时
+                int responseTimeout = attempt == 1 ? responseTimeoutFor(deviceId) : port.getResponseTimeoutMs();
+                responseTimeout = (int) Math.min(remaining, responseTimeout);
+                // 读入复用的接收缓冲区，校验和匹配都在缓冲区上原地完成
+                int length = port.readFrame(receiveBuffer, responseTimeout);
+                metrics.recordRead(deviceId, length);
+                if (length > 0) {
+                    recordTurnaround(deviceId, start, request.getFrame().length + length);
+                }
+                if (length == 0) {
+                    capture(deviceId, FrameCaptureLog.STATUS_TIMEOUT, request, 0);
+                    log.warn("[Modbus] 从站 {} 第 {} 次请求超时", request.getSlaveAddress(), attempt);
+                    continue;
+                }
+                if (!ModbusResponse.isValidFrame(receiveBuffer, length)) {
+                    capture(deviceId, FrameCaptureLog.STATUS_INVALID, request, length);
+                    log.warn("[Modbus] 从站 {} 第 {} 次响应帧不完整或CRC错误，丢弃 {} 字节: {}，请求: {}", request.getSlaveAddress(),
+                            attempt, length, HexCodec.encode(receiveBuffer, 0, length), request);
+                    metrics.recordCrcFailure(deviceId);
+                    continue;
+                }
+                if (!request.matches(receiveBuffer, length)) {
+                    capture(deviceId, FrameCaptureLog.STATUS_MISMATCH, request, length);
+                    log.warn("[Modbus] 从站 {} 第 {} 次响应与请求不匹配（地址 {}，功能码 {}），丢弃: {}",
+                            request.getSlaveAddress(), attempt, receiveBuffer[0] & 0xFF, receiveBuffer[1] & 0xFF,
+                            HexCodec.encode(receiveBuffer, 0, length));
+                    metrics.recordMismatch(deviceId);
+                    continue;
+                }
+                capture(deviceId, FrameCaptureLog.STATUS_OK, request, length);
+                // 只有通过校验并与请求匹配的帧才复制出来交给调用方
+                ModbusResponse response = ModbusResponse.copyOf(receiveBuffer, length);
+                if (response.isException()) {
+                    log.warn("[Modbus] 从站 {} 返回异常响应，异常码: {}", request.getSlaveAddress(), response.getExceptionCode());
+                }
+                long end = System.nanoTime();
+                metrics.recordTransaction(deviceId, end - start, end - transactionStart, true, response.isException());
+                return response;
+            }
+            log.warn("[Modbus] 从站 {} 事务失败，共尝试 {} 次，超时预算 {}ms", request.getSlaveAddress(), attempt, timeoutBudgetMs);
+            metrics.recordTransaction(deviceId, 0, System.nanoTime() - transactionStart, false, false);
+            return null;
+        }
+    }
+
+    /**
+     * 只写入一条指令，不等待响应；用于不回显或不是标准 Modbus 帧的开关指令
+     * @param deviceId 设备ID，可为 null
+     * @param request 指令
+     * @return 写入的字节数，失败时小于等于 0
+     */
+    public int write(Long deviceId, ModbusRequest request) {
+        synchronized (port.getSerialLock()) {
+            long start = System.nanoTime();
+            int written = port.writeToSerial(request.getFrame());
+            if (written <= 0) {
+                log.error("[Modbus] 指令 [{}] 发送失败，串口: {}", request, port.getPortName());
+                capture(deviceId, FrameCaptureLog.STATUS_WRITE_FAILED, request, 0);
+                metrics.recordTransaction(deviceId, 0, System.nanoTime() - start, false, false);
+                return written;
+            }
+            metrics.recordWrite(deviceId, written);
+            capture(deviceId, FrameCaptureLog.STATUS_OK, request, 0);
+            return written;
+        }
+    }
+
+    /**
+     * 把本次尝试的请求和接收缓冲区中的响应写入抓包日志
+     */
+    private void capture(Long deviceId, byte status, ModbusRequest request, int length) {
+        FrameCaptureLog capture = captureLog;
+        if (capture != null) {
+            capture.append(System.currentTimeMillis(), deviceId != null ? deviceId : -1L, status, request.getFrame(),
+                    receiveBuffer, length);
+        }
+    }
+
+    /**
+     * 按设备已测得的周转时间确定等待响应首字节的时间：周转时间的2倍再加上下限余量，
+     * 不超过配置的响应超时。尚无测量值时使用配置的响应超时。
+     */
+    private int responseTimeoutFor(Long deviceId) {
+        long turnaroundMicros = turnaroundTracker.getTurnaroundMicros(deviceId);
+        if (turnaroundMicros < 0) {
+            return port.getResponseTimeoutMs();
+        }
+        long adaptive = turnaroundMicros * 2 / 1000 + minResponseTimeoutMs;
+        return (int) Math.min(adaptive, port.getResponseTimeoutMs());
+    }
+
+    /**
+     * 记录周转时间：总耗时减去请求和响应报文在线路上的传输时间
+     */
+    private void recordTurnaround(Long deviceId, long startNanos, int totalBytes) {
+        long elapsedMicros = (System.nanoTime() - startNanos) / 1000;
+        long transferMicros = (long) totalBytes * SerialCommandExecutor.BITS_PER_CHAR * 1_000_000L / port.getBaudRate();
+        turnaroundTracker.record(deviceId, Math.max(0, elapsedMicros - transferMicros));
+    }
+}
@@ -1,8 +1,18 @@
 package com.fishdishiot.iot.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fishdishiot.iot.config.SerialBusProperties;
 import com.fishdishiot.iot.domain.AgricultureDevice;
-import com.fishdishiot.iot.util.SerialCommandExecutor;
+import com.fishdishiot.iot.util.BusCapacityPlanner;
+import com.fishdishiot.iot.util.DeviceCommandSet;
+import com.fishdishiot.iot.util.DeviceHealthTracker;
+import com.fishdishiot.iot.util.ModbusReadPlanner;
+import com.fishdishiot.iot.util.ModbusRequest;
+import com.fishdishiot.iot.util.ModbusResponse;
+import com.fishdishiot.iot.util.PollScheduler;
+import com.fishdishiot.iot.util.SensorReading;
+import com.fishdishiot.iot.util.SensorTaskRegistry;
+import com.fishdishiot.iot.util.SerialTaskPriority;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,8 +22,10 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
@@ -24,10 +36,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * 传感器通信服务
  * 核心服务，负责通过串口与传感器进行周期性的指令收发和数据解析。
  * 1. 在应用启动时，从数据库加载所有传感器设备。
- * 2. 为每个传感器创建一个独立的线程任务，进行周期性轮询。
- * 3. 发送指令给传感器，读取并解析返回的数据。
+ * 2. 按总线生成读取计划，由一个轮询调度器按各设备的轮询间隔统一调度。
+ * 3. 发送指令给传感器，读取返回的数据并按传感器型号解码（见 SensorDecoderRegistry）。
  * 4. 成功收到数据后，更新设备在Redis中的在线状态。
- * 5. 将解析后的数据交给DataProcessingService进行后续处理和存储。
+ * 5. 将解析后的数据交给IngestPipeline，分阶段异步完成入库、推送、预警和自动调节。
  */
 @Service
 public class SensorCommunicationService {
@@ -35,19 +47,52 @@ public class SensorCommunicationService {
     private static final Logger log = LoggerFactory.getLogger(SensorCommunicationService.class);
 
     @Autowired
-    private SerialPortService serialPortService; // 串口服务
+    private SerialBusManager serialBusManager; // 串口总线管理，按设备找到所在总线
 
     @Autowired
-    private DataProcessingService dataProcessingService; // 数据处理服务，用于存储解析后的数据
+    private SerialBusProperties serialBusProperties; // 串口配置，含合并读取开关
+
+    @Autowired
+    private DeviceCommandRegistry commandRegistry; // 已编译的设备指令
+
+    @Autowired
+    private SensorDecoderRegistry decoderRegistry; // 按传感器型号解码响应帧
+
+    @Autowired
+    private IngestPipeline ingestPipeline; // 入库、推送、预警和自动调节的异步处理流水线
 
     @Autowired
     private AgricultureDeviceService deviceService; // 设备信息服务，用于查询设备基础信息
 
     @Autowired
-    private AgricultureDeviceStatusService deviceStatusService; // 设备状态服务，用于更新设备实时在线状态
+    private AdaptivePollingService adaptivePollingService; // 按读数调整轮询间隔
+
+    @Autowired
+    private BusCapacityService busCapacityService; // 总线容量估算和准入
 
     @Autowired
-    private SerialCommandExecutor serialCommandExecutor; // 注入 SerialCommandExecutor
+    private SerialPortWatchdog serialPortWatchdog; // 串口丢失后自动重连
+
+    // 所有传感器共用一个轮询调度器，线程数不随设备数量增长
+    private final PollScheduler pollScheduler = new PollScheduler();
+
+    // 各传感器采集任务的状态和计数
+    private final SensorTaskRegistry taskRegistry = new SensorTaskRegistry();
+
+    // 各传感器的熔断器，连续无响应的设备按指数退避探测
+    private DeviceHealthTracker healthTracker;
+
+    // 调度中的读取计划：计划标识（计划中第一个设备ID） -> 计划
+    private final Map<Long, ActivePlan> activePlans = new ConcurrentHashMap<>();
+
+    // 调度中的传感器设备信息，重载时原地替换
+    private final Map<Long, AgricultureDevice> activeSensors = new ConcurrentHashMap<>();
+
+    // 等待结果的即时读取：设备ID -> 结果，同一设备的并发读取共享一个
+    private final Map<Long, CompletableFuture<Map<String, Object>>> pendingReads = new ConcurrentHashMap<>();
+
+    // 即时读取最近一次完成总线事务的时间（System.nanoTime）：设备ID -> 时间，在此之前投递的轮询不再重复读取该设备
+    private final Map<Long, Long> onDemandReadNanos = new ConcurrentHashMap<>();
 
     /**
      * 确保此方法在SensorCommunicationService的Bean初始化后立即执行。
@@ -56,6 +101,44 @@ public class SensorCommunicationService {
     @PostConstruct
     public void init() {
         log.info("正在初始化传感器通信服务...");
+        SerialBusProperties.CircuitBreaker breaker = serialBusProperties.getCircuitBreaker();
+        // 关闭熔断时失败阈值取最大值，设备永远不会被熔断，状态接口仍可查看连续失败次数
+        healthTracker = new DeviceHealthTracker(breaker.isEnabled() ? breaker.getFailureThreshold() : Integer.MAX_VALUE,
+                breaker.getInitialBackoffMs(), breaker.getMaxBackoffMs(), breaker.getBackoffMultiplier());
+        serialPortWatchdog.addRecoveryListener(this::onBusRecovered);
+        ingestPipeline.addControlListener(this::onReadingProcessed);
+    }
+
+    /**
+     * 流水线控制阶段中处理完一个读数：开启自适应轮询时按读数调整该设备的轮询间隔
+     */
+    private void onReadingProcessed(SensorReading reading) {
+        if (adaptivePollingService.isEnabled()) {
+            AgricultureDevice sensor = activeSensors.get(reading.getDeviceId());
+            if (sensor != null) {
+                adaptInterval(sensor, reading);
+            }
+        }
+    }
+
+    /**
+     * 串口断开后恢复：断开期间失败的设备熔断器复位，不必等到退避到期再恢复轮询
+     */
+    private void onBusRecovered(SerialBus bus) {
+        int reset = 0;
+        for (ActivePlan active : activePlans.values()) {
+            if (active.bus == bus) {
+                for (ModbusReadPlanner.Member member : active.plan.getMembers()) {
+                    if (healthTracker.getState(member.getDeviceId()) != DeviceHealthTracker.State.CLOSED) {
+                        reset++;
+                    }
+                    healthTracker.remove(member.getDeviceId());
+                }
+            }
+        }
+        if (reset > 0) {
+            log.info("总线 {} 已恢复，复位 {} 个传感器的熔断器", bus.getName(), reset);
+        }
     }
 
     /**
@@ -65,7 +148,11 @@ public class SensorCommunicationService {
     @EventListener(ApplicationReadyEvent.class)
     public void onApplicationReady() {
         log.info("应用程序已就绪，正在启动传感器通信...");
-        startSensorCommunication();
+        try {
+            reconcileSensors();
+        } catch (Exception e) {
+            log.error("启动传感器通信流程失败", e);
+        }
     }
 
     /**
@@ -75,35 +162,185 @@ public class SensorCommunicationService {
     @PreDestroy
     public void destroy() {
         log.info("正在关闭传感器通信服务...");
+        pollScheduler.shutdown();
     }
 
     /**
-     * 启动总的传感器通信流程。
-     * 查询所有需要轮询的传感器，并逐一启动任务。
+     * 按数据库中的传感器配置调整轮询任务（启动和重载共用）。
+     * 与当前正在运行的读取计划逐个比对：新增的计划加入调度，已不存在的计划（设备被删除、指令被清空或失效）取消，
+     * 成员和指令都没变的计划保持原样，只有间隔变化时原地调整间隔；设备名称、大棚等信息直接替换，不需要重新调度。
+     * 新增的计划和成员或指令变化后需要替换的计划都要经过总线容量准入。
+     * @return 本次调整的统计
      */
-    private void startSensorCommunication() {
-        try {
-            // 查询所有传感器设备
-            List<AgricultureDevice> sensors = getSensorDevices();
-
-            for (AgricultureDevice sensor : sensors) {
-                // 跳过未开启的设备
-//                if (!"1".equals(sensor.getControlStatus())) {
-//                    log.info("传感器 {} (ID: {}) 用户已关闭，跳过采集任务。", sensor.getDeviceName(), sensor.getId());
-//                    continue;
-//                }
-                // 跳过未配置指令的设备
-                String command = sensor.getSensorCommand();
-                if (command == null || "null".equals(command)) {
-                    log.warn("传感器 {} (ID: {}) 没有配置指令，跳过任务启动。", sensor.getDeviceName(), sensor.getId());
+    public synchronized Map<String, Object> reconcileSensors() {
+        long startNanos = System.nanoTime();
+        // 查询所有传感器设备
+        List<AgricultureDevice> sensors = getSensorDevices();
+
+        Map<Long, AgricultureDevice> latest = new HashMap<>();
+        Map<SerialBus, List<ModbusReadPlanner.Member>> readsByBus = new LinkedHashMap<>();
+        int invalid = 0;
+        for (AgricultureDevice sensor : sensors) {
+            latest.put(sensor.getId(), sensor);
+            // 指令在注册表中编译并校验CRC，配置错误的指令不会被发送到总线上
+            DeviceCommandSet commands = commandRegistry.get(sensor);
+            ModbusRequest request = commands.getPollRequest();
+            if (request == null) {
+                SensorTaskRegistry.SensorTask task = taskRegistry.register(sensor.getId());
+                if (commands.hasErrors()) {
+                    if (task.getState() != SensorTaskRegistry.State.INVALID) {
+                        log.error("传感器 {} (ID: {}) 的指令无效: {}，不加入轮询调度。", sensor.getDeviceName(), sensor.getId(), commands.getErrors());
+                    }
+                    task.stopped(sensor.getDeviceName(), SensorTaskRegistry.State.INVALID, String.join("; ", commands.getErrors()));
+                    invalid++;
+                } else {
+                    if (task.getState() == SensorTaskRegistry.State.RUNNING) {
+                        log.info("传感器 {} (ID: {}) 的采集指令已清空，停止轮询。", sensor.getDeviceName(), sensor.getId());
+                    }
+                    task.stopped(sensor.getDeviceName(), SensorTaskRegistry.State.STOPPED, "未配置采集指令");
+                }
+                continue;
+            }
+            SerialBus bus = serialBusManager.getBusForDevice(sensor.getId());
+            readsByBus.computeIfAbsent(bus, k -> new ArrayList<>()).add(new ModbusReadPlanner.Member(sensor.getId(), request));
+        }
+
+        // 先更新设备信息，已调度的计划在下一次轮询时就使用新的名称、大棚、分区
+        activeSensors.putAll(latest);
+
+        int maxGap = serialBusProperties.isCoalesceReads() ? serialBusProperties.getCoalesceMaxGap() : -1;
+        Map<Long, ActivePlan> desired = new LinkedHashMap<>();
+        for (Map.Entry<SerialBus, List<ModbusReadPlanner.Member>> entry : readsByBus.entrySet()) {
+            for (ModbusReadPlanner.ReadPlan plan : ModbusReadPlanner.plan(entry.getValue(), maxGap)) {
+                desired.put(plan.getMembers().get(0).getDeviceId(), new ActivePlan(entry.getKey(), plan, planInterval(plan)));
+            }
+        }
+
+        // 容量准入：成员和指令都没变的计划先计入各总线的负载；新加入的和需要替换的计划（不再计入原计划的负载）
+        // 逐个累加，超过利用率上限时告警或拒绝
+        Map<SerialBus, List<BusCapacityPlanner.PlanLoad>> busLoads = new HashMap<>();
+        for (Map.Entry<Long, ActivePlan> entry : desired.entrySet()) {
+            ActivePlan target = entry.getValue();
+            ActivePlan current = activePlans.get(entry.getKey());
+            if (current != null && current.bus == target.bus && samePlan(current.plan, target.plan)) {
+                busLoads.computeIfAbsent(target.bus, k -> new ArrayList<>())
+                        .add(busCapacityService.load(target.bus, target.plan, target.intervalMs));
+            }
+        }
+
+        int started = 0;
+        int rescheduled = 0;
+        int intervalUpdated = 0;
+        int unchanged = 0;
+        int rejected = 0;
+        for (Map.Entry<Long, ActivePlan> entry : desired.entrySet()) {
+            Long key = entry.getKey();
+            ActivePlan target = entry.getValue();
+            ActivePlan current = activePlans.get(key);
+            if (current == null) {
+                if (!admit(target, busLoads.computeIfAbsent(target.bus, k -> new ArrayList<>()), latest)) {
+                    rejected++;
+                    continue;
+                }
+                schedulePlan(key, target);
+                started++;
+            } else if (current.bus != target.bus || !samePlan(current.plan, target.plan)) {
+                // 成员、指令或所在总线变了，替换原计划；新计划超出容量被拒绝时原计划也停止
+                if (!admit(target, busLoads.computeIfAbsent(target.bus, k -> new ArrayList<>()), latest)) {
+                    activePlans.remove(key);
+                    pollScheduler.cancel(key);
+                    log.info("总线 {} 上的读取计划 {} 已取消", current.bus.getName(), describe(current.plan));
+                    rejected++;
                     continue;
                 }
-                // 启动任务
-                startSensorCollectLoop(sensor);
+                schedulePlan(key, target);
+                rescheduled++;
+            } else if (current.intervalMs != target.intervalMs) {
+                current.intervalMs = target.intervalMs;
+                pollScheduler.setInterval(key, target.intervalMs);
+                intervalUpdated++;
+            } else {
+                unchanged++;
             }
-        } catch (Exception e) {
-            log.error("启动传感器通信流程失败", e);
         }
+
+        int stopped = 0;
+        for (Long key : new ArrayList<>(activePlans.keySet())) {
+            if (!desired.containsKey(key)) {
+                ActivePlan removed = activePlans.remove(key);
+                pollScheduler.cancel(key);
+                log.info("总线 {} 上的读取计划 {} 已取消", removed.bus.getName(), describe(removed.plan));
+                stopped++;
+            }
+        }
+
+        // 登记运行中的任务；数据库中已删除的设备从注册表、指令缓存和设备信息中移除
+        for (ActivePlan active : activePlans.values()) {
+            Long key = active.plan.getMembers().get(0).getDeviceId();
+            for (ModbusReadPlanner.Member member : active.plan.getMembers()) {
+                taskRegistry.register(member.getDeviceId()).running(latest.get(member.getDeviceId()).getDeviceName(),
+                        active.bus.getName(), key, member.getRequest().toString(), active.intervalMs);
+            }
+        }
+        int removedDevices = 0;
+        for (Long deviceId : taskRegistry.getDeviceIds()) {
+            if (!latest.containsKey(deviceId)) {
+                taskRegistry.remove(deviceId);
+                adaptivePollingService.forget(deviceId);
+                healthTracker.remove(deviceId);
+                commandRegistry.evict(deviceId);
+                onDemandReadNanos.remove(deviceId);
+                removedDevices++;
+            }
+        }
+        activeSensors.keySet().retainAll(latest.keySet());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sensors", sensors.size());
+        result.put("plans", activePlans.size());
+        result.put("started", started);
+        result.put("rescheduled", rescheduled);
+        result.put("intervalUpdated", intervalUpdated);
+        result.put("unchanged", unchanged);
+        result.put("stopped", stopped);
+        result.put("removedDevices", removedDevices);
+        result.put("invalid", invalid);
+        result.put("rejected", rejected);
+        result.put("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000);
+        log.info("传感器任务调整完成: {}", result);
+        return result;
+    }
+
+    /**
+     * 新计划的容量准入：加入后所在总线的预计利用率超过上限时告警，按配置拒绝调度
+     * @param loads 所在总线已准入计划的负载，准入后追加本计划
+     * @return 是否调度
+     */
+    private boolean admit(ActivePlan target, List<BusCapacityPlanner.PlanLoad> loads, Map<Long, AgricultureDevice> latest) {
+        BusCapacityPlanner.PlanLoad load = busCapacityService.load(target.bus, target.plan, target.intervalMs);
+        List<BusCapacityPlanner.PlanLoad> projected = new ArrayList<>(loads);
+        projected.add(load);
+        double utilization = busCapacityService.utilization(projected);
+        if (utilization > busCapacityService.getMaxUtilization()) {
+            if (busCapacityService.isRefuseOnOverload()) {
+                String reason = String.format("总线 %s 预计利用率 %.2f 超过上限 %.2f", target.bus.getName(), utilization,
+                        busCapacityService.getMaxUtilization());
+                for (ModbusReadPlanner.Member member : target.plan.getMembers()) {
+                    SensorTaskRegistry.SensorTask task = taskRegistry.register(member.getDeviceId());
+                    if (task.getState() != SensorTaskRegistry.State.REJECTED) {
+                        log.warn("传感器 {} (ID: {}) 不加入轮询调度: {}", latest.get(member.getDeviceId()).getDeviceName(),
+                                member.getDeviceId(), reason);
+                    }
+                    task.stopped(latest.get(member.getDeviceId()).getDeviceName(), SensorTaskRegistry.State.REJECTED, reason);
+                }
+                return false;
+            }
+            log.warn("总线 {} 加入读取计划 {} 后预计利用率 {}，超过上限 {}，轮询数据将明显滞后",
+                    target.bus.getName(), describe(target.plan), String.format("%.2f", utilization),
+                    busCapacityService.getMaxUtilization());
+        }
+        loads.add(load);
+        return true;
     }
 
     /**
@@ -118,263 +355,320 @@ public class SensorCommunicationService {
     }
 
     /**
-     * 启动单个传感器的采集循环（通过全局队列串行化）。
+     * 合并计划按成员中最短的轮询间隔执行；启用自适应轮询时使用各成员当前的自适应间隔
      */
-    private void startSensorCollectLoop(AgricultureDevice sensor) {
-        new Thread(() -> {
-            String sensorName = sensor.getDeviceName();
-            String commandHexStr = sensor.getSensorCommand();
-            Long sensorId = sensor.getId();
-            log.info("线程 {} 正在启动，负责轮询传感器: {} (ID: {})", Thread.currentThread().getName(), sensorName, sensorId);
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    serialCommandExecutor.submit(() -> {
-                        synchronized (serialPortService.getSerialLock()) {
-                            try {
-                                byte[] commandBytes = hexStringToByteArray(commandHexStr);
-                                serialPortService.writeToSerial(commandBytes);
-                                Thread.sleep(200);
-                                byte[] response = serialPortService.readFromSerial(256);
-                                if (response != null && response.length > 0) {
-                                    deviceStatusService.updateDeviceOnline(sensor.getId().toString());
-                                    String deviceType = sensor.getDeviceTypeId();
-                                    Map<String, Object> parsedData = parseSensorData(response, deviceType);
-                                    parsedData.put("deviceId", sensorId);
-                                    parsedData.put("deviceName", sensorName);
-                                    parsedData.put("type", getDataTypeByDeviceType(deviceType));
-                                    parsedData.put("pastureId", sensor.getPastureId());
-                                    parsedData.put("batchId", sensor.getBatchId());
-                                    log.info("成功接收并解析来自 {} (ID: {}) 的数据: {}", sensorName, sensorId, parsedData);
-                                    dataProcessingService.processAndStore(parsedData);
-                                } else {
-                                    log.warn("轮询 {} (ID: {}) 未收到响应。", sensorName, sensorId);
-                                }
-                            } catch (Exception e) {
-                                log.error("采集任务异常: {}", e.getMessage(), e);
-                            }
-                        }
-                    });
-                    Thread.sleep(5000); // 轮询间隔
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-            log.info("传感器 {} (ID: {}) 的轮询任务已完全停止。", sensorName, sensorId);
-        }, "Sensor-Collect-" + sensor.getId()).start();
+    private long planInterval(ModbusReadPlanner.ReadPlan plan) {
+        long intervalMs = Long.MAX_VALUE;
+        for (ModbusReadPlanner.Member member : plan.getMembers()) {
+            long base = serialBusManager.getPollIntervalMs(member.getDeviceId());
+            intervalMs = Math.min(intervalMs, adaptivePollingService.getIntervalMs(member.getDeviceId(), base));
+        }
+        return intervalMs;
     }
 
     /**
-     * 数据解析的主分发方法。
-     * 根据设备类型，调用相应的具体解析方法。
-     * @param data 从串口读取的原始字节数组
-     * @param deviceType 设备的类型ID ("1", "2", "6")
-     * @return 包含解析后键值对的Map
+     * 自适应轮询：用一次成功采集的读数重新计算设备间隔，所在计划的间隔变化时调整调度
      */
-    private Map<String, Object> parseSensorData(byte[] data, String deviceType) {
-        Map<String, Object> result = new HashMap<>();
-        try {
-            switch (deviceType) {
-                case "1": // 气象传感器
-                    result.putAll(parseWeatherSensorData(data));
-                    break;
-                case "2": // 水质传感器
-                    result.putAll(parseWaterQualityData(data));
-                    break;
-                case "6": // 其他传感器
-                    result.putAll(parseOtherSensorData(data));
-                    break;
-                default:
-                    result.put("raw_data", bytesToHexString(data));
+    private void adaptInterval(AgricultureDevice sensor, SensorReading reading) {
+        Long sensorId = sensor.getId();
+        adaptivePollingService.evaluate(sensor, reading, serialBusManager.getPollIntervalMs(sensorId));
+        synchronized (this) {
+            SensorTaskRegistry.SensorTask task = taskRegistry.get(sensorId);
+            ActivePlan active = task != null && task.getPlanKey() != null ? activePlans.get(task.getPlanKey()) : null;
+            if (active == null) {
+                return;
+            }
+            long intervalMs = planInterval(active.plan);
+            if (intervalMs != active.intervalMs) {
+                active.intervalMs = intervalMs;
+                pollScheduler.setInterval(task.getPlanKey(), intervalMs);
+                for (ModbusReadPlanner.Member member : active.plan.getMembers()) {
+                    SensorTaskRegistry.SensorTask memberTask = taskRegistry.get(member.getDeviceId());
+                    if (memberTask != null) {
+                        memberTask.updateInterval(intervalMs);
+                    }
+                }
             }
-        } catch (Exception e) {
-            log.error("解析传感器数据出错: {}", e.getMessage(), e);
         }
-        return result;
     }
 
     /**
-     * 解析气象传感器数据
+     * 两个计划的成员、各自的指令和实际发送的请求是否完全相同
      */
-    private Map<String, Object> parseWeatherSensorData(byte[] data) {
-        Map<String, Object> result = new HashMap<>();
-        try {
-            if (data.length >= 19) {
-                // 百叶箱数据
-                double humidity = Math.round(((data[3] & 0xFF) << 8 | (data[4] & 0xFF)) / 10.0 * 10.0) / 10.0;
-                double temperature = Math.round(((data[5] & 0xFF) << 8 | (data[6] & 0xFF)) / 10.0 * 10.0) / 10.0;
-                double noise = Math.round(((data[7] & 0xFF) << 8 | (data[8] & 0xFF)) / 10.0 * 10.0) / 10.0;
-                int pm25 = (data[9] & 0xFF) << 8 | (data[10] & 0xFF);
-                int pm10 = (data[13] & 0xFF) << 8 | (data[14] & 0xFF);
-                int light = (data[17] & 0xFF) << 8 | (data[18] & 0xFF);
-                
-                result.put("humidity", humidity);
-                result.put("temperature", temperature);
-                result.put("noise", noise);
-                result.put("pm25", pm25);
-                result.put("pm10", pm10);
-                result.put("light_intensity", light);
-            } else if (data.length >= 7) {
-                // 风向或风速数据
-                if (data[0] == 0x01) {
-                    // 风向数据
-                    int directionGrade = ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
-                    int directionAngle = ((data[5] & 0xFF) << 8) | (data[6] & 0xFF);
-                    
-                    String[] directions = {"北风", "东北风", "东风", "东南风", "南风", "西南风", "西风", "西北风"};
-                    String direction = (directionGrade >= 0 && directionGrade < directions.length) 
-                        ? directions[directionGrade] : "未知风向";
-                    
-                    result.put("wind_direction", direction);
-                    result.put("direction_angle", directionAngle);
-                } else if (data[0] == 0x03) {
-                    // 风速数据
-                    int speedValue = (data[3] & 0xFF) << 8 | (data[4] & 0xFF);
-                    double speed = speedValue / 10.0;
-                    result.put("wind_speed", speed);
-                }
+    private static boolean samePlan(ModbusReadPlanner.ReadPlan a, ModbusReadPlanner.ReadPlan b) {
+        if (a.getMembers().size() != b.getMembers().size()
+                || !Arrays.equals(a.getRequest().getFrame(), b.getRequest().getFrame())) {
+            return false;
+        }
+        for (int i = 0; i < a.getMembers().size(); i++) {
+            ModbusReadPlanner.Member x = a.getMembers().get(i);
+            ModbusReadPlanner.Member y = b.getMembers().get(i);
+            if (!x.getDeviceId().equals(y.getDeviceId())
+                    || !Arrays.equals(x.getRequest().getFrame(), y.getRequest().getFrame())) {
+                return false;
             }
-        } catch (Exception e) {
-            log.error("解析气象传感器数据出错: {}", e.getMessage(), e);
         }
-        return result;
+        return true;
     }
 
     /**
-     * 解析水质传感器数据
+     * 把一个读取计划加入（或替换进）轮询调度器，到期时投递到所在总线的队列串行执行。
+     * 计划可能只包含一个传感器，也可能是同一从站上多个寄存器相邻的传感器合并而成。
+     * 首次执行时间按计划标识错开到周期内的固定相位，各计划的轮询均匀分布，而不是每个周期集中到达。
      */
-    private Map<String, Object> parseWaterQualityData(byte[] data) {
-        Map<String, Object> result = new HashMap<>();
-        try {
-            if (data.length >= 9) {
-                // 解析温度
-                int tempValue = ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
-                int tempDecimal = ((data[5] & 0xFF) << 8) | (data[6] & 0xFF);
-                double temperature = Math.round((tempValue / Math.pow(10, tempDecimal)) * Math.pow(10, tempDecimal)) / Math.pow(10, tempDecimal);
-                
-                // 解析pH值
-                double phValue = ((data[7] & 0xFF) << 8 | (data[8] & 0xFF)) / 100.0;
-                
-                result.put("water_temperature", temperature);
-                result.put("ph_value", phValue);
+    private void schedulePlan(Long key, ActivePlan active) {
+        activePlans.put(key, active);
+        log.info("总线 {} 上的传感器 {} 已加入轮询调度，间隔 {} ms", active.bus.getName(), describe(active.plan), active.intervalMs);
+        // 后台轮询优先级最低，下一轮开始前仍未执行的轮询直接丢弃；所有成员都在熔断中且未到探测时间时不投递
+        long initialDelayMs = serialBusProperties.isPollPhaseSpread() ? PollScheduler.phaseDelayMs(key, active.intervalMs) : 0;
+        pollScheduler.schedule(key, active.intervalMs, initialDelayMs, serialBusProperties.getPollJitterMs(), () -> {
+            // 串口重连期间总线暂停，不投递轮询
+            if (!active.bus.getExecutor().isPaused() && isAnyPollAllowed(active.plan)) {
+                long submittedNanos = System.nanoTime();
+                active.bus.getExecutor().submit(SerialTaskPriority.POLLING, key, active.intervalMs,
+                        () -> pollPlan(active.bus, active.plan, submittedNanos));
+            }
+        });
+    }
+
+    private boolean isAnyPollAllowed(ModbusReadPlanner.ReadPlan plan) {
+        for (ModbusReadPlanner.Member member : plan.getMembers()) {
+            if (healthTracker.isPollAllowed(member.getDeviceId())) {
+                return true;
             }
-        } catch (Exception e) {
-            log.error("解析水质传感器数据出错: {}", e.getMessage(), e);
         }
-        return result;
+        return false;
     }
 
     /**
-     * 解析其他传感器数据
+     * 执行一次读取计划：合并读取成功时拆分给各个设备；
+     * 合并读取返回异常响应（如部分寄存器不存在）时，本轮回退为逐个读取。
+     * @param submittedNanos 本轮轮询投递的时间，之后已被即时读取过的设备本轮不再读取
      */
-    private Map<String, Object> parseOtherSensorData(byte[] data) {
-        Map<String, Object> result = new HashMap<>();
+    private void pollPlan(SerialBus bus, ModbusReadPlanner.ReadPlan plan, long submittedNanos) {
+        // 熔断中的设备只在探测时间到期时发送请求
+        List<ModbusReadPlanner.Member> members = new ArrayList<>(plan.getMembers().size());
+        for (ModbusReadPlanner.Member member : plan.getMembers()) {
+            Long readNanos = onDemandReadNanos.get(member.getDeviceId());
+            if (readNanos != null && readNanos - submittedNanos > 0) {
+                continue;
+            }
+            if (healthTracker.tryAcquire(member.getDeviceId())) {
+                members.add(member);
+                taskRegistry.recordPoll(member.getDeviceId());
+            }
+        }
+        if (members.isEmpty()) {
+            return;
+        }
         try {
-            result.put("raw_data", bytesToHexString(data));
+            if (plan.isCoalesced()) {
+                Long leadId = members.get(0).getDeviceId();
+                ModbusResponse response = bus.getModbusClient().execute(leadId, plan.getRequest(),
+                        serialBusManager.getTransactionTimeoutMs(leadId));
+                if (response == null || !response.isException()) {
+                    // 合并读取是同一从站的一次事务，结果交给本轮取得许可的成员；熔断中未到探测时间的成员不计入结果
+                    for (ModbusReadPlanner.Member member : members) {
+                        handleResponse(member.getDeviceId(), response != null ? plan.split(response, member) : null);
+                    }
+                    return;
+                }
+                log.warn("合并读取 {} 返回异常响应，异常码: {}，本轮回退为逐个读取", describe(plan), response.getExceptionCode());
+            }
+            for (ModbusReadPlanner.Member member : members) {
+                // 发送请求并按帧接收，CRC错误、不完整或不匹配的响应在事务层被丢弃并重试
+                ModbusResponse response = bus.getModbusClient().execute(member.getDeviceId(), member.getRequest(),
+                        serialBusManager.getTransactionTimeoutMs(member.getDeviceId()));
+                handleResponse(member.getDeviceId(), response);
+            }
         } catch (Exception e) {
-            log.error("解析其他传感器数据出错: {}", e.getMessage(), e);
+            log.error("采集任务异常: {}", e.getMessage(), e);
+            for (ModbusReadPlanner.Member member : members) {
+                taskRegistry.recordFailure(member.getDeviceId(), "采集异常: " + e.getMessage());
+                completeRead(member.getDeviceId(), null, "采集异常: " + e.getMessage());
+            }
         }
-        return result;
-    }
-
-    /**
-     * 将16进制表示的字符串（例如 "01 0A"）转换为字节数组（例如 {0x01, 0x0A}）。
-     * 会自动忽略空格。
-     * @param hex 16进制字符串
-     * @return 对应的字节数组
-     */
-    byte[] hexStringToByteArray(String hex) {
-        hex = hex.replaceAll("\\s", "");
-        int len = hex.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                    + Character.digit(hex.charAt(i + 1), 16));
-        }
-        return data;
     }
 
     /**
-     * 将字节数组转换为16进制表示的字符串，每个字节后附带一个空格，便于阅读。
-     * @param bytes 字节数组
-     * @return 格式化的16进制字符串
+     * 处理单个传感器的一帧响应：更新在线状态、解析并交给数据处理服务。
      */
-    String bytesToHexString(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X ", b));
+    private void handleResponse(Long sensorId, ModbusResponse response) {
+        AgricultureDevice sensor = activeSensors.get(sensorId);
+        if (sensor == null) {
+            // 设备已在重载中被删除
+            completeRead(sensorId, null, "设备已删除");
+            return;
+        }
+        String sensorName = sensor.getDeviceName();
+        if (response == null) {
+            completeRead(sensorId, null, "未收到有效响应");
+            taskRegistry.recordFailure(sensorId, "未收到有效响应");
+            DeviceHealthTracker.State previous = healthTracker.getState(sensorId);
+            DeviceHealthTracker.State state = healthTracker.recordFailure(sensorId);
+            if (state == DeviceHealthTracker.State.CLOSED) {
+                log.warn("轮询 {} (ID: {}) 未收到有效响应。", sensorName, sensorId);
+            } else if (previous == DeviceHealthTracker.State.CLOSED) {
+                log.warn("传感器 {} (ID: {}) 连续 {} 次未收到有效响应，暂停轮询，{} ms 后探测。", sensorName, sensorId,
+                        serialBusProperties.getCircuitBreaker().getFailureThreshold(), healthTracker.getBackoffMs(sensorId));
+            } else {
+                log.debug("传感器 {} (ID: {}) 探测无响应，{} ms 后再次探测。", sensorName, sensorId, healthTracker.getBackoffMs(sensorId));
+            }
+            return;
+        }
+        // 收到完整有效的帧（包括异常响应）说明设备在线
+        if (healthTracker.recordSuccess(sensorId) != DeviceHealthTracker.State.CLOSED) {
+            log.info("传感器 {} (ID: {}) 已恢复响应，恢复正常轮询。", sensorName, sensorId);
+        }
+        if (response.isException()) {
+            log.warn("轮询 {} (ID: {}) 返回异常响应，异常码: {}", sensorName, sensorId, response.getExceptionCode());
+            taskRegistry.recordFailure(sensorId, "异常响应，异常码: " + response.getExceptionCode());
+            completeRead(sensorId, null, "异常响应，异常码: " + response.getExceptionCode());
+        } else {
+            taskRegistry.recordSuccess(sensorId);
+            String deviceType = sensor.getDeviceTypeId();
+            // 读数会交给处理流水线继续处理，每帧使用新的对象
+            SensorReading reading = new SensorReading();
+            decoderRegistry.decode(sensor, response.getFrame(), System.currentTimeMillis(), reading);
+            reading.setType(getDataTypeByDeviceType(deviceType));
+            // 读数内容只在调试时输出：转换为 Map 要为每个参数装箱，每帧都做会成为采集路径上的主要分配
+            if (log.isDebugEnabled()) {
+                log.debug("成功接收并解析来自 {} (ID: {}) 的数据: {}", sensorName, sensorId, reading);
+            }
+            // 先交给等待中的即时读取，后续处理会补充读数
+            completeRead(sensorId, reading, null);
+            // 在线状态更新、入库、推送、预警和策略检查都交给处理流水线，提交不阻塞，数据库或MQTT变慢不影响总线轮询
+            ingestPipeline.submit(reading);
         }
-        return sb.toString().trim();
     }
 
     /**
-     * 解析风向传感器数据
+     * 立即读取一个传感器：以人工操作优先级投递一次读取并等待解析结果。
+     * 单飞合并：同一设备已有即时读取在等待时直接共享同一个结果；排队或执行中的后台轮询先完成时，
+     * 等待中的即时读取直接使用该轮询的结果，投递的读取任务执行时发现结果已有便不再占用总线。
+     * 反过来，即时读取完成后，此前已投递、仍在排队的该设备轮询执行时跳过该设备，不再重复读取。
+     * 因此无论多少调用方同时请求，一个设备同一时刻最多只有一次总线事务。
+     * 发起读取的调用方等待超时后取消排队中的读取任务，共享该结果的调用方同时收到超时，过期的读取不再占用总线。
+     * 熔断中的设备也会被读取，读取结果计入熔断器（相当于一次人工探测）。
+     * @param deviceId 传感器ID
+     * @param timeoutMs 最长等待时间（含排队），不超过 serial.read-now-max-timeout-ms
+     * @return success、data（解析后的数据）或 message，shared 表示是否与其他读取共享了结果
+     * @throws IllegalArgumentException 设备不存在、没有可用的采集指令或等待时间超出范围
+     * @throws RejectedExecutionException 总线繁忙，指令队列已满
+     * @throws TimeoutException 超时未得到结果
      */
-    Map<String, Object> parseWindDirectionData(byte[] data) {
-        Map<String, Object> result = new HashMap<>();
+    public Map<String, Object> readNow(Long deviceId, long timeoutMs) throws InterruptedException, TimeoutException {
+        long maxTimeoutMs = serialBusProperties.getReadNowMaxTimeoutMs();
+        if (timeoutMs <= 0 || timeoutMs > maxTimeoutMs) {
+            throw new IllegalArgumentException("等待时间应在 1 ~ " + maxTimeoutMs + " ms 之间");
+        }
+        AgricultureDevice sensor = activeSensors.get(deviceId);
+        if (sensor == null) {
+            throw new IllegalArgumentException("传感器不存在: " + deviceId);
+        }
+        ModbusRequest request = commandRegistry.get(sensor).getPollRequest();
+        if (request == null) {
+            throw new IllegalArgumentException("传感器 " + sensor.getDeviceName() + " 没有可用的采集指令");
+        }
+        CompletableFuture<Map<String, Object>> created = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> future = pendingReads.putIfAbsent(deviceId, created);
+        boolean shared = future != null;
+        FutureTask<Void> task = null;
+        if (!shared) {
+            future = created;
+            SerialBus bus = serialBusManager.getBusForDevice(deviceId);
+            task = new FutureTask<>(() -> {
+                if (created.isDone()) {
+                    // 排队期间已被一次轮询满足
+                    return;
+                }
+                try {
+                    handleResponse(deviceId, bus.getModbusClient().execute(deviceId, request,
+                            serialBusManager.getTransactionTimeoutMs(deviceId)));
+                } catch (Exception e) {
+                    log.error("即时读取 {} (ID: {}) 异常: {}", sensor.getDeviceName(), deviceId, e.getMessage(), e);
+                    completeRead(deviceId, null, "采集异常: " + e.getMessage());
+                } finally {
+                    onDemandReadNanos.put(deviceId, System.nanoTime());
+                }
+            }, null);
+            try {
+                bus.getExecutor().submit(SerialTaskPriority.INTERACTIVE, deviceId, timeoutMs, task);
+            } catch (RejectedExecutionException e) {
+                pendingReads.remove(deviceId, created);
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        Map<String, Object> result;
         try {
-            if (data.length >= 7) {
-                int directionGrade = ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
-                int directionAngle = ((data[5] & 0xFF) << 8) | (data[6] & 0xFF);
-                
-                String[] directions = {"北风", "东北风", "东风", "东南风", "南风", "西南风", "西风", "西北风"};
-                String direction = (directionGrade >= 0 && directionGrade < directions.length) 
-                    ? directions[directionGrade] : "未知风向";
-                
-                result.put("direction_grade", directionGrade);
-                result.put("direction_angle", directionAngle);
-                result.put("direction", direction);
-                result.put("wind_direction", direction);
+            result = new LinkedHashMap<>(future.get(timeoutMs, TimeUnit.MILLISECONDS));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                // 共享的读取已被发起方按超时取消
+                throw (TimeoutException) e.getCause();
             }
-        } catch (Exception e) {
-            log.error("解析风向数据出错: {}", e.getMessage(), e);
+            throw e.getCause() instanceof RejectedExecutionException ? (RejectedExecutionException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            if (task != null) {
+                // 发起方超时：取消排队中的读取任务，共享该结果的调用方一并结束等待，下一次请求重新投递
+                pendingReads.remove(deviceId, created);
+                task.cancel(false);
+                created.completeExceptionally(e);
+            }
+            throw e;
         }
+        result.put("shared", shared);
         return result;
     }
 
     /**
-     * 解析百叶箱数据
+     * 把一个传感器的读取结果交给等待中的即时读取
+     * @param reading 解析后的读数，失败时为 null
+     * @param error 失败原因
      */
-    Map<String, Object> parseBaiyeBoxData(byte[] data) {
-        Map<String, Object> result = new HashMap<>();
-        try {
-            if (data.length >= 19) {
-                double humidity = Math.round(((data[3] & 0xFF) << 8 | (data[4] & 0xFF)) / 10.0 * 10.0) / 10.0;
-                double temperature = Math.round(((data[5] & 0xFF) << 8 | (data[6] & 0xFF)) / 10.0 * 10.0) / 10.0;
-                double noise = Math.round(((data[7] & 0xFF) << 8 | (data[8] & 0xFF)) / 10.0 * 10.0) / 10.0;
-                int pm25 = (data[9] & 0xFF) << 8 | (data[10] & 0xFF);
-                int pm10 = (data[13] & 0xFF) << 8 | (data[14] & 0xFF);
-                int light = (data[17] & 0xFF) << 8 | (data[18] & 0xFF);
-                
-                result.put("humidity", humidity);
-                result.put("temperature", temperature);
-                result.put("noise", noise);
-                result.put("pm25", pm25);
-                result.put("pm10", pm10);
-                result.put("light", light);
-                result.put("light_intensity", light);
+    private void completeRead(Long sensorId, SensorReading reading, String error) {
+        CompletableFuture<Map<String, Object>> pending = pendingReads.remove(sensorId);
+        if (pending == null) {
+            return;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", reading != null);
+        if (reading != null) {
+            result.put("data", reading.toMap());
+            result.put("readTime", reading.getTimestamp());
+        } else {
+            result.put("message", error);
+        }
+        pending.complete(result);
+    }
+
+    private String describe(ModbusReadPlanner.ReadPlan plan) {
+        StringBuilder sb = new StringBuilder();
+        for (ModbusReadPlanner.Member member : plan.getMembers()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
             }
-        } catch (Exception e) {
-            log.error("解析百叶箱数据出错: {}", e.getMessage(), e);
+            AgricultureDevice sensor = activeSensors.get(member.getDeviceId());
+            sb.append(sensor != null ? sensor.getDeviceName() : "?").append(" (ID: ").append(member.getDeviceId()).append(")");
         }
-        return result;
+        return sb.toString();
     }
 
     /**
-     * 解析风速传感器数据
+     * 调度中的一个读取计划
      */
-    Map<String, Object> parseWindSpeedData(byte[] data) {
-        Map<String, Object> result = new HashMap<>();
-        try {
-            if (data.length >= 5) {
-                int speedValue = (data[3] & 0xFF) << 8 | (data[4] & 0xFF);
-                double speed = speedValue / 10.0;
-                result.put("speed", speed);
-                result.put("wind_speed", speed);
-            }
-        } catch (Exception e) {
-            log.error("解析风速数据出错: {}", e.getMessage(), e);
+    private static class ActivePlan {
+        final SerialBus bus;
+        final ModbusReadPlanner.ReadPlan plan;
+        volatile long intervalMs;
+
+        ActivePlan(SerialBus bus, ModbusReadPlanner.ReadPlan plan, long intervalMs) {
+            this.bus = bus;
+            this.plan = plan;
+            this.intervalMs = intervalMs;
         }
-        return result;
     }
 
     /**
@@ -398,19 +692,117 @@ public class SensorCommunicationService {
 
     /**
      * 公开方法，用于外部触发重新加载传感器配置。
-     * 它会先停止所有当前任务，然后重新从数据库加载并启动任务。
+     * 只调整有变化的任务，没有变化的计划继续按原节奏轮询，可以频繁调用。
+     * @return 本次调整的统计
      */
-    public void reloadSensorConfig() {
+    public Map<String, Object> reloadSensorConfig() {
         log.info("正在重新加载传感器配置...");
-        // stopAllSensorTasks(); // 移除
-        startSensorCommunication();
+        return reconcileSensors();
+    }
+
+    /**
+     * 各总线的容量报告：按当前调度中的读取计划计算预计利用率和每个计划的最坏数据陈旧度
+     * @return 总线名称 -> 报告
+     */
+    public Map<String, Object> getCapacityReport() {
+        Map<SerialBus, List<BusCapacityPlanner.PlanLoad>> busLoads = currentLoads(null);
+        Map<String, Object> buses = new LinkedHashMap<>();
+        for (SerialBus bus : serialBusManager.getBuses()) {
+            buses.put(bus.getName(), busCapacityService.report(bus, busLoads.getOrDefault(bus, new ArrayList<>())));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("limits", busCapacityService.getLimits());
+        result.put("buses", buses);
+        return result;
+    }
+
+    /**
+     * 容量预检：假设加入（或按新配置替换）一个传感器，计算其所在总线的预计利用率和最坏陈旧度，
+     * 用于在安装硬件、录入设备之前规划总线容量。新设备按单独一次事务估算，不考虑与其他设备合并读取。
+     * @param candidate 待加入的设备，需要采集指令；ID 为空时按新设备处理
+     * @param busName 所在总线，为空时按设备ID的映射（未映射时为默认总线）
+     * @param intervalMs 轮询间隔，为空时使用设备配置的间隔
+     * @return 预检结果，admitted 为 false 表示按当前准入策略会被拒绝调度
+     */
+    public Map<String, Object> checkCapacity(AgricultureDevice candidate, String busName, Long intervalMs) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        SerialBus bus = busName != null ? serialBusManager.getBus(busName) : serialBusManager.getBusForDevice(candidate.getId());
+        if (bus == null) {
+            result.put("admitted", false);
+            result.put("error", "总线不存在: " + busName);
+            return result;
+        }
+        DeviceCommandSet commands = DeviceCommandSet.compile(candidate);
+        ModbusRequest request = commands.getPollRequest();
+        if (request == null) {
+            result.put("admitted", false);
+            result.put("error", commands.hasErrors() ? "采集指令无效: " + String.join("; ", commands.getErrors()) : "未配置采集指令");
+            return result;
+        }
+        long interval = intervalMs != null && intervalMs > 0 ? intervalMs : serialBusManager.getPollIntervalMs(candidate.getId());
+        List<ModbusReadPlanner.Member> members = new ArrayList<>();
+        members.add(new ModbusReadPlanner.Member(candidate.getId(), request));
+        ModbusReadPlanner.ReadPlan plan = ModbusReadPlanner.plan(members, -1).get(0);
+
+        List<BusCapacityPlanner.PlanLoad> loads = currentLoads(candidate.getId()).getOrDefault(bus, new ArrayList<>());
+        Map<String, Object> before = busCapacityService.report(bus, loads);
+        List<BusCapacityPlanner.PlanLoad> projected = new ArrayList<>(loads);
+        projected.add(busCapacityService.load(bus, plan, interval));
+        Map<String, Object> after = busCapacityService.report(bus, projected);
+
+        boolean overloaded = "OVERLOADED".equals(after.get("status"));
+        result.put("admitted", !overloaded || !busCapacityService.isRefuseOnOverload());
+        result.put("bus", bus.getName());
+        result.put("status", after.get("status"));
+        result.put("utilizationBefore", before.get("projectedUtilization"));
+        result.put("utilizationAfter", after.get("projectedUtilization"));
+        result.put("limits", busCapacityService.getLimits());
+        result.put("projected", after);
+        return result;
+    }
+
+    /**
+     * 当前调度中各总线的计划负载
+     * @param excludeDeviceId 跳过包含该设备的计划（容量预检替换已有设备时），为空时不跳过
+     */
+    private Map<SerialBus, List<BusCapacityPlanner.PlanLoad>> currentLoads(Long excludeDeviceId) {
+        Map<SerialBus, List<BusCapacityPlanner.PlanLoad>> busLoads = new LinkedHashMap<>();
+        for (ActivePlan active : activePlans.values()) {
+            boolean excluded = false;
+            for (ModbusReadPlanner.Member member : active.plan.getMembers()) {
+                excluded |= member.getDeviceId().equals(excludeDeviceId);
+            }
+            if (!excluded) {
+                busLoads.computeIfAbsent(active.bus, k -> new ArrayList<>())
+                        .add(busCapacityService.load(active.bus, active.plan, active.intervalMs));
+            }
+        }
+        return busLoads;
+    }
+
+    /**
+     * 获取轮询调度计划：每个计划（以计划中第一个设备ID标识）的间隔、距下次到期时间和已投递次数。
+     */
+    public Map<Long, Map<String, Object>> getPollSchedule() {
+        return pollScheduler.getStats();
     }
 
     /**
      * 获取当前所有传感器任务的运行状态。
-     * @return 一个Map，Key是设备ID，Value是任务状态（"RUNNING" 或 "STOPPED"）。
+     * @return Key是设备ID，Value是任务状态（RUNNING / STOPPED / INVALID / REJECTED）、所在总线和计划、最近轮询时间、成功/失败计数和熔断器状态
+     */
+    public Map<Long, Map<String, Object>> getSensorTaskStatus() {
+        Map<Long, Map<String, Object>> status = taskRegistry.snapshot();
+        for (Map.Entry<Long, Map<String, Object>> entry : status.entrySet()) {
+            entry.getValue().put("breaker", healthTracker.snapshot(entry.getKey()));
+        }
+        return status;
+    }
+
+    /**
+     * 处于熔断和探测中的传感器数量
      */
-    public Map<String, String> getSensorTaskStatus() {
-        return new HashMap<>();
+    public Map<String, Integer> getBreakerSummary() {
+        return healthTracker.countByState();
     }
-} 
\ No newline at end of file
+}
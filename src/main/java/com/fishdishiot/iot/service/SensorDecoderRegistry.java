@@ -0,0 +1,127 @@
+package com.fishdishiot.iot.service;
+
+import com.fishdishiot.iot.config.SensorDecoderProperties;
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import com.fishdishiot.iot.util.FrameDecoder;
+import com.fishdishiot.iot.util.SensorReading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 传感器解码器注册表
+ * 启动时把 sensor-decoder 中声明的各型号编译为 {@link FrameDecoder}，按设备找到型号后解码响应帧。
+ * 配置错误的型号在启动时报错并跳过，不影响其他型号。
+ */
+@Service
+public class SensorDecoderRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(SensorDecoderRegistry.class);
+
+    private static final FrameDecoder[] NO_DECODERS = new FrameDecoder[0];
+
+    @Autowired
+    private SensorDecoderProperties properties;
+
+    /** 型号名称 -> 解码器 */
+    private volatile Map<String, FrameDecoder> decoders = Collections.emptyMap();
+
+    /** 设备类型ID -> 依次尝试的解码器 */
+    private volatile Map<String, FrameDecoder[]> typeDecoders = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        Map<String, FrameDecoder> compiled = new LinkedHashMap<>();
+        for (Map.Entry<String, SensorDecoderProperties.Model> entry : properties.getModels().entrySet()) {
+            try {
+                compiled.put(entry.getKey(), compile(entry.getKey(), entry.getValue()));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                log.error("传感器型号 {} 配置无效，已跳过: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        Map<String, FrameDecoder[]> byType = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : properties.getDeviceTypes().entrySet()) {
+            List<FrameDecoder> candidates = new ArrayList<>();
+            for (String model : entry.getValue()) {
+                FrameDecoder decoder = compiled.get(model);
+                if (decoder != null) {
+                    candidates.add(decoder);
+                } else {
+                    log.error("设备类型 {} 引用的传感器型号 {} 不存在", entry.getKey(), model);
+                }
+            }
+            byType.put(entry.getKey(), candidates.toArray(NO_DECODERS));
+        }
+        for (Map.Entry<Long, String> entry : properties.getDevices().entrySet()) {
+            if (!compiled.containsKey(entry.getValue())) {
+                log.error("设备 {} 指定的传感器型号 {} 不存在", entry.getKey(), entry.getValue());
+            }
+        }
+        decoders = compiled;
+        typeDecoders = byType;
+        log.info("已加载 {} 个传感器型号: {}", compiled.size(), compiled.keySet());
+    }
+
+    private static FrameDecoder compile(String name, SensorDecoderProperties.Model model) {
+        FrameDecoder.Builder builder = FrameDecoder.builder(name).slaveAddress(model.getSlaveAddress()).raw(model.isRaw());
+        for (SensorDecoderProperties.Field field : model.getFields()) {
+            builder.field(field.getName(), field.getRegister(), field.getType(), field.getScale(), field.getDecimalRegister(),
+                    field.getLabels(), field.getUnknownLabel());
+            for (String alias : field.getAliases()) {
+                builder.alias(alias);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 找到设备这一帧响应对应的型号
+     * @return 解码器，没有符合的型号时返回 null
+     */
+    public FrameDecoder resolve(AgricultureDevice device, byte[] frame) {
+        String model = properties.getDevices().get(device.getId());
+        if (model != null) {
+            return decoders.get(model);
+        }
+        FrameDecoder[] candidates = device.getDeviceTypeId() != null ? typeDecoders.get(device.getDeviceTypeId()) : null;
+        if (candidates == null) {
+            return decoders.get(properties.getDefaultModel());
+        }
+        for (FrameDecoder decoder : candidates) {
+            if (decoder.matches(frame)) {
+                return decoder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解码设备的一帧响应
+     * @param out 写入的读数，会先被清空
+     * @return 所用的解码器，没有符合的型号时返回 null（读数为空）
+     */
+    public FrameDecoder decode(AgricultureDevice device, byte[] frame, long timestamp, SensorReading out) {
+        FrameDecoder decoder = resolve(device, frame);
+        out.reset(device, timestamp, decoder, frame);
+        if (decoder != null) {
+            decoder.decode(frame, out);
+        }
+        return decoder;
+    }
+
+    /**
+     * 已加载的型号名称
+     */
+    public List<String> getModels() {
+        return new ArrayList<>(decoders.keySet());
+    }
+}
@@ -0,0 +1,48 @@
+package com.fishdishiot.iot.service;
+
+import com.fishdishiot.iot.util.SerialBusMetrics;
+import com.fishdishiot.iot.util.SerialCommandExecutor;
+import com.fishdishiot.iot.util.SerialTaskPriority;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * 串口总线
+ * 一条 RS-485 线路：一个串口 + 一个独立的指令队列和工作线程。
+ * 不同总线之间的轮询和控制互不阻塞，可以真正并行。
+ */
+@Getter
+public class SerialBus {
+
+    /** 总线名称 */
+    private final String name;
+
+    /** 串口 */
+    private final SerialPortService port;
+
+    /** 该总线专用的指令执行器 */
+    private final SerialCommandExecutor executor;
+
+    /** 该总线上的 Modbus RTU 事务客户端 */
+    private final ModbusRtuClient modbusClient;
+
+    /** 该总线的运行指标 */
+    private final SerialBusMetrics metrics = new SerialBusMetrics();
+
+    public SerialBus(String name, SerialPortService port, int retries, int minResponseTimeoutMs,
+                     Map<Long, Integer> deviceGapMs, Map<SerialTaskPriority, Integer> queueCapacities) {
+        this.name = name;
+        this.port = port;
+        this.executor = new SerialCommandExecutor(name, port.getBaudRate(), deviceGapMs, queueCapacities, metrics);
+        this.modbusClient = new ModbusRtuClient(port, retries, minResponseTimeoutMs, metrics);
+    }
+
+    /**
+     * 关闭总线：停止工作线程并关闭串口
+     */
+    public void close() {
+        executor.shutdown();
+        port.disconnect();
+    }
+}
@@ -0,0 +1,237 @@
+package com.fishdishiot.iot.service;
+
+import com.fishdishiot.iot.config.SerialBusProperties;
+import com.fazecast.jSerialComm.SerialPort;
+import com.fishdishiot.iot.util.FrameCaptureLog;
+import com.fishdishiot.iot.util.JSerialCommTransport;
+import com.fishdishiot.iot.util.SerialTransport;
+import com.fishdishiot.iot.util.VirtualModbusTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 串口总线管理服务
+ * 按配置打开 N 个串口，每个串口对应一条总线，拥有独立的指令队列和工作线程。
+ * 设备按 serial.buses[].device-ids 映射到总线，未映射的设备使用第一条（默认）总线。
+ */
+@Service
+public class SerialBusManager {
+
+    private static final Logger log = LoggerFactory.getLogger(SerialBusManager.class);
+
+    @Autowired
+    private SerialBusProperties properties;
+
+    // 总线名称 -> 总线，保持配置顺序
+    private final Map<String, SerialBus> buses = new LinkedHashMap<>();
+
+    // 设备ID -> 总线名称
+    private final Map<Long, String> deviceBusMap = new HashMap<>();
+
+    private SerialBus defaultBus;
+
+    // 收发帧抓包，未启用时为 null
+    private FrameCaptureLog captureLog;
+
+    @PostConstruct
+    public void init() {
+        log.info("正在初始化串口总线...");
+        List<SerialBusProperties.Bus> configs = properties.getBuses();
+        if (configs == null || configs.isEmpty()) {
+            SerialBusProperties.Bus single = new SerialBusProperties.Bus();
+            single.setName(SerialBusProperties.DEFAULT_BUS);
+            single.setPortName(properties.getPortName());
+            configs = new ArrayList<>();
+            configs.add(single);
+        }
+        for (SerialBusProperties.Bus config : configs) {
+            String name = config.getName() != null ? config.getName() : config.getPortName();
+            int baudRate = config.getBaudRate() != null ? config.getBaudRate() : properties.getBaudRate();
+            SerialPortService port = new SerialPortService(createTransport(name, config, baudRate), baudRate,
+                    properties.getResponseTimeoutMs(), properties.getInterCharTimeoutMs());
+            port.init();
+            SerialBus bus = new SerialBus(name, port, properties.getRetries(),
+                    properties.getMinResponseTimeoutMs(), properties.getDeviceGapMs(), properties.getQueueCapacity().toMap());
+            buses.put(name, bus);
+            if (defaultBus == null) {
+                defaultBus = bus;
+            }
+            if (config.getDeviceIds() != null) {
+                for (Long deviceId : config.getDeviceIds()) {
+                    deviceBusMap.put(deviceId, name);
+                }
+            }
+            log.info("总线 {} 已创建，串口: {}，波特率: {}，绑定设备数: {}", name, port.getPortName(), baudRate,
+                    config.getDeviceIds() != null ? config.getDeviceIds().size() : 0);
+        }
+        initCapture();
+    }
+
+    /**
+     * 启用抓包时创建抓包日志并交给各总线；抓包文件无法创建时只告警，不影响采集
+     */
+    private void initCapture() {
+        SerialBusProperties.Capture capture = properties.getCapture();
+        if (!capture.isEnabled()) {
+            return;
+        }
+        try {
+            captureLog = new FrameCaptureLog(Paths.get(capture.getDirectory()), capture.getFileSizeMb() * 1024 * 1024,
+                    capture.getMaxFiles());
+            for (SerialBus bus : buses.values()) {
+                bus.getModbusClient().setCaptureLog(captureLog);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("创建抓包文件失败，不记录收发帧: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 抓包日志
+     * @return 未启用或创建失败时返回 null
+     */
+    public FrameCaptureLog getCaptureLog() {
+        return captureLog;
+    }
+
+    /**
+     * 按配置创建总线的传输层：默认为 jSerialComm 物理串口，transport=virtual 时为内存中的虚拟 Modbus 总线
+     */
+    private SerialTransport createTransport(String name, SerialBusProperties.Bus config, int baudRate) {
+        String transport = config.getTransport() != null ? config.getTransport() : properties.getTransport();
+        if (SerialBusProperties.TRANSPORT_VIRTUAL.equalsIgnoreCase(transport)) {
+            SerialBusProperties.Virtual virtual = config.getVirtual() != null ? config.getVirtual() : properties.getVirtual();
+            log.warn("总线 {} 使用虚拟 Modbus 总线（周转时间 {} ms，抖动 {} ms，错误率 {}），不会访问物理串口",
+                    name, virtual.getLatencyMs(), virtual.getJitterMs(), virtual.getErrorRate());
+            return new VirtualModbusTransport("virtual:" + name, baudRate, virtual.getLatencyMs(), virtual.getJitterMs(),
+                    virtual.getErrorRate(), virtual.getSlaves(), virtual.getRegisters());
+        }
+        return new JSerialCommTransport(config.getPortName(), baudRate);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (SerialBus bus : buses.values()) {
+            bus.close();
+        }
+        if (captureLog != null) {
+            captureLog.close();
+        }
+    }
+
+    /**
+     * 获取设备所在的总线，未配置映射的设备使用默认总线
+     * @param deviceId 设备ID
+     * @return 总线
+     */
+    public SerialBus getBusForDevice(Long deviceId) {
+        String name = deviceId != null ? deviceBusMap.get(deviceId) : null;
+        SerialBus bus = name != null ? buses.get(name) : null;
+        return bus != null ? bus : defaultBus;
+    }
+
+    /**
+     * 获取设备的 Modbus 事务超时预算（含重试）
+     * @param deviceId 设备ID
+     * @return 毫秒
+     */
+    public int getTransactionTimeoutMs(Long deviceId) {
+        Integer override = deviceId != null ? properties.getDeviceTimeoutMs().get(deviceId) : null;
+        return override != null ? override : properties.getTransactionTimeoutMs();
+    }
+
+    /**
+     * 获取设备的轮询间隔
+     * @param deviceId 设备ID
+     * @return 毫秒
+     */
+    public int getPollIntervalMs(Long deviceId) {
+        Integer override = deviceId != null ? properties.getDevicePollIntervalMs().get(deviceId) : null;
+        return override != null ? override : properties.getPollIntervalMs();
+    }
+
+    public SerialBus getBus(String name) {
+        return buses.get(name);
+    }
+
+    public SerialBus getDefaultBus() {
+        return defaultBus;
+    }
+
+    public Collection<SerialBus> getBuses() {
+        return buses.values();
+    }
+
+    /**
+     * 获取所有总线的串口状态
+     * @return 总线名称 -> 状态信息
+     */
+    public Map<String, Object> getBusStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (SerialBus bus : buses.values()) {
+            Map<String, Object> status = new HashMap<>();
+            status.put("portName", bus.getPort().getPortName());
+            status.put("baudRate", bus.getPort().getBaudRate());
+            status.put("status", bus.getPort().getPortStatus());
+            status.put("connected", bus.getPort().isConnected());
+            status.put("queue", bus.getExecutor().getQueueStats());
+            status.put("spacing", bus.getExecutor().getSpacingStats());
+            status.put("turnaroundMs", bus.getModbusClient().getTurnaroundTracker().snapshotMillis());
+            if (bus.getPort().getTransport() instanceof VirtualModbusTransport) {
+                status.put("virtual", ((VirtualModbusTransport) bus.getPort().getTransport()).getStats());
+            }
+            result.put(bus.getName(), status);
+        }
+        return result;
+    }
+
+    /**
+     * 获取总线运行指标：事务耗时直方图、收发速率、超时/CRC错误/空读次数、排队等待、队列深度和利用率
+     * @param busName 总线名称，为空时返回所有总线
+     * @param includeDevices 是否包含每个设备的明细
+     * @return 总线名称 -> 指标
+     */
+    public Map<String, Object> getBusMetrics(String busName, boolean includeDevices) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (SerialBus bus : buses.values()) {
+            if (busName != null && !busName.equals(bus.getName())) {
+                continue;
+            }
+            Map<String, Object> metrics = bus.getMetrics().snapshot(includeDevices);
+            metrics.put("portName", bus.getPort().getPortName());
+            metrics.put("queueDepth", bus.getExecutor().getQueueStats());
+            result.put(bus.getName(), metrics);
+        }
+        return result;
+    }
+
+    /**
+     * 获取单个设备在其所在总线上的运行指标
+     * @param deviceId 设备ID
+     * @return 指标，设备尚无通信记录时返回 null
+     */
+    public Map<String, Object> getDeviceMetrics(Long deviceId) {
+        return getBusForDevice(deviceId).getMetrics().deviceSnapshot(deviceId);
+    }
+
+    public List<String> listPorts() {
+        return Arrays.stream(SerialPort.getCommPorts())
+                .map(SerialPort::getSystemPortName)
+                .collect(Collectors.toList());
+    }
+}
@@ -1,64 +1,160 @@
 package com.fishdishiot.iot.service;
 
 import com.fazecast.jSerialComm.SerialPort;
+import com.fishdishiot.iot.util.HexCodec;
+import com.fishdishiot.iot.util.ModbusFrameUtils;
+import com.fishdishiot.iot.util.SerialTransport;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
-@Service
+/**
+ * 串口服务
+ * 每个实例对应一个串口（一条 RS-485 总线），由 SerialBusManager 按配置创建和管理。
+ * 实际的字节收发交给 {@link SerialTransport}：默认是 jSerialComm 物理串口，也可以是用于压测的虚拟 Modbus 总线。
+ */
 public class SerialPortService {
 
     private static final Logger log = LoggerFactory.getLogger(SerialPortService.class);
 
     // 串口锁对象的getter方法
     @Getter
-    private final Object serialLock = new Object(); // 串口全局锁
-    @Value("${serial.port-name}")
-    private String portName;
+    private final Object serialLock = new Object(); // 本串口的锁
 
-    @Value("${serial.baud-rate}")
-    private int baudRate;
+    @Getter
+    private final int baudRate;
+
+    // 发出指令后等待响应首字节的超时时间
+    @Getter
+    private final int responseTimeoutMs;
+
+    // 字符间超时：收到部分数据后，超过该时间没有新字节即认为帧结束
+    private final int interCharTimeoutMs;
+
+    @Getter
+    private final SerialTransport transport;
+
+    private volatile boolean initialized;
+
+    // 端口故障信号，由串口看门狗检查：写入失败、传输层报告断开、连续读取无数据
+    private volatile int consecutiveWriteFailures;
+    private volatile int consecutiveEmptyReads;
+    private volatile boolean disconnected;
 
-    private SerialPort commPort;
+    // 最近一次读到数据（有设备应答）的时间
+    private volatile long lastAnsweredMillis;
+
+    // 写入前丢弃残留数据用的缓冲区，只在持有串口锁时使用
+    private final byte[] drainBuffer = new byte[256];
+
+    public SerialPortService(SerialTransport transport, int baudRate, int responseTimeoutMs, int interCharTimeoutMs) {
+        this.transport = transport;
+        this.baudRate = baudRate;
+        this.responseTimeoutMs = responseTimeoutMs;
+        this.interCharTimeoutMs = interCharTimeoutMs;
+        transport.setDisconnectListener(() -> {
+            disconnected = true;
+            log.warn("串口 {} 已断开", getPortName());
+        });
+    }
+
+    /**
+     * 当前的串口名称（适配器复位后可能被重新查找为新的名称）
+     */
+    public String getPortName() {
+        return transport.getName();
+    }
 
-    @PostConstruct
     public void init() {
-        log.info("正在初始化串口服务...");
+        log.info("正在初始化串口服务: {}", getPortName());
         connect();
     }
 
     public void connect() {
-        log.info("正在尝试连接串口: {}，波特率: {}", portName, baudRate);
-        commPort = SerialPort.getCommPort(portName);
-        commPort.setBaudRate(baudRate);
-
-        if (commPort.openPort()) {
-            log.info("成功打开串口: {}", portName);
+        disconnect();
+        log.info("正在尝试连接串口: {}，波特率: {}", getPortName(), baudRate);
+        initialized = true;
+        if (transport.open()) {
+            resetFaults();
+            log.info("成功打开串口: {}", getPortName());
         } else {
-            log.error("打开串口失败: {}。请检查串口名称和权限。", portName);
+            log.error("打开串口失败: {}。请检查串口名称和权限。", getPortName());
             log.info("可用串口: {}", listPorts());
         }
     }
 
-    @PreDestroy
+    /**
+     * 看门狗重新打开串口：原名称打不开且已不存在时，按设备标识重新查找（适配器复位后名称可能变化）
+     * @param excluded 其他总线正在使用的串口名称，不能被选用
+     * @return 是否打开成功
+     */
+    public boolean reopen(Collection<String> excluded) {
+        synchronized (serialLock) {
+            disconnect();
+            if (!transport.open()) {
+                String relocated = transport.relocate(excluded);
+                if (relocated == null) {
+                    return false;
+                }
+                log.warn("串口设备已更名为 {}，尝试打开", relocated);
+                if (!transport.open()) {
+                    return false;
+                }
+            }
+            initialized = true;
+            resetFaults();
+            return true;
+        }
+    }
+
     public void disconnect() {
-        if (commPort != null && commPort.isOpen()) {
-            if (commPort.closePort()) {
-                log.info("成功关闭串口: {}", portName);
+        if (transport.isOpen()) {
+            if (transport.close()) {
+                log.info("成功关闭串口: {}", getPortName());
             } else {
-                log.error("关闭串口失败: {}", portName);
+                log.error("关闭串口失败: {}", getPortName());
             }
         }
     }
 
+    /**
+     * 检查端口是否故障
+     * 连续读取无数据只在总线上最近有设备应答过时才算故障：串口一直读不到数据更可能是设备都离线，重开串口无济于事
+     * @param emptyReadThreshold 连续多少次读取无数据视为故障，0 表示不按读取判断
+     * @param answeredWithinMs 最近一次应答距今不超过该时间时，连续读取无数据才视为故障
+     * @return 故障原因，正常时返回 null
+     */
+    public String getFault(int emptyReadThreshold, long answeredWithinMs) {
+        if (!initialized) {
+            return null;
+        }
+        if (disconnected) {
+            return "串口已断开";
+        }
+        if (!transport.isOpen()) {
+            return "串口未打开";
+        }
+        if (consecutiveWriteFailures > 0) {
+            return "写入失败 " + consecutiveWriteFailures + " 次";
+        }
+        if (emptyReadThreshold > 0 && consecutiveEmptyReads >= emptyReadThreshold
+                && lastAnsweredMillis > 0 && System.currentTimeMillis() - lastAnsweredMillis <= answeredWithinMs) {
+            return "连续 " + consecutiveEmptyReads + " 次读取无数据";
+        }
+        return null;
+    }
+
+    private void resetFaults() {
+        disconnected = false;
+        consecutiveWriteFailures = 0;
+        consecutiveEmptyReads = 0;
+    }
+
     public List<String> listPorts() {
         return Arrays.stream(SerialPort.getCommPorts())
                 .map(SerialPort::getSystemPortName)
@@ -67,55 +163,103 @@ public class SerialPortService {
 
     /**
      * 向串口写入数据
+     * 写入前先清空接收缓冲区中残留的旧数据，避免与本次响应混在一起。
      * @param data 要写入的数据
      * @return 写入的字节数
      */
     public int writeToSerial(byte[] data) {
         synchronized (serialLock) {
-            log.info("[串口写入] 开始，线程: {}，时间: {}，数据长度: {}", Thread.currentThread().getName(), java.time.LocalDateTime.now(), data != null ? data.length : 0);
-            if (commPort != null && commPort.isOpen()) {
-                int bytesWritten = commPort.writeBytes(data, data.length);
-                // 清空缓冲区
-                int avail = commPort.bytesAvailable();
-                if (avail > 0) {
-                    commPort.readBytes(new byte[avail], avail);
+            if (transport.isOpen()) {
+                // 清空缓冲区（复用丢弃缓冲区，不为残留数据分配内存）
+                int avail = transport.bytesAvailable();
+                while (avail > 0) {
+                    int n = transport.read(drainBuffer, Math.min(avail, drainBuffer.length), 0, 0);
+                    if (n <= 0) {
+                        break;
+                    }
+                    avail = transport.bytesAvailable();
+                }
+                int bytesWritten = transport.write(data, data.length);
+                if (log.isDebugEnabled()) {
+                    log.debug("[串口写入] {} 写入字节: {}，帧: {}", getPortName(), bytesWritten, HexCodec.encode(data));
                 }
-                log.info("[串口写入] 结束，线程: {}，时间: {}，写入字节: {}", Thread.currentThread().getName(), java.time.LocalDateTime.now(), bytesWritten);
+                consecutiveWriteFailures = bytesWritten > 0 ? 0 : consecutiveWriteFailures + 1;
                 return bytesWritten;
             } else {
                 log.error("串口未打开");
+                consecutiveWriteFailures++;
                 return -1;
             }
         }
     }
 
     /**
-     * 从串口读取数据
+     * 从串口读取一帧响应数据
+     * 使用半阻塞读等待数据到达：首字节最多等待 responseTimeoutMs，之后每个字符最多等待 interCharTimeoutMs。
+     * 根据 Modbus RTU 的功能码、字节数和CRC判断帧是否完整，完整后立即返回，不再固定等待。
      * @param maxBytes 最大读取字节数
-     * @return 读取的数据
+     * @return 读取的数据，超时未收到任何数据时返回空数组
      */
     public byte[] readFromSerial(int maxBytes) {
+        return readFromSerial(maxBytes, responseTimeoutMs);
+    }
+
+    /**
+     * 从串口读取一帧响应数据（每次分配新数组，事务层使用 {@link #readFrame(byte[], int)} 读入复用的缓冲区）
+     * @param maxBytes 最大读取字节数
+     * @param firstByteTimeoutMs 等待响应首字节的超时时间
+     * @return 读取的数据，超时未收到任何数据时返回空数组
+     */
+    public byte[] readFromSerial(int maxBytes, int firstByteTimeoutMs) {
         synchronized (serialLock) {
-            log.info("[串口读取] 开始，线程: {}，时间: {}，最大字节: {}", Thread.currentThread().getName(), java.time.LocalDateTime.now(), maxBytes);
-            if (commPort != null && commPort.isOpen()) {
-                byte[] data = new byte[maxBytes];
-                int bytesRead = commPort.readBytes(data, Math.min(maxBytes, commPort.bytesAvailable()));
-                if (bytesRead > 0) {
-                    byte[] result = new byte[bytesRead];
-                    System.arraycopy(data, 0, result, 0, bytesRead);
-                    // 清空缓冲区
-                    int avail = commPort.bytesAvailable();
-                    if (avail > 0) {
-                        commPort.readBytes(new byte[avail], avail);
-                    }
-                    log.debug("从串口读取 {} 字节", bytesRead);
-                    return result;
+            byte[] data = new byte[maxBytes];
+            int bytesRead = readFrame(data, firstByteTimeoutMs);
+            if (bytesRead <= 0) {
+                return new byte[0];
+            }
+            byte[] result = new byte[bytesRead];
+            System.arraycopy(data, 0, result, 0, bytesRead);
+            return result;
+        }
+    }
+
+    /**
+     * 把一帧响应读入调用方提供的缓冲区，不分配内存
+     * @param buf 接收缓冲区，长度即最大读取字节数
+     * @param firstByteTimeoutMs 等待响应首字节的超时时间
+     * @return 读取的字节数，超时未收到任何数据或串口未打开时返回 0
+     */
+    public int readFrame(byte[] buf, int firstByteTimeoutMs) {
+        synchronized (serialLock) {
+            if (!transport.isOpen()) {
+                log.error("串口未打开");
+                return 0;
+            }
+            int maxBytes = buf.length;
+            int bytesRead = 0;
+            while (bytesRead < maxBytes) {
+                // 首字节按响应超时等待，之后按字符间超时等待
+                int timeout = bytesRead == 0 ? firstByteTimeoutMs : interCharTimeoutMs;
+                int n = transport.read(buf, maxBytes - bytesRead, bytesRead, timeout);
+                if (n <= 0) {
+                    // 超时：首字节未到或字符间隔超时
+                    break;
                 }
+                bytesRead += n;
+                if (ModbusFrameUtils.isFrameComplete(buf, bytesRead)) {
+                    break;
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("[串口读取] {} 读取字节: {}，帧: {}", getPortName(), bytesRead, HexCodec.encode(buf, 0, bytesRead));
+            }
+            if (bytesRead > 0) {
+                consecutiveEmptyReads = 0;
+                lastAnsweredMillis = System.currentTimeMillis();
             } else {
-                log.error("串口未打开");
+                consecutiveEmptyReads++;
             }
-            log.info("[串口读取] 结束，线程: {}，时间: {}，读取字节: 0", Thread.currentThread().getName(), java.time.LocalDateTime.now());
-            return new byte[0];
+            return bytesRead;
         }
     }
 
@@ -124,7 +268,7 @@ public class SerialPortService {
      * @return 是否已连接
      */
     public boolean isConnected() {
-        return commPort != null && commPort.isOpen();
+        return transport.isOpen();
     }
 
     /**
@@ -132,26 +276,14 @@ public class SerialPortService {
      * @return 状态信息
      */
     public String getPortStatus() {
-        if (commPort == null) {
+        if (!initialized) {
             return "NOT_INITIALIZED";
         }
-        if (commPort.isOpen()) {
+        if (transport.isOpen()) {
             return "OPEN";
         } else {
             return "CLOSED";
         }
     }
 
-    // 16进制字符串转byte[]
-    public byte[] hexStringToByteArray(String hex) {
-        hex = hex.replaceAll(" ", "");
-        int len = hex.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                    + Character.digit(hex.charAt(i+1), 16));
-        }
-        return data;
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,235 @@
+package com.fishdishiot.iot.service;
+
+import com.fishdishiot.iot.config.SerialBusProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 串口看门狗
+ * 定期检查每条总线的串口：写入失败、传输层报告断开（如 USB 转串口适配器复位）或连续读取无数据时认为串口丢失，
+ * 随即暂停该总线的执行器（丢弃排队中已过时的指令，轮询和控制不再投递），按指数退避重新打开串口
+ * （原名称不存在时按设备标识重新查找），成功后恢复总线，整个过程不需要人工调用重连接口。
+ * 人工重连（{@link #reconnect}）走同一流程，与看门狗的检查互斥执行。
+ */
+@Service
+public class SerialPortWatchdog {
+
+    private static final Logger log = LoggerFactory.getLogger(SerialPortWatchdog.class);
+
+    @Autowired
+    private SerialBusManager serialBusManager;
+
+    @Autowired
+    private SerialBusProperties serialBusProperties;
+
+    /** 总线名称 -> 看门狗状态 */
+    private final Map<String, BusWatch> watches = new ConcurrentHashMap<>();
+
+    /** 串口断开后恢复时的回调 */
+    private final List<Consumer<SerialBus>> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        SerialBusProperties.Watchdog config = serialBusProperties.getWatchdog();
+        if (!config.isEnabled()) {
+            log.info("串口看门狗未启用");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Serial-Watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, config.getCheckIntervalMs(), config.getCheckIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("串口看门狗已启动，检查间隔 {} ms", config.getCheckIntervalMs());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 注册恢复回调：串口断开或写入失败后重新打开成功时调用。
+     * 连续读取无数据触发的重开不调用，那种情况下可能是设备本身离线。
+     */
+    public void addRecoveryListener(Consumer<SerialBus> listener) {
+        recoveryListeners.add(listener);
+    }
+
+    private void check() {
+        for (SerialBus bus : serialBusManager.getBuses()) {
+            try {
+                checkBus(bus, watches.computeIfAbsent(bus.getName(), k -> new BusWatch()));
+            } catch (Exception e) {
+                log.error("检查总线 {} 的串口失败: {}", bus.getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void checkBus(SerialBus bus, BusWatch watch) {
+        SerialBusProperties.Watchdog config = serialBusProperties.getWatchdog();
+        SerialPortService port = bus.getPort();
+        synchronized (watch) {
+            long now = System.currentTimeMillis();
+            if (!watch.recovering) {
+                String fault = port.getFault(config.getEmptyReadThreshold(), config.getEmptyReadAnsweredWithinMs());
+                if (fault == null) {
+                    return;
+                }
+                // 不计连续读取无数据时仍有故障，说明是串口本身断开或写入失败
+                int drained = startRecovery(bus, watch, fault, port.getFault(0, 0) != null, now);
+                log.warn("总线 {} 串口 {} 异常（{}），暂停总线，丢弃 {} 个排队中的指令，开始重新连接",
+                        bus.getName(), port.getPortName(), fault, drained);
+            }
+            if (now < watch.nextAttemptTime) {
+                return;
+            }
+            attemptReopen(bus, watch, now);
+        }
+    }
+
+    /**
+     * 人工重连一条总线：与看门狗恢复串口的流程相同，暂停总线并丢弃排队中的指令，持串口锁重新打开，
+     * 成功后恢复总线并通知恢复回调。失败时看门狗已启用则由看门狗按退避继续重连，未启用则恢复总线。
+     * @return 是否重新打开成功
+     */
+    public boolean reconnect(SerialBus bus) {
+        BusWatch watch = watches.computeIfAbsent(bus.getName(), k -> new BusWatch());
+        synchronized (watch) {
+            long now = System.currentTimeMillis();
+            if (!watch.recovering) {
+                int drained = startRecovery(bus, watch, "人工重连", true, now);
+                log.info("人工重连总线 {} 串口 {}，暂停总线，丢弃 {} 个排队中的指令", bus.getName(), bus.getPort().getPortName(), drained);
+            }
+            if (attemptReopen(bus, watch, now)) {
+                return true;
+            }
+            if (!serialBusProperties.getWatchdog().isEnabled()) {
+                // 没有看门狗继续重连，总线不能一直暂停
+                watch.recovering = false;
+                bus.getExecutor().resume();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 暂停总线，进入重连状态
+     * @param hardFault 串口本身断开或写入失败（恢复后通知回调）
+     * @return 丢弃的排队指令数
+     */
+    private int startRecovery(SerialBus bus, BusWatch watch, String reason, boolean hardFault, long now) {
+        int drained = bus.getExecutor().pause();
+        watch.recovering = true;
+        watch.reason = reason;
+        watch.hardFault = hardFault;
+        watch.faultTime = now;
+        watch.backoffMs = serialBusProperties.getWatchdog().getInitialBackoffMs();
+        watch.nextAttemptTime = now;
+        watch.attempts = 0;
+        watch.faults++;
+        return drained;
+    }
+
+    /**
+     * 尝试重新打开串口，成功时恢复总线，失败时按指数退避安排下一次尝试
+     */
+    private boolean attemptReopen(SerialBus bus, BusWatch watch, long now) {
+        SerialPortService port = bus.getPort();
+        watch.attempts++;
+        if (port.reopen(portsInUse(bus))) {
+            bus.getExecutor().resume();
+            watch.recovering = false;
+            watch.recoveries++;
+            watch.lastRecoveryTime = now;
+            log.info("总线 {} 串口 {} 已恢复，第 {} 次尝试成功，中断 {} ms", bus.getName(), port.getPortName(),
+                    watch.attempts, System.currentTimeMillis() - watch.faultTime);
+            if (watch.hardFault) {
+                for (Consumer<SerialBus> listener : recoveryListeners) {
+                    listener.accept(bus);
+                }
+            }
+            return true;
+        }
+        watch.nextAttemptTime = now + watch.backoffMs;
+        log.warn("总线 {} 串口 {} 第 {} 次重新打开失败，{} ms 后重试，可用串口: {}", bus.getName(), port.getPortName(),
+                watch.attempts, watch.backoffMs, port.listPorts());
+        watch.backoffMs = Math.min(serialBusProperties.getWatchdog().getMaxBackoffMs(), watch.backoffMs * 2);
+        return false;
+    }
+
+    /**
+     * 其他总线正在使用的串口名称，重新查找设备时不能选用
+     */
+    private List<String> portsInUse(SerialBus self) {
+        List<String> names = new ArrayList<>();
+        for (SerialBus bus : serialBusManager.getBuses()) {
+            if (bus != self) {
+                names.add(bus.getPort().getPortName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 各总线的看门狗状态：是否在重连、故障原因、尝试次数、故障和恢复次数
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", serialBusProperties.getWatchdog().isEnabled());
+        for (SerialBus bus : serialBusManager.getBuses()) {
+            BusWatch watch = watches.get(bus.getName());
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("state", watch != null && watch.recovering ? "RECOVERING" : "OK");
+            if (watch != null) {
+                if (watch.recovering) {
+                    item.put("reason", watch.reason);
+                    item.put("downMs", System.currentTimeMillis() - watch.faultTime);
+                    item.put("attempts", watch.attempts);
+                    item.put("nextAttemptInMs", Math.max(0, watch.nextAttemptTime - System.currentTimeMillis()));
+                }
+                item.put("faults", watch.faults);
+                item.put("recoveries", watch.recoveries);
+                item.put("lastRecoveryTime", watch.lastRecoveryTime > 0 ? watch.lastRecoveryTime : null);
+            }
+            result.put(bus.getName(), item);
+        }
+        return result;
+    }
+
+    /**
+     * 单条总线的看门狗状态，看门狗线程和人工重连在该对象的锁内修改
+     */
+    private static class BusWatch {
+        volatile boolean recovering;
+        volatile String reason;
+        boolean hardFault;
+        volatile long faultTime;
+        long backoffMs;
+        volatile long nextAttemptTime;
+        volatile int attempts;
+        volatile long faults;
+        volatile long recoveries;
+        volatile long lastRecoveryTime;
+    }
+}
@@ -3,17 +3,22 @@ package com.fishdishiot.iot.service.impl;
 import com.fishdishiot.iot.domain.AgricultureAutoControlStrategy;
 import com.fishdishiot.iot.domain.AgricultureDevice;
 import com.fishdishiot.iot.service.*;
-import com.fishdishiot.iot.util.SerialCommandExecutor;
+import com.fishdishiot.iot.util.BlockingTaskExecutor;
+import com.fishdishiot.iot.util.ParamIndex;
+import com.fishdishiot.iot.util.SensorReading;
+import com.fishdishiot.iot.util.SerialTaskPriority;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class AutoControlServiceImpl implements AutoControlService {
@@ -28,10 +33,13 @@ public class AutoControlServiceImpl implements AutoControlService {
     private AgricultureDeviceService deviceService;
 
     @Autowired
-    private SerialCommandExecutor serialCommandExecutor;
+    private SerialBusManager serialBusManager;
 
     @Autowired
-    private SerialPortService serialPortService;
+    private DeviceCommandRegistry commandRegistry;
+
+    @Autowired
+    private BlockingTaskExecutor blockingTaskExecutor;
 
     // 防抖动状态记录
     private final Map<Long, Boolean> lastTriggerMap = new ConcurrentHashMap<>();
@@ -41,35 +49,32 @@ public class AutoControlServiceImpl implements AutoControlService {
     /**
      * 自动检查所有启用的设备自动调节策略，并根据本次采集到的传感器数据自动执行设备操作。
      *
-     * @param parsedData 解析后的传感器数据Map，key为参数名（如"temperature"），value为实际采集值
+     * @param reading 本次采集的读数，按参数下标取值
      */
     @Override
-    public void checkAndExecuteStrategy(Map<String, Object> parsedData) {
+    public void checkAndExecuteStrategy(SensorReading reading) {
+        if (reading.isReplayed()) {
+            // 回放的是历史读数，不能据此操作现场设备
+            return;
+        }
         List<AgricultureAutoControlStrategy> strategies = strategyService.getAllActiveStrategies();
         log.info("[自动调节] 共检测到 {} 条启用的自动调节策略", strategies.size());
 
-        int onIntervalMs = 1000; // 300毫秒间隔
-
-        // 先收集所有本轮需要on的任务
-        List<Runnable> onTasks = new ArrayList<>();
-
         for (AgricultureAutoControlStrategy strategy : strategies) {
-            String parameter = strategy.getParameter();
-            if (!parsedData.containsKey(parameter)) continue;
-            Object valueObj = parsedData.get(parameter);
-            if (valueObj == null) continue;
-
-            BigDecimal value;
-            try { value = new BigDecimal(valueObj.toString()); }
-            catch (Exception e) { continue; }
+            // 参数名未登记说明没有任何型号会产生它
+            int param = strategy.getParameter() != null ? ParamIndex.find(strategy.getParameter()) : -1;
+            // 只按解码出的测量值判断，补充的模拟值（如溶解氧）不能触发现场设备
+            if (!reading.isMeasured(param) || strategy.getConditionValue() == null) continue;
 
+            // 按十进制比较：缩放后的寄存器值（如 pH 710 × 0.01）与配置的条件值逐位一致才算相等
+            int compare = BigDecimal.valueOf(reading.get(param)).compareTo(strategy.getConditionValue());
             boolean match = false;
             String op = strategy.getConditionOperator();
-            if (">".equals(op)) match = value.compareTo(strategy.getConditionValue()) > 0;
-            else if ("<".equals(op)) match = value.compareTo(strategy.getConditionValue()) < 0;
-            else if ("=".equals(op) || "==".equals(op)) match = value.compareTo(strategy.getConditionValue()) == 0;
-            else if (">=".equals(op)) match = value.compareTo(strategy.getConditionValue()) >= 0;
-            else if ("<=".equals(op)) match = value.compareTo(strategy.getConditionValue()) <= 0;
+            if (">".equals(op)) match = compare > 0;
+            else if ("<".equals(op)) match = compare < 0;
+            else if ("=".equals(op) || "==".equals(op)) match = compare == 0;
+            else if (">=".equals(op)) match = compare >= 0;
+            else if ("<=".equals(op)) match = compare <= 0;
             else continue;
 
             Long deviceId;
@@ -78,13 +83,8 @@ public class AutoControlServiceImpl implements AutoControlService {
 
             int index = 0;
             AgricultureDevice device = deviceService.getById(deviceId);
-            if (device != null) {
-                String commandOn = device.getCommandOn();
-                String commandOff = device.getCommandOff();
-                if ((commandOn != null && commandOn.contains("|") && commandOn.split("\\|").length > 1)
-                        || (commandOff != null && commandOff.split("\\|").length > 1)) {
-                    index = 1;
-                }
+            if (device != null && commandRegistry.get(device).isMultiGroup()) {
+                index = 1;
             }
 
             String targetStatus = "on".equalsIgnoreCase(strategy.getAction()) ? "1" : "0";
@@ -107,43 +107,72 @@ public class AutoControlServiceImpl implements AutoControlService {
             final int finalIndex = index;
             final Integer duration = strategy.getExecuteDuration();
             final Long strategyId = strategy.getId();
+            final SerialBus bus = serialBusManager.getBusForDevice(deviceId);
+
+            // 提交到设备所在总线的队列，指令间隔由执行器按帧间静默时间和设备配置统一控制
+            try {
+                submitControl(bus, finalDeviceId, finalAction, finalIndex, duration, strategyId);
+            } catch (RejectedExecutionException e) {
+                // 总线过载时本次不执行，恢复触发状态，下次采集仍满足条件时重新尝试
+                lastTriggerMap.put(deviceId, false);
+                log.warn("[自动调节] 策略[ID={}] 设备 {} 的控制指令未能提交: {}", strategyId, deviceId, e.getMessage());
+            }
+        }
+    }
 
-            onTasks.add(() -> {
-                log.info("[自动调节] 串行执行设备控制: deviceId={}, action={}, index={}", finalDeviceId, finalAction, finalIndex);
-                synchronized (serialPortService.getSerialLock()) {
-                    deviceOperationService.controlDevice(finalDeviceId, finalAction, finalIndex);
-                }
+    /**
+     * 把策略触发的控制提交到设备所在总线；开启后配置了持续时间的，到期自动提交关闭
+     * @throws RejectedExecutionException 总线的自动调节队列已满
+     */
+    private void submitControl(SerialBus bus, Long finalDeviceId, String finalAction, int finalIndex,
+                               Integer duration, Long strategyId) {
+        bus.getExecutor().submit(SerialTaskPriority.AUTO_CONTROL, finalDeviceId, resetOnDrop(finalDeviceId, strategyId, () -> {
+            log.info("[自动调节] 串行执行设备控制: deviceId={}, action={}, index={}", finalDeviceId, finalAction, finalIndex);
+            synchronized (bus.getPort().getSerialLock()) {
+                deviceOperationService.controlDevice(finalDeviceId, finalAction, finalIndex);
+            }
 
-                if ("on".equalsIgnoreCase(finalAction)
-                        && duration != null
-                        && duration > 0) {
-                    log.info("[自动调节] 策略[ID={}] 设备 {} 已开启，{} 秒后将自动关闭", strategyId, finalDeviceId, duration);
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(duration * 1000L);
-                            log.info("[自动调节] 策略[ID={}] 设备 {} 到达自动关闭时间，异步提交关闭任务", strategyId, finalDeviceId);
-                            //异步关闭 关闭任务
-                            serialCommandExecutor.submit(() -> {
-                                deviceOperationService.controlDevice(finalDeviceId, "off", finalIndex);
-                                lastOffTimeMap.put(finalDeviceId, System.currentTimeMillis());
-                                lastTriggerMap.put(finalDeviceId, false);
-                            });
-                        } catch (InterruptedException ignored) {}
-                    }).start();
-                }
-            });
-        }
+            if ("on".equalsIgnoreCase(finalAction)
+                    && duration != null
+                    && duration > 0) {
+                log.info("[自动调节] 策略[ID={}] 设备 {} 已开启，{} 秒后将自动关闭", strategyId, finalDeviceId, duration);
+                // 延时期间不占用线程，到期后再提交关闭任务
+                blockingTaskExecutor.schedule(() -> {
+                    log.info("[自动调节] 策略[ID={}] 设备 {} 到达自动关闭时间，异步提交关闭任务", strategyId, finalDeviceId);
+                    //异步关闭 关闭任务
+                    try {
+                        bus.getExecutor().submit(SerialTaskPriority.AUTO_CONTROL, finalDeviceId, resetOnDrop(finalDeviceId, strategyId, () -> {
+                            deviceOperationService.controlDevice(finalDeviceId, "off", finalIndex);
+                            lastOffTimeMap.put(finalDeviceId, System.currentTimeMillis());
+                            lastTriggerMap.put(finalDeviceId, false);
+                        }));
+                    } catch (RejectedExecutionException e) {
+                        log.error("[自动调节] 策略[ID={}] 设备 {} 的自动关闭未能提交: {}", strategyId, finalDeviceId, e.getMessage());
+                    }
+                }, duration * 1000L);
+            }
+        }));
+    }
 
-        // 依次（带间隔）提交on任务到队列
-        for (int i = 0; i < onTasks.size(); i++) {
-            Runnable task = onTasks.get(i);
-            boolean isLast = (i == onTasks.size() - 1);
-            serialCommandExecutor.submit(() -> {
-                task.run();
-                if (!isLast) {
-                    try { Thread.sleep(onIntervalMs); } catch (InterruptedException ignored) {}
+    /**
+     * 包装提交到总线的控制任务：任务在排队期间被丢弃（串口重连时看门狗清空队列）时恢复触发状态，
+     * 下次采集仍满足条件时重新尝试，而不是一直认为已经触发
+     */
+    private FutureTask<Void> resetOnDrop(Long deviceId, Long strategyId, Runnable action) {
+        return new FutureTask<Void>(action, null) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    lastTriggerMap.put(deviceId, false);
+                    log.warn("[自动调节] 策略[ID={}] 设备 {} 的控制任务在排队期间被丢弃，已恢复触发状态", strategyId, deviceId);
+                    return;
                 }
-            });
-        }
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    log.error("[自动调节] 策略[ID={}] 设备 {} 的控制任务异常", strategyId, deviceId, e);
+                }
+            }
+        };
     }
 }
\ No newline at end of file
@@ -1,21 +1,23 @@
 package com.fishdishiot.iot.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fishdishiot.iot.domain.AgricultureDeviceMqttConfig;
 import com.fishdishiot.iot.domain.AgricultureWaterQualityData;
 import com.fishdishiot.iot.domain.AgricultureWeatherData;
 import com.fishdishiot.iot.gateway.MqttGateway;
 import com.fishdishiot.iot.service.*;
+import com.fishdishiot.iot.util.ParamIndex;
+import com.fishdishiot.iot.util.SensorReading;
+import com.fishdishiot.iot.util.SensorReadingConverter;
 import com.fishdishiot.iot.util.WaterQualityRandomUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 /**
  * 数据处理服务实现
@@ -48,6 +50,15 @@ public class DataProcessingServiceImpl implements DataProcessingService {
     @Autowired
     private AutoControlService autoControlService; //自动执行策略
 
+    // 需要检查预警的水质、气象指标及其单位
+    private static final int[] WATER_ALERT_PARAMS = {SensorReadingConverter.PH_VALUE, SensorReadingConverter.DISSOLVED_OXYGEN,
+            SensorReadingConverter.AMMONIA_NITROGEN, SensorReadingConverter.WATER_TEMPERATURE, SensorReadingConverter.CONDUCTIVITY};
+    private static final String[] WATER_ALERT_UNITS = {"", "mg/L", "mg/L", "℃", "μS/cm"};
+    private static final int[] WEATHER_ALERT_PARAMS = {SensorReadingConverter.TEMPERATURE, SensorReadingConverter.HUMIDITY,
+            SensorReadingConverter.WIND_SPEED, SensorReadingConverter.LIGHT_INTENSITY, SensorReadingConverter.RAINFALL,
+            SensorReadingConverter.AIR_PRESSURE};
+    private static final String[] WEATHER_ALERT_UNITS = {"℃", "%", "m/s", "lux", "mm", "hPa"};
+
 //    @Override
 //    public void processAndStore(byte[] data) {
 //        try {
@@ -78,216 +89,107 @@ public class DataProcessingServiceImpl implements DataProcessingService {
 //    }
 
     @Override
-    public void processAndStore(Map<String, Object> parsedData) {
+    public void processAndStore(SensorReading reading) {
         try {
-            // 1. 获取设备ID
-            Long deviceId = null;
-            if (parsedData.get("deviceId") != null) {
-                deviceId = Long.valueOf(parsedData.get("deviceId").toString());
-            }
-
-            // 2. 查找该设备的MQTT配置，获取专属topic
-            String topic = null;
-            if (deviceId != null) {
-                AgricultureDeviceMqttConfig config = deviceMqttConfigService.getByDeviceId(deviceId);
-                if (config != null && config.getMqttTopic() != null && !config.getMqttTopic().isEmpty()) {
-                    topic = config.getMqttTopic();
-                }
-            }
-            // 兜底：如果没有查到topic，推送到一个默认主题
-            if (topic == null) {
-                topic = "/fish-dish/unknown";
-                log.warn("设备ID {} 未配置MQTT主题，推送到默认主题 {}", deviceId, topic);
-            }
-
-            // 3. 数据类型（决定存储到哪张表，但推送MQTT只看设备ID）
-            String type = (String) parsedData.get("type");
-
-            if ("water".equals(type)) {
-                // 水质数据，存表
-                AgricultureWaterQualityData waterData = createWaterQualityData(parsedData);
-                waterQualityDataService.save(waterData);
-                log.info("成功保存水质数据: {}", waterData);
-
-                // 推送到设备专属topic
-                mqttGateway.sendToMqtt(objectMapper.writeValueAsString(waterData), topic);
-                log.info("水质数据成功发布到MQTT主题 {}", topic);
-
-                // 检查预警
-                checkWaterQualityAlerts(waterData, parsedData);
-
-            } else if ("weather".equals(type)) {
-                // 气象数据，存表
-                AgricultureWeatherData weatherData = createWeatherData(parsedData);
-                weatherDataService.save(weatherData);
-                log.info("成功保存气象数据: {}", weatherData);
-
-                // 推送到设备专属topic
-                mqttGateway.sendToMqtt(objectMapper.writeValueAsString(weatherData), topic);
-                log.info("气象数据成功发布到MQTT主题 {}", topic);
-
-                // 新增：检查预警
-                checkWeatherAlerts(weatherData, parsedData);
-
-            } else {
-                // 其它类型，直接推送原始数据
-                mqttGateway.sendToMqtt(objectMapper.writeValueAsString(parsedData), topic);
-                log.warn("收到未知数据类型: {}，原始数据已推送到MQTT主题 {}", type, topic);
-            }
+            prepare(reading);
+            publish(reading, persist(reading));
+            checkAlerts(reading);
             // === 自动调节策略判断与执行 ===
-            autoControlService.checkAndExecuteStrategy(parsedData);
+            autoControlService.checkAndExecuteStrategy(reading);
         } catch (Exception e) {
             log.error("处理并存储已解析的数据失败", e);
         }
     }
 
-
-
-    private Map<String, Object> parseData(String dataString) throws Exception {
-        return objectMapper.readValue(dataString, HashMap.class);
-    }
-
-    /**
-     * 根据传入的Map数据，创建一个水质数据实体对象。
-     * @param data 包含传感器数据的Map
-     * @return 构造好的AgricultureWaterQualityData实体
-     */
-    private AgricultureWaterQualityData createWaterQualityData(Map<String, Object> data) {
-        AgricultureWaterQualityData waterData = new AgricultureWaterQualityData();
-        waterData.setDeviceId(Long.valueOf(Objects.toString(data.get("deviceId"))));
-        waterData.setPastureId((String) data.get("pastureId"));
-        waterData.setBatchId((String) data.get("batchId"));
-        Double phValue = getDoubleValue(data.get("ph_value"), null);
-        Double waterTemperature = getDoubleValue(data.get("water_temperature"), null);
-        Double dissolvedOxygen = WaterQualityRandomUtil.getNextDissolvedOxygen();
-        Double ammoniaNitrogen = WaterQualityRandomUtil.getNextAmmoniaNitrogen();
-        Double conductivity = WaterQualityRandomUtil.getNextConductivity();
-        waterData.setPhValue(phValue);
-        waterData.setWaterTemperature(waterTemperature);
-        waterData.setDissolvedOxygen(dissolvedOxygen);
-        waterData.setAmmoniaNitrogen(ammoniaNitrogen);
-        waterData.setConductivity(conductivity);
-        waterData.setCollectTime(LocalDateTime.now());
-        return waterData;
-    }
-
-    /**
-     * 根据传入的Map数据，创建一个气象数据实体对象。
-     * @param data 包含传感器数据的Map
-     * @return 构造好的AgricultureWeatherData实体
-     */
-    private AgricultureWeatherData createWeatherData(Map<String, Object> data) {
-        AgricultureWeatherData weatherData = new AgricultureWeatherData();
-        weatherData.setDeviceId(Long.valueOf(Objects.toString(data.get("deviceId"))));
-        weatherData.setPastureId((String) data.get("pastureId"));
-        weatherData.setBatchId((String) data.get("batchId"));
-        weatherData.setTemperature(getDoubleValue(data.get("temperature"), 0.0));
-        weatherData.setHumidity(getDoubleValue(data.get("humidity"), 0.0));
-        weatherData.setWindSpeed(getDoubleValue(data.get("wind_speed"), 0.0));
-        weatherData.setLightIntensity(getDoubleValue(data.get("light_intensity"), 0.0));
-        weatherData.setRainfall(getDoubleValue(data.get("rainfall"), 0.0));
-        weatherData.setAirPressure(getDoubleValue(data.get("air_pressure"), 0.0));
-        String windDirection = (String) data.get("wind_direction");
-        weatherData.setWindDirection(windDirection != null ? windDirection : "");
-        weatherData.setCollectTime(LocalDateTime.now());
-        return weatherData;
+    @Override
+    public void prepare(SensorReading reading) {
+        if ("water".equals(reading.getType())) {
+            // 传感器没有的指标暂用模拟值，标记为补充值，自适应轮询不按它判断
+            reading.fill(SensorReadingConverter.DISSOLVED_OXYGEN, WaterQualityRandomUtil.getNextDissolvedOxygen());
+            reading.fill(SensorReadingConverter.AMMONIA_NITROGEN, WaterQualityRandomUtil.getNextAmmoniaNitrogen());
+            reading.fill(SensorReadingConverter.CONDUCTIVITY, WaterQualityRandomUtil.getNextConductivity());
+        }
     }
 
-    /**
-     * 从Object对象获取Double值。
-     * @param value 待转换的对象
-     * @param defaultValue 如果转换失败或对象为null时返回的默认值
-     * @return 转换后的Double值或默认值
-     */
-    private Double getDoubleValue(Object value, Double defaultValue) {
-        if (value == null) {
-            return defaultValue;
-        }
-        try {
-            if (value instanceof Number) {
-                return ((Number) value).doubleValue();
-            } else {
-                String strValue = Objects.toString(value);
-                if ("null".equals(strValue) || strValue.trim().isEmpty()) {
-                    return defaultValue;
-                }
-                return new java.math.BigDecimal(strValue).doubleValue();
-            }
-        } catch (Exception e) {
-            log.warn("无法转换值 '{}' 为Double类型，使用默认值 '{}'", value, defaultValue);
-            return defaultValue;
+    @Override
+    public Object persist(SensorReading reading) {
+        // 数据类型决定存储到哪张表
+        String type = reading.getType();
+        if ("water".equals(type)) {
+            AgricultureWaterQualityData waterData = SensorReadingConverter.toWaterQualityData(reading);
+            waterQualityDataService.save(waterData);
+            log.info("成功保存水质数据: {}", waterData);
+            return waterData;
+        } else if ("weather".equals(type)) {
+            AgricultureWeatherData weatherData = SensorReadingConverter.toWeatherData(reading);
+            weatherDataService.save(weatherData);
+            log.info("成功保存气象数据: {}", weatherData);
+            return weatherData;
         }
+        return null;
     }
 
-    /**
-     * 检查水质数据的各项指标是否需要预警，并调用预警服务生成预警。
-     * @param waterData 已经封装好的水质数据对象
-     * @param parsedData 原始传感器数据Map（用于获取设备名、类型等信息）
-     */
-    private void checkWaterQualityAlerts(AgricultureWaterQualityData waterData, Map<String, Object> parsedData) {
-        Long deviceId = waterData.getDeviceId();
-        String deviceName = (String) parsedData.get("deviceName");
-        String deviceType = (String) parsedData.get("type");
-        String pastureId = waterData.getPastureId();
-        String batchId = waterData.getBatchId();
-
-        if (waterData.getPhValue() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "ph_value", waterData.getPhValue(), "");
+    @Override
+    public void publish(SensorReading reading, Object entity) {
+        // 1. 查找该设备的MQTT配置，获取专属topic（推送MQTT只看设备ID）
+        Long deviceId = reading.getDeviceId();
+        String topic = null;
+        AgricultureDeviceMqttConfig config = deviceMqttConfigService.getByDeviceId(deviceId);
+        if (config != null && config.getMqttTopic() != null && !config.getMqttTopic().isEmpty()) {
+            topic = config.getMqttTopic();
         }
-        if (waterData.getDissolvedOxygen() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "dissolved_oxygen", waterData.getDissolvedOxygen(), "mg/L");
+        // 兜底：如果没有查到topic，推送到一个默认主题
+        if (topic == null) {
+            topic = "/fish-dish/unknown";
+            log.warn("设备ID {} 未配置MQTT主题，推送到默认主题 {}", deviceId, topic);
         }
-        if (waterData.getAmmoniaNitrogen() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "ammonia_nitrogen", waterData.getAmmoniaNitrogen(), "mg/L");
+
+        // 2. 入库的数据推送实体，其它类型直接推送原始数据
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(entity != null ? entity : reading.toMap());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化设备 " + deviceId + " 的数据失败: " + e.getMessage(), e);
         }
-        if (waterData.getWaterTemperature() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "water_temperature", waterData.getWaterTemperature(), "℃");
+        mqttGateway.sendToMqtt(payload, topic);
+        if (entity != null) {
+            log.info("{}数据成功发布到MQTT主题 {}", "water".equals(reading.getType()) ? "水质" : "气象", topic);
+        } else {
+            log.warn("收到未知数据类型: {}，原始数据已推送到MQTT主题 {}", reading.getType(), topic);
         }
-        if (waterData.getConductivity() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "conductivity", waterData.getConductivity(), "μS/cm");
+    }
+
+    @Override
+    public void checkAlerts(SensorReading reading) {
+        String type = reading.getType();
+        if ("water".equals(type)) {
+            checkAlerts(reading, WATER_ALERT_PARAMS, WATER_ALERT_UNITS);
+        } else if ("weather".equals(type)) {
+            checkAlerts(reading, WEATHER_ALERT_PARAMS, WEATHER_ALERT_UNITS);
         }
     }
 
+
+
+    private Map<String, Object> parseData(String dataString) throws Exception {
+        return objectMapper.readValue(dataString, HashMap.class);
+    }
+
     /**
-     * 检查气象数据的各项指标是否需要预警，并调用预警服务生成预警。
-     * @param weatherData 已经封装好的气象数据对象
-     * @param parsedData 原始传感器数据Map（用于获取设备名、类型等信息）
+     * 检查读数中各项指标是否需要预警，并调用预警服务生成预警。
+     * 只检查本次实际采集到的指标，入库时补的默认值不参与预警。
+     * @param reading 本次读数
+     * @param params 需要检查的参数下标
+     * @param units 对应的单位
      */
-    private void checkWeatherAlerts(AgricultureWeatherData weatherData, Map<String, Object> parsedData) {
-        Long deviceId = weatherData.getDeviceId();
-        String deviceName = (String) parsedData.get("deviceName");
-        String deviceType = (String) parsedData.get("type");
-        String pastureId = weatherData.getPastureId();
-        String batchId = weatherData.getBatchId();
-
-        if (weatherData.getTemperature() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "temperature", weatherData.getTemperature(), "℃");
-        }
-        if (weatherData.getHumidity() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "humidity", weatherData.getHumidity(), "%");
-        }
-        if (weatherData.getWindSpeed() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "wind_speed", weatherData.getWindSpeed(), "m/s");
-        }
-        if (weatherData.getLightIntensity() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "light_intensity", weatherData.getLightIntensity(), "lux");
-        }
-        if (weatherData.getRainfall() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "rainfall", weatherData.getRainfall(), "mm");
-        }
-        if (weatherData.getAirPressure() != null) {
-            agricultureDeviceSensorAlertService.checkAndGenerateAlert(deviceId, deviceName, deviceType, pastureId, batchId,
-                    "air_pressure", weatherData.getAirPressure(), "hPa");
+    private void checkAlerts(SensorReading reading, int[] params, String[] units) {
+        for (int i = 0; i < params.length; i++) {
+            int param = params[i];
+            if (reading.isNumeric(param)) {
+                agricultureDeviceSensorAlertService.checkAndGenerateAlert(reading.getDeviceId(), reading.getDeviceName(),
+                        reading.getType(), reading.getPastureId(), reading.getBatchId(),
+                        ParamIndex.name(param), reading.get(param), units[i]);
+            }
         }
     }
-}
\ No newline at end of file
+}
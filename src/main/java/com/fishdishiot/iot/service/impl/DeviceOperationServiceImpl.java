@@ -3,16 +3,28 @@ package com.fishdishiot.iot.service.impl;
 import com.fishdishiot.iot.domain.AgricultureDevice;
 import com.fishdishiot.iot.domain.AjaxResult;
 import com.fishdishiot.iot.service.AgricultureDeviceService;
+import com.fishdishiot.iot.service.DeviceCommandRegistry;
 import com.fishdishiot.iot.service.DeviceOperationService;
-import com.fishdishiot.iot.service.SerialPortService;
+import com.fishdishiot.iot.service.SerialBus;
+import com.fishdishiot.iot.service.SerialBusManager;
 import com.fishdishiot.iot.service.SensorCommunicationService;
+import com.fishdishiot.iot.util.BlockingTaskExecutor;
+import com.fishdishiot.iot.util.DeviceCommandSet;
+import com.fishdishiot.iot.util.ModbusRequest;
+import com.fishdishiot.iot.util.ModbusResponse;
 import com.fishdishiot.iot.util.SerialCommandExecutor;
+import com.fishdishiot.iot.util.SerialTaskPriority;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class DeviceOperationServiceImpl implements DeviceOperationService {
@@ -21,10 +33,13 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
     private AgricultureDeviceService deviceService;
 
     @Autowired
-    private SerialPortService serialPortService;
+    private SerialBusManager serialBusManager;
 
     @Autowired
-    private SerialCommandExecutor serialCommandExecutor;
+    private DeviceCommandRegistry commandRegistry;
+
+    @Autowired
+    private BlockingTaskExecutor blockingTaskExecutor;
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(DeviceOperationServiceImpl.class);
 
@@ -39,40 +54,46 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
             return AjaxResult.error(403, "该设备不可控");
         }
 
-        String commandOnStr = device.getCommandOn();
-        String commandOffStr = device.getCommandOff();
-
-        if (commandOnStr == null || commandOnStr.trim().isEmpty()) {
+        // 已编译的开关指令，设备行的指令配置未变化时直接复用
+        DeviceCommandSet commandSet = commandRegistry.get(device);
+        if (!commandSet.hasOnCommand()) {
             return AjaxResult.error(400, "设备未配置开启指令");
         }
-        if (commandOffStr == null || commandOffStr.trim().isEmpty()) {
+        if (!commandSet.hasOffCommand()) {
             return AjaxResult.error(400, "设备未配置关闭指令");
         }
+        if (commandSet.getOnRequests().isEmpty() || commandSet.getOffRequests().isEmpty()) {
+            return AjaxResult.error(400, "设备指令配置无效: " + String.join("; ", commandSet.getErrors()));
+        }
 
-        String[] onCommands = commandOnStr.split("\\|");
-        String[] offCommands = commandOffStr.split("\\|");
+        List<ModbusRequest> onCommands = commandSet.getOnRequests();
+        List<ModbusRequest> offCommands = commandSet.getOffRequests();
 
-        // 死锁修复：如果当前线程就是Serial-Command-Executor，直接执行
-        if (Thread.currentThread().getName().equals("Serial-Command-Executor")) {
-            return controlDeviceDirect(device, action, index, onCommands, offCommands);
+        // 设备所在总线的串口和执行器
+        SerialBus bus = serialBusManager.getBusForDevice(deviceId);
+        SerialCommandExecutor serialCommandExecutor = bus.getExecutor();
+
+        // 死锁修复：如果当前线程就是该总线的执行器线程，直接执行
+        if (serialCommandExecutor.isWorkerThread()) {
+            return controlDeviceDirect(device, bus, action, index, onCommands, offCommands);
         }
 
         try {
             if (index == 0) {
-                final String command;
+                final ModbusRequest command;
                 if ("on".equalsIgnoreCase(action)) {
-                    command = onCommands[0].trim();
+                    command = onCommands.get(0);
                 } else if ("off".equalsIgnoreCase(action)) {
-                    command = offCommands[0].trim();
+                    command = offCommands.get(0);
                 } else {
                     return AjaxResult.error(400, "操作类型错误");
                 }
-                Future<Integer> future = serialCommandExecutor.submit(() -> {
-                    synchronized (serialPortService.getSerialLock()) {
-                        return serialPortService.writeToSerial(serialPortService.hexStringToByteArray(command));
+                Future<Integer> future = serialCommandExecutor.submit(SerialTaskPriority.INTERACTIVE, deviceId, () -> {
+                    synchronized (bus.getPort().getSerialLock()) {
+                        return sendCommand(bus, device.getId(), command);
                     }
                 });
-                int result = future.get();
+                int result = await(future, deviceId);
                 if (result > 0) {
                     if ("on".equalsIgnoreCase(action)) {
                         device.setControlStatus("1");
@@ -85,70 +106,68 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
                     return AjaxResult.error(500, "指令发送失败");
                 }
             } else if (index == 1) {
-                if (onCommands.length < 2 || offCommands.length < 2) {
+                if (onCommands.size() < 2 || offCommands.size() < 2) {
                     return AjaxResult.error(400, "设备未配置多组指令");
                 }
                 if ("on".equalsIgnoreCase(action)) {
-                    final String onCommand1 = onCommands[0].trim();
-                    final String offCommand1 = offCommands[0].trim();
+                    final ModbusRequest onCommand1 = onCommands.get(0);
+                    final ModbusRequest offCommand1 = offCommands.get(0);
                     log.info("[设备操作] 执行开启，立即发送指令: {}，8秒后发送指令: {}", onCommand1, offCommand1);
-                    Future<Integer> futureOn = serialCommandExecutor.submit(() -> {
-                        synchronized (serialPortService.getSerialLock()) {
-                            return serialPortService.writeToSerial(serialPortService.hexStringToByteArray(onCommand1));
+                    Future<Integer> futureOn = serialCommandExecutor.submit(SerialTaskPriority.INTERACTIVE, deviceId, () -> {
+                        synchronized (bus.getPort().getSerialLock()) {
+                            return sendCommand(bus, device.getId(), onCommand1);
                         }
                     });
-                    int resultOn = futureOn.get();
+                    int resultOn = await(futureOn, deviceId);
                     if (resultOn <= 0) {
                         log.error("[设备操作] 开启指令发送失败: {}", onCommand1);
                         return AjaxResult.error(500, "开启指令发送失败");
                     }
                     device.setControlStatus("1");
                     deviceService.updateById(device);
-                    new Thread(() -> {
+                    blockingTaskExecutor.schedule(() -> {
+                        log.info("[设备操作] 8秒后发送关闭指令: {}", offCommand1);
                         try {
-                            Thread.sleep(8000);
-                            log.info("[设备操作] 8秒后发送关闭指令: {}", offCommand1);
-                            serialCommandExecutor.submit(() -> {
-                                synchronized (serialPortService.getSerialLock()) {
-                                    serialPortService.writeToSerial(serialPortService.hexStringToByteArray(offCommand1));
+                            serialCommandExecutor.submit(SerialTaskPriority.INTERACTIVE, deviceId, () -> {
+                                synchronized (bus.getPort().getSerialLock()) {
+                                    sendCommand(bus, device.getId(), offCommand1);
                                 }
                                 return null;
                             });
-                        } catch (InterruptedException e) {
-                            log.error("[设备操作] 发送关闭指令线程被中断", e);
+                        } catch (RejectedExecutionException e) {
+                            log.error("[设备操作] 设备 {} 的延时指令 {} 未能提交: {}", deviceId, offCommand1, e.getMessage());
                         }
-                    }).start();
+                    }, 8000);
                     return AjaxResult.success("开启指令已发送，8秒后自动发送关闭指令");
                 } else if ("off".equalsIgnoreCase(action)) {
-                    final String onCommand2 = onCommands[1].trim();
-                    final String offCommand2 = offCommands[1].trim();
+                    final ModbusRequest onCommand2 = onCommands.get(1);
+                    final ModbusRequest offCommand2 = offCommands.get(1);
                     log.info("[设备操作] 执行关闭，立即发送指令: {}，8秒后发送指令: {}", onCommand2, offCommand2);
-                    Future<Integer> futureOff = serialCommandExecutor.submit(() -> {
-                        synchronized (serialPortService.getSerialLock()) {
-                            return serialPortService.writeToSerial(serialPortService.hexStringToByteArray(onCommand2));
+                    Future<Integer> futureOff = serialCommandExecutor.submit(SerialTaskPriority.INTERACTIVE, deviceId, () -> {
+                        synchronized (bus.getPort().getSerialLock()) {
+                            return sendCommand(bus, device.getId(), onCommand2);
                         }
                     });
-                    int resultOff = futureOff.get();
+                    int resultOff = await(futureOff, deviceId);
                     if (resultOff <= 0) {
                         log.error("[设备操作] 关闭指令发送失败: {}", onCommand2);
                         return AjaxResult.error(500, "关闭指令发送失败");
                     }
                     device.setControlStatus("0");
                     deviceService.updateById(device);
-                    new Thread(() -> {
+                    blockingTaskExecutor.schedule(() -> {
+                        log.info("[设备操作] 8秒后发送第二组关闭指令: {}", offCommand2);
                         try {
-                            Thread.sleep(8000);
-                            log.info("[设备操作] 8秒后发送第二组关闭指令: {}", offCommand2);
-                            serialCommandExecutor.submit(() -> {
-                                synchronized (serialPortService.getSerialLock()) {
-                                    serialPortService.writeToSerial(serialPortService.hexStringToByteArray(offCommand2));
+                            serialCommandExecutor.submit(SerialTaskPriority.INTERACTIVE, deviceId, () -> {
+                                synchronized (bus.getPort().getSerialLock()) {
+                                    sendCommand(bus, device.getId(), offCommand2);
                                 }
                                 return null;
                             });
-                        } catch (InterruptedException e) {
-                            log.error("[设备操作] 发送第二组关闭指令线程被中断", e);
+                        } catch (RejectedExecutionException e) {
+                            log.error("[设备操作] 设备 {} 的延时指令 {} 未能提交: {}", deviceId, offCommand2, e.getMessage());
                         }
-                    }).start();
+                    }, 8000);
                     return AjaxResult.success("关闭指令已发送，8秒后自动发送第二组关闭指令");
                 } else {
                     return AjaxResult.error(400, "操作类型错误");
@@ -156,6 +175,15 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
             } else {
                 return AjaxResult.error(400, "不支持的指令索引");
             }
+        } catch (RejectedExecutionException e) {
+            // 总线指令队列已满：不排队等待，直接告知调用方稍后重试
+            return AjaxResult.error(503, e.getMessage() + "，请稍后重试");
+        } catch (CancellationException e) {
+            // 排队期间串口故障，看门狗暂停总线时清空了队列，指令没有发出
+            return AjaxResult.error(503, "总线串口正在重新连接，指令未发送，请稍后重试");
+        } catch (TimeoutException e) {
+            log.error("[设备操作] 设备 {} 的控制指令等待超时，已取消", deviceId);
+            return AjaxResult.error(504, "控制指令执行超时，请确认设备状态后重试");
         } catch (InterruptedException | ExecutionException e) {
             Thread.currentThread().interrupt();
             log.error("[设备操作] 控制指令执行异常", e);
@@ -163,21 +191,37 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
         }
     }
 
+    /**
+     * 等待总线上的控制指令执行完成：最多等待人工操作任务的截止时间加上一次事务的超时预算，
+     * 超时后取消任务（仍在排队时不再发送）
+     * @throws CancellationException 任务在排队期间被丢弃（串口重连时清空队列）
+     * @throws TimeoutException 超时未执行完
+     */
+    private int await(Future<Integer> future, Long deviceId) throws InterruptedException, ExecutionException, TimeoutException {
+        long timeoutMs = SerialTaskPriority.INTERACTIVE.getDefaultDeadlineMs() + serialBusManager.getTransactionTimeoutMs(deviceId);
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+
     // 新增：直接串口操作的方法，避免死锁
-    private AjaxResult controlDeviceDirect(AgricultureDevice device, String action, Integer index, String[] onCommands, String[] offCommands) {
+    private AjaxResult controlDeviceDirect(AgricultureDevice device, SerialBus bus, String action, Integer index, List<ModbusRequest> onCommands, List<ModbusRequest> offCommands) {
         try {
             if (index == 0) {
-                final String command;
+                final ModbusRequest command;
                 if ("on".equalsIgnoreCase(action)) {
-                    command = onCommands[0].trim();
+                    command = onCommands.get(0);
                 } else if ("off".equalsIgnoreCase(action)) {
-                    command = offCommands[0].trim();
+                    command = offCommands.get(0);
                 } else {
                     return AjaxResult.error(400, "操作类型错误");
                 }
                 int result;
-                synchronized (serialPortService.getSerialLock()) {
-                    result = serialPortService.writeToSerial(serialPortService.hexStringToByteArray(command));
+                synchronized (bus.getPort().getSerialLock()) {
+                    result = sendCommand(bus, device.getId(), command);
                 }
                 if (result > 0) {
                     if ("on".equalsIgnoreCase(action)) {
@@ -191,16 +235,16 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
                     return AjaxResult.error(500, "指令发送失败");
                 }
             } else if (index == 1) {
-                if (onCommands.length < 2 || offCommands.length < 2) {
+                if (onCommands.size() < 2 || offCommands.size() < 2) {
                     return AjaxResult.error(400, "设备未配置多组指令");
                 }
                 if ("on".equalsIgnoreCase(action)) {
-                    final String onCommand1 = onCommands[0].trim();
-                    final String offCommand1 = offCommands[0].trim();
+                    final ModbusRequest onCommand1 = onCommands.get(0);
+                    final ModbusRequest offCommand1 = offCommands.get(0);
                     log.info("[设备操作] (direct) 执行开启，立即发送指令: {}，8秒后发送指令: {}", onCommand1, offCommand1);
                     int resultOn;
-                    synchronized (serialPortService.getSerialLock()) {
-                        resultOn = serialPortService.writeToSerial(serialPortService.hexStringToByteArray(onCommand1));
+                    synchronized (bus.getPort().getSerialLock()) {
+                        resultOn = sendCommand(bus, device.getId(), onCommand1);
                     }
                     if (resultOn <= 0) {
                         log.error("[设备操作] (direct) 开启指令发送失败: {}", onCommand1);
@@ -208,25 +252,20 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
                     }
                     device.setControlStatus("1");
                     deviceService.updateById(device);
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(8000);
-                            log.info("[设备操作] (direct) 8秒后发送关闭指令: {}", offCommand1);
-                            synchronized (serialPortService.getSerialLock()) {
-                                serialPortService.writeToSerial(serialPortService.hexStringToByteArray(offCommand1));
-                            }
-                        } catch (InterruptedException e) {
-                            log.error("[设备操作] (direct) 发送关闭指令线程被中断", e);
+                    blockingTaskExecutor.schedule(() -> {
+                        log.info("[设备操作] (direct) 8秒后发送关闭指令: {}", offCommand1);
+                        synchronized (bus.getPort().getSerialLock()) {
+                            sendCommand(bus, device.getId(), offCommand1);
                         }
-                    }).start();
+                    }, 8000);
                     return AjaxResult.success("开启指令已发送，8秒后自动发送关闭指令");
                 } else if ("off".equalsIgnoreCase(action)) {
-                    final String onCommand2 = onCommands[1].trim();
-                    final String offCommand2 = offCommands[1].trim();
+                    final ModbusRequest onCommand2 = onCommands.get(1);
+                    final ModbusRequest offCommand2 = offCommands.get(1);
                     log.info("[设备操作] (direct) 执行关闭，立即发送指令: {}，8秒后发送指令: {}", onCommand2, offCommand2);
                     int resultOff;
-                    synchronized (serialPortService.getSerialLock()) {
-                        resultOff = serialPortService.writeToSerial(serialPortService.hexStringToByteArray(onCommand2));
+                    synchronized (bus.getPort().getSerialLock()) {
+                        resultOff = sendCommand(bus, device.getId(), onCommand2);
                     }
                     if (resultOff <= 0) {
                         log.error("[设备操作] (direct) 关闭指令发送失败: {}", onCommand2);
@@ -234,17 +273,12 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
                     }
                     device.setControlStatus("0");
                     deviceService.updateById(device);
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(8000);
-                            log.info("[设备操作] (direct) 8秒后发送第二组关闭指令: {}", offCommand2);
-                            synchronized (serialPortService.getSerialLock()) {
-                                serialPortService.writeToSerial(serialPortService.hexStringToByteArray(offCommand2));
-                            }
-                        } catch (InterruptedException e) {
-                            log.error("[设备操作] (direct) 发送第二组关闭指令线程被中断", e);
+                    blockingTaskExecutor.schedule(() -> {
+                        log.info("[设备操作] (direct) 8秒后发送第二组关闭指令: {}", offCommand2);
+                        synchronized (bus.getPort().getSerialLock()) {
+                            sendCommand(bus, device.getId(), offCommand2);
                         }
-                    }).start();
+                    }, 8000);
                     return AjaxResult.success("关闭指令已发送，8秒后自动发送第二组关闭指令");
                 } else {
                     return AjaxResult.error(400, "操作类型错误");
@@ -258,5 +292,24 @@ public class DeviceOperationServiceImpl implements DeviceOperationService {
         }
     }
 
-
+    /**
+     * 发送一条控制指令。
+     * 配置了回显确认（serial.control.confirm-device-ids）的设备，标准 Modbus 写指令通过事务发送并等待设备回显；
+     * 其余指令只写入，写入成功即视为成功。
+     * @param bus 设备所在总线
+     * @param deviceId 设备ID，用于确定事务超时预算
+     * @param command 已编译的指令帧
+     * @return 成功返回正数，写入失败、无响应或异常响应返回 -1
+     */
+    private int sendCommand(SerialBus bus, Long deviceId, ModbusRequest command) {
+        if (!commandRegistry.isConfirmEcho(deviceId) || !command.isStandardWrite()) {
+            return bus.getModbusClient().write(deviceId, command) > 0 ? 1 : -1;
+        }
+        ModbusResponse response = bus.getModbusClient().execute(deviceId, command, serialBusManager.getTransactionTimeoutMs(deviceId));
+        if (response == null || response.isException()) {
+            log.error("[设备操作] 控制指令 [{}] 未得到设备确认", command);
+            return -1;
+        }
+        return 1;
+    }
 }
\ No newline at end of file
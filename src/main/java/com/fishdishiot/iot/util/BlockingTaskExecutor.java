@@ -0,0 +1,200 @@
+package com.fishdishiot.iot.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 阻塞任务执行器
+ * 用于数据入库/推送、延时关闭等会阻塞的流程，不占用串口总线的工作线程。
+ * <ul>
+ *     <li>virtual：每个任务一个虚拟线程（JDK 21+），阻塞时不占用平台线程，无需按并发量估算线程池大小</li>
+ *     <li>platform：固定大小的平台线程池 + 有界队列，队列满时由提交线程自己执行（反压）</li>
+ *     <li>auto：运行在支持虚拟线程的 JDK 上时使用 virtual，否则回退为 platform</li>
+ * </ul>
+ * 延时任务由一个定时线程计时，到期后再交给执行器运行，等待期间不占用任何线程。
+ */
+public class BlockingTaskExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockingTaskExecutor.class);
+
+    public static final String MODE_AUTO = "auto";
+    public static final String MODE_VIRTUAL = "virtual";
+    public static final String MODE_PLATFORM = "platform";
+
+    private final String name;
+    private final boolean virtual;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger pendingDelayed = new AtomicInteger();
+
+    /**
+     * @param name 线程名前缀
+     * @param mode auto / virtual / platform
+     * @param poolSize platform 模式的线程数
+     * @param queueCapacity platform 模式的队列容量
+     */
+    public BlockingTaskExecutor(String name, String mode, int poolSize, int queueCapacity) {
+        this.name = name;
+        ExecutorService virtualExecutor = null;
+        if (MODE_VIRTUAL.equalsIgnoreCase(mode) || MODE_AUTO.equalsIgnoreCase(mode)) {
+            virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor == null && MODE_VIRTUAL.equalsIgnoreCase(mode)) {
+                log.warn("[{}] 当前JDK（{}）不支持虚拟线程，回退为 {} 个平台线程的线程池", name, System.getProperty("java.version"), poolSize);
+            }
+        }
+        this.virtual = virtualExecutor != null;
+        if (virtual) {
+            this.executor = virtualExecutor;
+        } else {
+            RejectedExecutionHandler callerRunsPolicy = (task, pool) -> {
+                callerRuns.incrementAndGet();
+                if (!pool.isShutdown()) {
+                    task.run();
+                }
+            };
+            this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), namedThreadFactory(name + "-"), callerRunsPolicy);
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(namedThreadFactory(name + "-Timer"));
+        log.info("[{}] 执行模式: {}", name, virtual ? "虚拟线程" : "平台线程池(" + poolSize + ")");
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，编译目标低于 21 时也能在新 JDK 上使用
+     * @return 执行器；JDK 不支持时返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix.endsWith("-") ? prefix + counter.incrementAndGet() : prefix);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 异步执行一个阻塞任务
+     */
+    public void execute(Runnable task) {
+        submitted.incrementAndGet();
+        executor.execute(() -> runTracked(task));
+    }
+
+    /**
+     * 异步执行一个有返回值的阻塞任务
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        submitted.incrementAndGet();
+        return executor.submit(() -> {
+            begin();
+            try {
+                T result = task.call();
+                completed.incrementAndGet();
+                return result;
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                throw e;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 延时执行：到期前不占用线程，到期后交给执行器运行
+     * @param task 任务
+     * @param delayMs 延时毫秒
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        pendingDelayed.incrementAndGet();
+        return timer.schedule(() -> {
+            pendingDelayed.decrementAndGet();
+            execute(task);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runTracked(Runnable task) {
+        begin();
+        try {
+            task.run();
+            completed.incrementAndGet();
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            log.error("[{}] 任务执行异常: {}", name, t.getMessage(), t);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void begin() {
+        int current = inFlight.incrementAndGet();
+        int max = maxInFlight.get();
+        while (current > max && !maxInFlight.compareAndSet(max, current)) {
+            max = maxInFlight.get();
+        }
+    }
+
+    /**
+     * 停止执行器，已提交的任务继续执行完，未到期的延时任务被丢弃
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdown();
+    }
+
+    /**
+     * 执行统计：模式、提交/完成/失败数、当前和峰值并发、等待中的延时任务、反压时由提交线程执行的次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", virtual ? MODE_VIRTUAL : MODE_PLATFORM);
+        stats.put("submitted", submitted.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("inFlight", inFlight.get());
+        stats.put("maxInFlight", maxInFlight.get());
+        stats.put("pendingDelayed", pendingDelayed.get());
+        if (!virtual) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            stats.put("poolSize", pool.getMaximumPoolSize());
+            stats.put("queued", pool.getQueue().size());
+            stats.put("callerRuns", callerRuns.get());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,186 @@
+package com.fishdishiot.iot.util;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 总线容量规划
+ * 每条总线上的轮询计划按“每轮占用总线的时间 / 轮询间隔”累加得到预计利用率；
+ * 每个计划的最坏响应时间按非抢占的响应时间分析计算：
+ * <pre>
+ * R = C + B + Σ(其他计划) ceil(R / T_j) * C_j
+ * </pre>
+ * 其中 C 为本计划一次事务的耗时（含帧间静默），B 为最长的一次其他事务（已开始的事务不能被打断），
+ * T_j、C_j 为其他计划的间隔和耗时。设备数据的最坏陈旧度 = 轮询间隔 + R。
+ * 利用率接近或超过 1 时 R 不收敛，数据会越来越旧。
+ */
+public class BusCapacityPlanner {
+
+    /** 响应时间迭代超过间隔的该倍数视为不收敛 */
+    private static final int DIVERGENCE_FACTOR = 20;
+
+    private BusCapacityPlanner() {
+    }
+
+    /**
+     * 按帧长估算一次事务占用总线的时间（没有实测数据时使用）
+     * @param requestBytes 请求帧长度
+     * @param responseBytes 预期响应帧长度
+     * @param baudRate 波特率
+     * @param turnaroundMs 从站处理时间
+     * @param gapMs 事务之间的间隔（帧间静默或设备单独配置的间隔）
+     * @return 毫秒
+     */
+    public static double estimateTransactionMs(int requestBytes, int responseBytes, int baudRate, double turnaroundMs, double gapMs) {
+        double charMs = SerialCommandExecutor.BITS_PER_CHAR * 1000.0 / baudRate;
+        return (requestBytes + responseBytes) * charMs + turnaroundMs + gapMs;
+    }
+
+    /**
+     * 读请求的预期响应帧长度：01/02 为按位返回，03/04 每个寄存器 2 字节，写请求回显 8 字节
+     */
+    public static int expectedResponseBytes(ModbusRequest request) {
+        switch (request.getFunctionCode()) {
+            case ModbusRequest.READ_COILS:
+            case ModbusRequest.READ_DISCRETE_INPUTS:
+                return 5 + (request.getQuantityOrValue() + 7) / 8;
+            case ModbusRequest.READ_HOLDING_REGISTERS:
+            case ModbusRequest.READ_INPUT_REGISTERS:
+                return 5 + request.getQuantityOrValue() * 2;
+            default:
+                return 8;
+        }
+    }
+
+    /**
+     * 分析一条总线上的轮询负载
+     * @param loads 各轮询计划的负载
+     * @return 利用率、每个计划的最坏响应时间和陈旧度
+     */
+    public static BusReport analyze(String busName, List<PlanLoad> loads) {
+        double utilization = 0;
+        double maxCost = 0;
+        for (PlanLoad load : loads) {
+            utilization += load.costMs / load.intervalMs;
+            maxCost = Math.max(maxCost, load.costMs);
+        }
+        List<PlanReport> plans = new ArrayList<>(loads.size());
+        for (PlanLoad load : loads) {
+            double blocking = 0;
+            for (PlanLoad other : loads) {
+                if (other != load) {
+                    blocking = Math.max(blocking, other.costMs);
+                }
+            }
+            double limit = (double) load.intervalMs * DIVERGENCE_FACTOR;
+            double response = load.costMs + blocking;
+            boolean bounded = false;
+            // 利用率达到 1 时总线积压只增不减，迭代即使停在某个值上也不是有效的上界
+            while (utilization < 1 && response <= limit) {
+                double next = load.costMs + blocking;
+                for (PlanLoad other : loads) {
+                    if (other != load) {
+                        next += Math.ceil(response / other.intervalMs) * other.costMs;
+                    }
+                }
+                if (next <= response) {
+                    bounded = true;
+                    break;
+                }
+                response = next;
+            }
+            plans.add(new PlanReport(load, bounded ? response : -1, bounded ? load.intervalMs + response : -1));
+        }
+        return new BusReport(busName, utilization, maxCost, plans);
+    }
+
+    /**
+     * 一个轮询计划的负载
+     */
+    @Getter
+    public static class PlanLoad {
+        /** 计划标识（计划中第一个设备ID） */
+        private final Long key;
+        private final List<Long> deviceIds;
+        private final long intervalMs;
+        /** 一次事务占用总线的时间（含间隔） */
+        private final double costMs;
+        /** 耗时来源：measured 实测 / estimated 按帧长估算 */
+        private final String costSource;
+
+        public PlanLoad(Long key, List<Long> deviceIds, long intervalMs, double costMs, String costSource) {
+            this.key = key;
+            this.deviceIds = deviceIds;
+            this.intervalMs = Math.max(1, intervalMs);
+            this.costMs = costMs;
+            this.costSource = costSource;
+        }
+    }
+
+    /**
+     * 单个计划的分析结果
+     */
+    @Getter
+    public static class PlanReport {
+        private final PlanLoad load;
+        /** 最坏响应时间（到期到读完），-1 表示不收敛 */
+        private final double worstResponseMs;
+        /** 最坏陈旧度，-1 表示不收敛 */
+        private final double worstStalenessMs;
+
+        PlanReport(PlanLoad load, double worstResponseMs, double worstStalenessMs) {
+            this.load = load;
+            this.worstResponseMs = worstResponseMs;
+            this.worstStalenessMs = worstStalenessMs;
+        }
+    }
+
+    /**
+     * 一条总线的分析结果
+     */
+    @Getter
+    public static class BusReport {
+        private final String busName;
+        private final double utilization;
+        private final double maxTransactionMs;
+        private final List<PlanReport> plans;
+
+        BusReport(String busName, double utilization, double maxTransactionMs, List<PlanReport> plans) {
+            this.busName = busName;
+            this.utilization = utilization;
+            this.maxTransactionMs = maxTransactionMs;
+            this.plans = plans;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("bus", busName);
+            result.put("plans", plans.size());
+            result.put("projectedUtilization", round(utilization));
+            result.put("maxTransactionMs", round(maxTransactionMs));
+            List<Map<String, Object>> planList = new ArrayList<>(plans.size());
+            for (PlanReport plan : plans) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("planKey", plan.load.key);
+                item.put("deviceIds", plan.load.deviceIds);
+                item.put("intervalMs", plan.load.intervalMs);
+                item.put("transactionMs", round(plan.load.costMs));
+                item.put("transactionSource", plan.load.costSource);
+                item.put("utilizationShare", round(plan.load.costMs / plan.load.intervalMs));
+                item.put("worstResponseMs", plan.worstResponseMs < 0 ? "unbounded" : (Object) round(plan.worstResponseMs));
+                item.put("worstStalenessMs", plan.worstStalenessMs < 0 ? "unbounded" : (Object) round(plan.worstStalenessMs));
+                planList.add(item);
+            }
+            result.put("planDetails", planList);
+            return result;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+}
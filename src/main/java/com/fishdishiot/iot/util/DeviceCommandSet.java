@@ -0,0 +1,149 @@
+package com.fishdishiot.iot.util;
+
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 设备指令集（编译结果）
+ * 把设备表中以16进制文本配置的采集指令 sensor_command、开启指令 command_on、关闭指令 command_off
+ * （多组之间用 "|" 分隔）一次性解析为不可变的请求帧。采集指令必须是CRC正确的 Modbus 帧；
+ * 开关指令只有需要回显确认的设备才要求CRC正确，其余设备的开关指令按原样字节发送（兼容非标准继电器）。
+ * 同时保留原始文本，用于判断设备行的指令配置是否发生变化。
+ */
+@Getter
+public class DeviceCommandSet {
+
+    private final Long deviceId;
+
+    /** 原始指令文本，用于比对设备行是否变化 */
+    private final String sensorCommandText;
+    private final String commandOnText;
+    private final String commandOffText;
+
+    /** 采集指令，未配置或无效时为 null */
+    private final ModbusRequest pollRequest;
+
+    /** 各组开启指令，未配置或任意一组无效时为空 */
+    private final List<ModbusRequest> onRequests;
+
+    /** 各组关闭指令，未配置或任意一组无效时为空 */
+    private final List<ModbusRequest> offRequests;
+
+    /** 编译时发现的配置错误 */
+    private final List<String> errors;
+
+    /** 开关指令是否要求设备回显确认 */
+    private final boolean confirmEcho;
+
+    private DeviceCommandSet(AgricultureDevice device, boolean confirmEcho, ModbusRequest pollRequest,
+                             List<ModbusRequest> onRequests, List<ModbusRequest> offRequests, List<String> errors) {
+        this.deviceId = device.getId();
+        this.confirmEcho = confirmEcho;
+        this.sensorCommandText = device.getSensorCommand();
+        this.commandOnText = device.getCommandOn();
+        this.commandOffText = device.getCommandOff();
+        this.pollRequest = pollRequest;
+        this.onRequests = Collections.unmodifiableList(onRequests);
+        this.offRequests = Collections.unmodifiableList(offRequests);
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * 编译设备的全部指令，开关指令不要求回显确认
+     * @param device 设备行
+     * @return 指令集；无效的指令不会抛出异常，而是记录在 {@link #getErrors()} 中
+     */
+    public static DeviceCommandSet compile(AgricultureDevice device) {
+        return compile(device, false);
+    }
+
+    /**
+     * 编译设备的全部指令
+     * @param device 设备行
+     * @param confirmEcho 开关指令是否要求回显确认：是则开关指令必须是CRC正确的 Modbus 帧
+     * @return 指令集；无效的指令不会抛出异常，而是记录在 {@link #getErrors()} 中
+     */
+    public static DeviceCommandSet compile(AgricultureDevice device, boolean confirmEcho) {
+        List<String> errors = new ArrayList<>();
+        ModbusRequest poll = null;
+        String sensorCommand = device.getSensorCommand();
+        if (!isBlank(sensorCommand)) {
+            try {
+                poll = ModbusRequest.fromHex(sensorCommand);
+            } catch (IllegalArgumentException e) {
+                errors.add("采集指令 [" + sensorCommand + "] 无效: " + e.getMessage());
+            }
+        }
+        List<ModbusRequest> on = compileGroups("开启指令", device.getCommandOn(), confirmEcho, errors);
+        List<ModbusRequest> off = compileGroups("关闭指令", device.getCommandOff(), confirmEcho, errors);
+        return new DeviceCommandSet(device, confirmEcho, poll, on, off, errors);
+    }
+
+    private static List<ModbusRequest> compileGroups(String label, String text, boolean strict, List<String> errors) {
+        List<ModbusRequest> requests = new ArrayList<>();
+        if (isBlank(text)) {
+            return requests;
+        }
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf('|', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String part = text.substring(start, end);
+            start = end + 1;
+            // 末尾或连续的 "|" 不算一组
+            if (part.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                requests.add(strict ? ModbusRequest.fromHex(part) : ModbusRequest.raw(part));
+            } catch (IllegalArgumentException e) {
+                errors.add(label + "第" + (requests.size() + 1) + "组 [" + part.trim() + "] 无效: " + e.getMessage());
+                requests.clear();
+                return requests;
+            }
+        }
+        return requests;
+    }
+
+    /** 库里未配置的指令可能是 null、空串或字符串 "null" */
+    private static boolean isBlank(String text) {
+        return text == null || text.trim().isEmpty() || "null".equals(text);
+    }
+
+    /**
+     * 判断设备行的指令配置和回显确认设置是否与编译时一致
+     */
+    public boolean isSameSource(AgricultureDevice device, boolean confirmEcho) {
+        return this.confirmEcho == confirmEcho
+                && Objects.equals(sensorCommandText, device.getSensorCommand())
+                && Objects.equals(commandOnText, device.getCommandOn())
+                && Objects.equals(commandOffText, device.getCommandOff());
+    }
+
+    /** 开启指令是否已配置（不论是否有效） */
+    public boolean hasOnCommand() {
+        return !isBlank(commandOnText);
+    }
+
+    /** 关闭指令是否已配置（不论是否有效） */
+    public boolean hasOffCommand() {
+        return !isBlank(commandOffText);
+    }
+
+    /** 是否配置了多组开关指令（控制时使用 index=1 的组合动作） */
+    public boolean isMultiGroup() {
+        return onRequests.size() > 1 || offRequests.size() > 1;
+    }
+
+    /** 是否存在无效配置 */
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+}
@@ -0,0 +1,192 @@
+package com.fishdishiot.iot.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备健康跟踪（熔断器）
+ * 每个设备一个熔断器：
+ * <ul>
+ *     <li>CLOSED：正常轮询；连续 failureThreshold 次无响应或响应无效后转为 OPEN</li>
+ *     <li>OPEN：暂停轮询，等待退避时间到期后允许一次探测（转为 HALF_OPEN）</li>
+ *     <li>HALF_OPEN：探测中；收到有效帧立即恢复 CLOSED，探测失败则退避时间按倍数增长（不超过上限）后回到 OPEN</li>
+ * </ul>
+ * 离线设备因此只在退避到期时占用一次总线事务，不再按轮询间隔反复超时。
+ */
+public class DeviceHealthTracker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final double backoffMultiplier;
+
+    private final Map<Long, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureThreshold 连续失败多少次后熔断
+     * @param initialBackoffMs 首次熔断后的探测间隔
+     * @param maxBackoffMs 探测间隔上限
+     * @param backoffMultiplier 每次探测失败后探测间隔的增长倍数
+     */
+    public DeviceHealthTracker(int failureThreshold, long initialBackoffMs, long maxBackoffMs, double backoffMultiplier) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = Math.max(initialBackoffMs, maxBackoffMs);
+        this.backoffMultiplier = Math.max(1, backoffMultiplier);
+    }
+
+    /**
+     * 是否应该轮询该设备（只读判断，用于调度器投递前过滤）
+     */
+    public boolean isPollAllowed(Long deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        return breaker == null || breaker.state == State.CLOSED || System.currentTimeMillis() >= breaker.nextProbeTime;
+    }
+
+    /**
+     * 在总线工作线程中真正发送请求前调用：熔断中的设备到期时占用这次探测机会
+     * @return 是否发送请求
+     */
+    public boolean tryAcquire(Long deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        if (breaker == null) {
+            return true;
+        }
+        synchronized (breaker) {
+            if (breaker.state == State.CLOSED) {
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            if (now < breaker.nextProbeTime) {
+                return false;
+            }
+            // 探测结果丢失（如轮询任务过期被丢弃）时，退避到期后允许再次探测
+            breaker.state = State.HALF_OPEN;
+            breaker.nextProbeTime = now + breaker.backoffMs;
+            breaker.probes++;
+            return true;
+        }
+    }
+
+    /**
+     * 记录一次有效响应
+     * @return 记录前的状态，不是 CLOSED 表示设备刚刚恢复
+     */
+    public State recordSuccess(Long deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        if (breaker == null) {
+            return State.CLOSED;
+        }
+        synchronized (breaker) {
+            State previous = breaker.state;
+            breaker.state = State.CLOSED;
+            breaker.consecutiveFailures = 0;
+            breaker.backoffMs = 0;
+            breaker.nextProbeTime = 0;
+            return previous;
+        }
+    }
+
+    /**
+     * 记录一次无响应或无效响应
+     * @return 记录后的状态
+     */
+    public State recordFailure(Long deviceId) {
+        Breaker breaker = breakers.computeIfAbsent(deviceId, k -> new Breaker());
+        synchronized (breaker) {
+            breaker.consecutiveFailures++;
+            long now = System.currentTimeMillis();
+            if (breaker.state == State.CLOSED) {
+                if (breaker.consecutiveFailures >= failureThreshold) {
+                    breaker.state = State.OPEN;
+                    breaker.backoffMs = initialBackoffMs;
+                    breaker.nextProbeTime = now + breaker.backoffMs;
+                    breaker.openedTime = now;
+                    breaker.trips++;
+                }
+            } else {
+                breaker.state = State.OPEN;
+                breaker.backoffMs = Math.min(maxBackoffMs, (long) (breaker.backoffMs * backoffMultiplier));
+                breaker.nextProbeTime = now + breaker.backoffMs;
+            }
+            return breaker.state;
+        }
+    }
+
+    public State getState(Long deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        return breaker != null ? breaker.state : State.CLOSED;
+    }
+
+    /**
+     * 下一次探测的退避时间（毫秒），未熔断时为 0
+     */
+    public long getBackoffMs(Long deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        return breaker != null ? breaker.backoffMs : 0;
+    }
+
+    public void remove(Long deviceId) {
+        breakers.remove(deviceId);
+    }
+
+    /**
+     * 熔断器快照：状态、连续失败次数、当前退避时间、距下次探测时间、熔断和探测次数
+     */
+    public Map<String, Object> snapshot(Long deviceId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Breaker breaker = breakers.get(deviceId);
+        if (breaker == null) {
+            result.put("state", State.CLOSED.name());
+            result.put("consecutiveFailures", 0);
+            return result;
+        }
+        synchronized (breaker) {
+            result.put("state", breaker.state.name());
+            result.put("consecutiveFailures", breaker.consecutiveFailures);
+            if (breaker.state != State.CLOSED) {
+                result.put("backoffMs", breaker.backoffMs);
+                result.put("nextProbeInMs", Math.max(0, breaker.nextProbeTime - System.currentTimeMillis()));
+                result.put("openedTime", breaker.openedTime);
+            }
+            result.put("trips", breaker.trips);
+            result.put("probes", breaker.probes);
+        }
+        return result;
+    }
+
+    /**
+     * 处于熔断（OPEN）和探测中（HALF_OPEN）的设备数
+     */
+    public Map<String, Integer> countByState() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put(State.OPEN.name(), 0);
+        result.put(State.HALF_OPEN.name(), 0);
+        for (Breaker breaker : breakers.values()) {
+            if (breaker.state != State.CLOSED) {
+                result.merge(breaker.state.name(), 1, Integer::sum);
+            }
+        }
+        return result;
+    }
+
+    private static class Breaker {
+        volatile State state = State.CLOSED;
+        int consecutiveFailures;
+        long backoffMs;
+        volatile long nextProbeTime;
+        long openedTime;
+        long trips;
+        long probes;
+    }
+}
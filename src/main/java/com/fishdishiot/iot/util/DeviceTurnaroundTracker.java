@@ -0,0 +1,59 @@
+package com.fishdishiot.iot.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备响应周转时间统计
+ * 记录每个设备从请求发送完毕到开始响应的时间（扣除报文在线路上的传输时间），
+ * 用指数加权移动平均平滑，供事务层按设备实际情况确定等待响应的时间。
+ */
+public class DeviceTurnaroundTracker {
+
+    /** EWMA 平滑系数 */
+    private static final double ALPHA = 0.2;
+
+    private final Map<Long, double[]> turnaroundMicros = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次测量值
+     * @param deviceId 设备ID
+     * @param micros 周转时间（微秒）
+     */
+    public void record(Long deviceId, long micros) {
+        if (deviceId == null) {
+            return;
+        }
+        double[] holder = turnaroundMicros.computeIfAbsent(deviceId, k -> new double[]{micros});
+        synchronized (holder) {
+            holder[0] = holder[0] + ALPHA * (micros - holder[0]);
+        }
+    }
+
+    /**
+     * 获取设备的平均周转时间
+     * @param deviceId 设备ID
+     * @return 微秒；尚无测量值时返回 -1
+     */
+    public long getTurnaroundMicros(Long deviceId) {
+        double[] holder = deviceId != null ? turnaroundMicros.get(deviceId) : null;
+        if (holder == null) {
+            return -1;
+        }
+        synchronized (holder) {
+            return (long) holder[0];
+        }
+    }
+
+    /**
+     * 所有设备的平均周转时间（毫秒）
+     */
+    public Map<Long, Double> snapshotMillis() {
+        Map<Long, Double> result = new LinkedHashMap<>();
+        for (Long deviceId : turnaroundMicros.keySet()) {
+            result.put(deviceId, getTurnaroundMicros(deviceId) / 1000.0);
+        }
+        return result;
+    }
+}
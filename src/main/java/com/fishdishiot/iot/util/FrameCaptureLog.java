@@ -0,0 +1,391 @@
+package com.fishdishiot.iot.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 串口收发帧的抓包日志
+ * 只追加写入文件，每次事务尝试记录一条：时间、设备ID、结果、请求帧和响应帧。
+ * 每条记录在复用的直接缓冲区中按二进制拼好后一次写入文件通道，不经过格式化、不分配内存，可以在生产环境常开；
+ * 文件写满后换新文件，只保留最近 maxFiles 个。
+ * 不使用内存映射：映射要等到 GC 才释放，Windows 上换文件时截断和删除旧文件会失败。
+ *
+ * 文件格式（大端）：文件头 MAGIC(int) VERSION(int)，之后逐条记录
+ * length(int) timestamp(long) deviceId(long) status(byte) requestLength(short) responseLength(short) request response，
+ * length 为 length 字段之后的字节数；读到文件末尾或 length 为 0 表示文件结束。
+ */
+public class FrameCaptureLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FrameCaptureLog.class);
+
+    /** "FDC1" */
+    static final int MAGIC = 0x46444331;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    /** 记录中 length 字段之后、帧数据之前的字节数 */
+    private static final int RECORD_HEADER_BYTES = 8 + 8 + 1 + 2 + 2;
+
+    public static final String FILE_PREFIX = "frames-";
+    public static final String FILE_SUFFIX = ".cap";
+
+    /** 事务结果 */
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_TIMEOUT = 1;
+    public static final byte STATUS_INVALID = 2;
+    public static final byte STATUS_MISMATCH = 3;
+    public static final byte STATUS_WRITE_FAILED = 4;
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private final int fileSizeBytes;
+    private final int maxFiles;
+
+    private FileChannel channel;
+    /** 拼装一条记录用的缓冲区，只在持有本对象的锁时使用 */
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(4 + RECORD_HEADER_BYTES + 512);
+    /** 当前文件已写入的字节数 */
+    private long position;
+    private Path currentFile;
+    private boolean closed;
+
+    private long records;
+    private long bytes;
+    private long rotations;
+    private long dropped;
+
+    /**
+     * @param directory 抓包文件目录，不存在时创建
+     * @param fileSizeBytes 单个文件大小
+     * @param maxFiles 保留的文件数
+     */
+    public FrameCaptureLog(Path directory, int fileSizeBytes, int maxFiles) throws IOException {
+        if (fileSizeBytes < 4096) {
+            throw new IllegalArgumentException("抓包文件大小不能小于 4096 字节: " + fileSizeBytes);
+        }
+        this.directory = directory;
+        this.fileSizeBytes = fileSizeBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        Files.createDirectories(directory);
+        openNewFile();
+    }
+
+    /**
+     * 记录一次事务尝试
+     * @param deviceId 设备ID，-1 表示未知
+     * @param status 结果，见 STATUS_*
+     * @param request 请求帧
+     * @param response 接收缓冲区
+     * @param responseLength 接收到的字节数
+     */
+    public synchronized void append(long timestamp, long deviceId, byte status, byte[] request,
+                                    byte[] response, int responseLength) {
+        if (closed) {
+            return;
+        }
+        int recordBytes = 4 + RECORD_HEADER_BYTES + request.length + responseLength;
+        if (buffer.capacity() < recordBytes) {
+            buffer = ByteBuffer.allocateDirect(recordBytes);
+        }
+        buffer.clear();
+        buffer.putInt(recordBytes - 4);
+        buffer.putLong(timestamp);
+        buffer.putLong(deviceId);
+        buffer.put(status);
+        buffer.putShort((short) request.length);
+        buffer.putShort((short) responseLength);
+        buffer.put(request);
+        buffer.put(response, 0, responseLength);
+        buffer.flip();
+        try {
+            if (position + recordBytes > fileSizeBytes) {
+                rotate();
+            }
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            dropped++;
+            log.error("写入抓包文件失败，停止抓包: {}", e.getMessage(), e);
+            closeQuietly();
+            return;
+        }
+        records++;
+        bytes += recordBytes;
+    }
+
+    private void openNewFile() throws IOException {
+        String time = LocalDateTime.now().format(FILE_TIME);
+        Path file = directory.resolve(FILE_PREFIX + time + FILE_SUFFIX);
+        // 同一毫秒内轮转时追加序号；"_" 排在 "." 之后，按文件名排序仍是创建顺序，不会误删新文件
+        for (int i = 1; Files.exists(file); i++) {
+            file = directory.resolve(String.format("%s%s_%03d%s", FILE_PREFIX, time, i, FILE_SUFFIX));
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header);
+        }
+        currentFile = file;
+        log.info("抓包写入文件: {}", file);
+        deleteOldFiles();
+    }
+
+    private void rotate() throws IOException {
+        finishFile();
+        rotations++;
+        openNewFile();
+    }
+
+    /**
+     * 刷出并关闭当前文件
+     */
+    private void finishFile() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            log.warn("刷出抓包文件 {} 失败: {}", currentFile, e.getMessage());
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("关闭抓包文件 {} 失败: {}", currentFile, e.getMessage());
+        }
+    }
+
+    private void deleteOldFiles() {
+        List<Path> files;
+        try {
+            files = listFiles(directory);
+        } catch (IOException e) {
+            log.warn("列出抓包文件失败: {}", e.getMessage());
+            return;
+        }
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+                log.info("删除过期的抓包文件: {}", files.get(i));
+            } catch (IOException e) {
+                log.warn("删除抓包文件 {} 失败: {}", files.get(i), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 目录中的抓包文件，按文件名（即创建时间）从旧到新排列
+     */
+    public static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closeQuietly();
+        }
+    }
+
+    private void closeQuietly() {
+        closed = true;
+        finishFile();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", !closed);
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("currentFile", currentFile != null ? currentFile.getFileName().toString() : null);
+        stats.put("currentFileUsedBytes", closed ? 0 : position);
+        stats.put("fileSizeBytes", fileSizeBytes);
+        stats.put("maxFiles", maxFiles);
+        stats.put("records", records);
+        stats.put("bytes", bytes);
+        stats.put("rotations", rotations);
+        stats.put("dropped", dropped);
+        return stats;
+    }
+
+    /**
+     * 一条抓包记录，读取时复用
+     */
+    public static class Record {
+        private long timestamp;
+        private long deviceId;
+        private byte status;
+        private byte[] request = new byte[256];
+        private int requestLength;
+        private byte[] response = new byte[256];
+        private int responseLength;
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getDeviceId() {
+            return deviceId;
+        }
+
+        public byte getStatus() {
+            return status;
+        }
+
+        /** 请求帧所在的缓冲区，有效长度见 {@link #getRequestLength()} */
+        public byte[] getRequest() {
+            return request;
+        }
+
+        public int getRequestLength() {
+            return requestLength;
+        }
+
+        /** 响应帧所在的缓冲区，有效长度见 {@link #getResponseLength()} */
+        public byte[] getResponse() {
+            return response;
+        }
+
+        public int getResponseLength() {
+            return responseLength;
+        }
+
+        public byte[] copyRequest() {
+            return Arrays.copyOf(request, requestLength);
+        }
+
+        public byte[] copyResponse() {
+            return Arrays.copyOf(response, responseLength);
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + " device=" + deviceId + " status=" + status + " req=" + HexCodec.encode(request, 0, requestLength)
+                    + " resp=" + HexCodec.encode(response, 0, responseLength);
+        }
+    }
+
+    /**
+     * 顺序读取一个抓包文件（也可以读取正在写入的文件，读到已写完的最后一条为止）
+     * 按块读入复用的缓冲区，不映射文件，读取期间不妨碍写入方换文件和删除旧文件
+     */
+    public static class Reader implements Closeable {
+        /** 记录的最大长度：两个帧长度字段都是 16 位 */
+        private static final int MAX_RECORD_BYTES = RECORD_HEADER_BYTES + 2 * 0xFFFF;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(Math.max(64 * 1024, 4 + MAX_RECORD_BYTES));
+        /** 缓冲区开头在文件中的位置 */
+        private long bufferOffset;
+
+        public Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.flip();
+            if (!fill(FILE_HEADER_BYTES) || buffer.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException("不是抓包文件: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                channel.close();
+                throw new IOException("不支持的抓包文件版本 " + version + ": " + file);
+            }
+        }
+
+        /**
+         * 保证缓冲区中至少有 n 个未读字节
+         * @return 文件中剩余的数据不足 n 个字节时返回 false
+         */
+        private boolean fill(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return true;
+            }
+            bufferOffset += buffer.position();
+            buffer.compact();
+            while (buffer.position() < n) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.remaining() >= n;
+        }
+
+        /**
+         * 读取下一条记录
+         * @return 是否读到；到达文件结束（或正在写入的文件中还没写完的记录）时返回 false
+         */
+        public boolean next(Record record) throws IOException {
+            if (!fill(4)) {
+                return false;
+            }
+            long start = bufferOffset + buffer.position();
+            int length = buffer.getInt(buffer.position());
+            if (length == 0) {
+                return false;
+            }
+            if (length < RECORD_HEADER_BYTES || length > MAX_RECORD_BYTES) {
+                throw new IOException("抓包记录损坏，位置 " + start + "，长度 " + length);
+            }
+            if (!fill(4 + length)) {
+                // 记录还没有写完，停在记录开头
+                return false;
+            }
+            buffer.getInt();
+            record.timestamp = buffer.getLong();
+            record.deviceId = buffer.getLong();
+            record.status = buffer.get();
+            record.requestLength = buffer.getShort() & 0xFFFF;
+            record.responseLength = buffer.getShort() & 0xFFFF;
+            if (RECORD_HEADER_BYTES + record.requestLength + record.responseLength != length) {
+                throw new IOException("抓包记录损坏，位置 " + start + "，帧长度与记录长度不符");
+            }
+            if (record.request.length < record.requestLength) {
+                record.request = new byte[record.requestLength];
+            }
+            if (record.response.length < record.responseLength) {
+                record.response = new byte[record.responseLength];
+            }
+            buffer.get(record.request, 0, record.requestLength);
+            buffer.get(record.response, 0, record.responseLength);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.fishdishiot.iot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 传感器型号的响应帧解码器
+ * 由型号的字段声明（寄存器偏移、数据类型、缩放、小数位寄存器、标签）编译而成，
+ * 解码时按扁平数组逐个字段从帧中取值写入 {@link SensorReading}，不分配对象。
+ * 一个字段的别名编译为额外的槽位，读取同一个寄存器。
+ */
+public class FrameDecoder {
+
+    /** 数据类型：无符号/有符号 16 位，无符号/有符号 32 位（高字在前） */
+    public static final byte U16 = 0;
+    public static final byte S16 = 1;
+    public static final byte U32 = 2;
+    public static final byte S32 = 3;
+
+    /** 数据区在响应帧中的起始位置：地址、功能码、字节数之后 */
+    private static final int DATA_OFFSET = 3;
+
+    private final String model;
+
+    /** 限定的从站地址，为 null 时不限定 */
+    private final Integer slaveAddress;
+
+    /** 是否输出整帧的十六进制原始数据（未声明字段的型号） */
+    private final boolean raw;
+
+    // 每个槽位一项
+    private final int[] params;
+    private final int[] byteOffsets;
+    private final byte[] types;
+    private final double[] scales;
+    /** 缩放为 1/10、1/100 等时改用除法，避免 253 * 0.1 = 25.300000000000001 这样的误差；0 表示用乘法 */
+    private final double[] divisors;
+    /** 小数位数所在寄存器的字节偏移，-1 表示没有 */
+    private final int[] decimalOffsets;
+    /** 枚举值的标签，null 表示数值 */
+    private final String[][] labels;
+    private final String[] unknownLabels;
+    /** 输出为整数（缩放为 1 且没有小数位寄存器） */
+    private final boolean[] integral;
+
+    /** 参数下标 -> 槽位，-1 表示不是本型号的参数 */
+    private final int[] slotByParam;
+
+    /** 所有字段都能取到值的最短帧长度 */
+    private final int minLength;
+
+    private FrameDecoder(Builder builder) {
+        this.model = builder.model;
+        this.slaveAddress = builder.slaveAddress;
+        this.raw = builder.raw;
+        int n = builder.slots.size();
+        params = new int[n];
+        byteOffsets = new int[n];
+        types = new byte[n];
+        scales = new double[n];
+        divisors = new double[n];
+        decimalOffsets = new int[n];
+        labels = new String[n][];
+        unknownLabels = new String[n];
+        integral = new boolean[n];
+        int length = DATA_OFFSET;
+        for (int i = 0; i < n; i++) {
+            Slot slot = builder.slots.get(i);
+            params[i] = ParamIndex.of(slot.name);
+            byteOffsets[i] = DATA_OFFSET + slot.register * 2;
+            types[i] = slot.type;
+            scales[i] = slot.scale;
+            double inverse = slot.scale > 0 && slot.scale < 1 ? 1 / slot.scale : 0;
+            divisors[i] = Math.abs(inverse - Math.rint(inverse)) < 1e-9 ? Math.rint(inverse) : 0;
+            decimalOffsets[i] = slot.decimalRegister != null ? DATA_OFFSET + slot.decimalRegister * 2 : -1;
+            labels[i] = slot.labels;
+            unknownLabels[i] = slot.unknownLabel;
+            integral[i] = slot.scale == 1.0 && slot.decimalRegister == null;
+            length = Math.max(length, byteOffsets[i] + width(slot.type));
+            if (decimalOffsets[i] >= 0) {
+                length = Math.max(length, decimalOffsets[i] + 2);
+            }
+        }
+        this.minLength = length;
+        int maxParam = -1;
+        for (int param : params) {
+            maxParam = Math.max(maxParam, param);
+        }
+        slotByParam = new int[maxParam + 1];
+        Arrays.fill(slotByParam, -1);
+        for (int i = n - 1; i >= 0; i--) {
+            slotByParam[params[i]] = i;
+        }
+    }
+
+    public static Builder builder(String model) {
+        return new Builder(model);
+    }
+
+    private static int width(byte type) {
+        return type == U32 || type == S32 ? 4 : 2;
+    }
+
+    /**
+     * 帧是否符合该型号：从站地址一致（如有限定）且长度足以取到所有字段，用于按设备类型推断型号
+     */
+    public boolean matches(byte[] frame) {
+        if (frame.length < 2 || (frame[1] & 0x80) != 0) {
+            return false;
+        }
+        return (slaveAddress == null || (frame[0] & 0xFF) == slaveAddress) && frame.length >= minLength;
+    }
+
+    /**
+     * 解码一帧响应，帧长度不足的字段跳过
+     * @param frame 响应帧（含地址、功能码和字节数）
+     * @param out 写入的读数，调用方负责 {@link SensorReading#reset}
+     * @return 写入的字段数
+     */
+    public int decode(byte[] frame, SensorReading out) {
+        int decoded = 0;
+        for (int i = 0; i < params.length; i++) {
+            int offset = byteOffsets[i];
+            byte type = types[i];
+            if (offset + width(type) > frame.length) {
+                continue;
+            }
+            long raw = ((frame[offset] & 0xFF) << 8) | (frame[offset + 1] & 0xFF);
+            switch (type) {
+                case S16:
+                    raw = (short) raw;
+                    break;
+                case U32:
+                    raw = (raw << 16) | ((frame[offset + 2] & 0xFF) << 8) | (frame[offset + 3] & 0xFF);
+                    break;
+                case S32:
+                    raw = (int) ((raw << 16) | ((frame[offset + 2] & 0xFF) << 8) | (frame[offset + 3] & 0xFF));
+                    break;
+                default:
+                    break;
+            }
+            double value = divisors[i] > 0 ? raw / divisors[i] : raw * scales[i];
+            int decimalOffset = decimalOffsets[i];
+            if (decimalOffset >= 0) {
+                if (decimalOffset + 2 > frame.length) {
+                    continue;
+                }
+                int decimals = ((frame[decimalOffset] & 0xFF) << 8) | (frame[decimalOffset + 1] & 0xFF);
+                value = value / Math.pow(10, decimals);
+            }
+            out.set(params[i], value);
+            decoded++;
+        }
+        return decoded;
+    }
+
+    private int slot(int param) {
+        return param < slotByParam.length ? slotByParam[param] : -1;
+    }
+
+    /**
+     * 参数是否为枚举字段（值为标签下标，不是测量值）
+     */
+    public boolean isLabel(int param) {
+        int slot = slot(param);
+        return slot >= 0 && labels[slot] != null;
+    }
+
+    /**
+     * 枚举字段的标签
+     * @return 标签，参数不是枚举字段时返回 null
+     */
+    public String label(int param, double value) {
+        int slot = slot(param);
+        if (slot < 0 || labels[slot] == null) {
+            return null;
+        }
+        int index = (int) value;
+        return index >= 0 && index < labels[slot].length ? labels[slot][index] : unknownLabels[slot];
+    }
+
+    /**
+     * 参数值的输出形式：枚举字段输出标签，整数字段输出 Integer（u32 为 Long），其余输出 Double
+     */
+    public Object format(int param, double value) {
+        int slot = slot(param);
+        if (slot < 0) {
+            return value;
+        }
+        if (labels[slot] != null) {
+            return label(param, value);
+        }
+        if (integral[slot]) {
+            return types[slot] == U32 ? (Object) (long) value : (Object) (int) value;
+        }
+        return value;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * 解码器构建器，由型号配置逐个声明字段
+     */
+    public static class Builder {
+        private final String model;
+        private Integer slaveAddress;
+        private boolean raw;
+        private final List<Slot> slots = new ArrayList<>();
+
+        private Builder(String model) {
+            this.model = model;
+        }
+
+        public Builder slaveAddress(Integer slaveAddress) {
+            this.slaveAddress = slaveAddress;
+            return this;
+        }
+
+        public Builder raw(boolean raw) {
+            this.raw = raw;
+            return this;
+        }
+
+        /**
+         * 声明一个字段
+         * @param name 参数名
+         * @param register 在响应数据区中的寄存器偏移（第一个寄存器为 0）
+         * @param type 数据类型：u16 / s16 / u32 / s32
+         * @param scale 缩放系数
+         * @param decimalRegister 小数位数所在寄存器的偏移（值再除以 10 的该次方），可为 null
+         * @param labels 枚举值的标签（按原始值下标），可为 null
+         * @param unknownLabel 原始值超出标签范围时的输出
+         */
+        public Builder field(String name, int register, String type, double scale, Integer decimalRegister,
+                             List<String> labels, String unknownLabel) {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("型号 " + model + " 的字段缺少参数名");
+            }
+            if (register < 0) {
+                throw new IllegalArgumentException("型号 " + model + " 的字段 " + name + " 寄存器偏移无效: " + register);
+            }
+            Slot slot = new Slot();
+            slot.name = name;
+            slot.register = register;
+            slot.type = parseType(type);
+            slot.scale = scale;
+            slot.decimalRegister = decimalRegister;
+            slot.labels = labels != null && !labels.isEmpty() ? labels.toArray(new String[0]) : null;
+            slot.unknownLabel = unknownLabel;
+            slots.add(slot);
+            return this;
+        }
+
+        /**
+         * 为上一个字段声明别名：同一个值以另一个参数名输出
+         */
+        public Builder alias(String name) {
+            if (slots.isEmpty()) {
+                throw new IllegalStateException("型号 " + model + " 声明别名前需要先声明字段");
+            }
+            Slot last = slots.get(slots.size() - 1);
+            Slot slot = new Slot();
+            slot.name = name;
+            slot.register = last.register;
+            slot.type = last.type;
+            slot.scale = last.scale;
+            slot.decimalRegister = last.decimalRegister;
+            slot.labels = last.labels;
+            slot.unknownLabel = last.unknownLabel;
+            slots.add(slot);
+            return this;
+        }
+
+        public FrameDecoder build() {
+            return new FrameDecoder(this);
+        }
+
+        private byte parseType(String type) {
+            if (type == null) {
+                return U16;
+            }
+            switch (type.toLowerCase()) {
+                case "u16":
+                    return U16;
+                case "s16":
+                    return S16;
+                case "u32":
+                    return U32;
+                case "s32":
+                    return S32;
+                default:
+                    throw new IllegalArgumentException("型号 " + model + " 的数据类型无效: " + type);
+            }
+        }
+    }
+
+    private static class Slot {
+        String name;
+        int register;
+        byte type;
+        double scale;
+        Integer decimalRegister;
+        String[] labels;
+        String unknownLabel;
+    }
+}
@@ -0,0 +1,129 @@
+package com.fishdishiot.iot.util;
+
+import java.util.Arrays;
+
+/**
+ * 16进制编解码
+ * 编码和解码都查表完成，不经过 String.format 或正则，帧的16进制日志可以常开用于现场排查。
+ * 编码输出 "01 03 00 00 00 02 C4 0B" 的形式（大写、空格分隔）；解码忽略空白字符。
+ */
+public final class HexCodec {
+
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** 字符 -> 数值，非16进制字符为 -1 */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['A' + i] = (byte) (10 + i);
+            VALUES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexCodec() {
+    }
+
+    public static String encode(byte[] bytes) {
+        return encode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 把 bytes[offset, offset + length) 编码为空格分隔的16进制文本
+     */
+    public static String encode(byte[] bytes, int offset, int length) {
+        if (length <= 0) {
+            return "";
+        }
+        char[] out = new char[length * 3 - 1];
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i];
+            if (i > 0) {
+                out[i * 3 - 1] = ' ';
+            }
+            out[i * 3] = DIGITS[(b >> 4) & 0x0F];
+            out[i * 3 + 1] = DIGITS[b & 0x0F];
+        }
+        return new String(out);
+    }
+
+    /**
+     * 把 bytes[offset, offset + length) 以16进制追加到调用方复用的 StringBuilder
+     */
+    public static StringBuilder append(StringBuilder sb, byte[] bytes, int offset, int length) {
+        sb.ensureCapacity(sb.length() + length * 3);
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i];
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(DIGITS[(b >> 4) & 0x0F]).append(DIGITS[b & 0x0F]);
+        }
+        return sb;
+    }
+
+    /**
+     * 解码16进制文本，忽略空白字符
+     * @throws IllegalArgumentException 含非法字符或位数为奇数
+     */
+    public static byte[] decode(CharSequence hex) {
+        byte[] out = new byte[countDigits(hex) / 2];
+        decode(hex, out, 0);
+        return out;
+    }
+
+    /**
+     * 把16进制文本解码到调用方提供的缓冲区，忽略空白字符
+     * @param out 输出缓冲区
+     * @param offset 写入的起始位置
+     * @return 写入的字节数
+     * @throws IllegalArgumentException 含非法字符、位数为奇数或缓冲区不足
+     */
+    public static int decode(CharSequence hex, byte[] out, int offset) {
+        int length = countDigits(hex) / 2;
+        if (offset + length > out.length) {
+            throw new IllegalArgumentException("缓冲区不足: 需要 " + length + " 字节");
+        }
+        int pos = offset;
+        int high = -1;
+        for (int i = 0; i < hex.length(); i++) {
+            char c = hex.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            int digit = VALUES[c];
+            if (high < 0) {
+                high = digit;
+            } else {
+                out[pos++] = (byte) ((high << 4) | digit);
+                high = -1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 校验并统计16进制位数
+     */
+    private static int countDigits(CharSequence hex) {
+        int digits = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            char c = hex.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (c >= VALUES.length || VALUES[c] < 0) {
+                throw new IllegalArgumentException("含非法字符: '" + c + "'");
+            }
+            digits++;
+        }
+        if ((digits & 1) != 0) {
+            throw new IllegalArgumentException("16进制位数为奇数");
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,213 @@
+package com.fishdishiot.iot.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 数据处理流水线中的一个阶段
+ * 每个工作线程一个有界队列，同一设备的数据按设备ID固定交给同一个工作线程，保证同一设备按到达顺序处理。
+ * 采集线程用 {@link #submit} 提交，队列满时丢弃最旧的数据（新读数比积压的旧读数更有价值），计入 dropped，
+ * 采集线程不会因为下游变慢而被阻塞，串口轮询不受数据库或 MQTT 的影响；
+ * 阶段之间和回放用 {@link #put} 提交，队列满时等待，下游变慢时上游随之放慢，积压最终体现在入口阶段。
+ * @param <T> 数据类型
+ */
+public class IngestStage<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestStage.class);
+
+    private final String name;
+    private final Consumer<T> handler;
+    private final ArrayBlockingQueue<Entry<T>>[] queues;
+    private final Thread[] threads;
+    private final int capacity;
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    /** 入队到开始处理的等待时间 */
+    private final LatencyHistogram lag = new LatencyHistogram();
+
+    /** 处理耗时 */
+    private final LatencyHistogram service = new LatencyHistogram();
+
+    /**
+     * @param name 阶段名称，用于线程名和统计
+     * @param workers 工作线程数
+     * @param capacity 每个工作线程的队列容量
+     * @param handler 处理方法，抛出的异常计入 failed 并记录日志
+     */
+    @SuppressWarnings("unchecked")
+    public IngestStage(String name, int workers, int capacity, Consumer<T> handler) {
+        this.name = name;
+        this.handler = handler;
+        this.capacity = Math.max(1, capacity);
+        int n = Math.max(1, workers);
+        this.queues = new ArrayBlockingQueue[n];
+        this.threads = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            ArrayBlockingQueue<Entry<T>> queue = new ArrayBlockingQueue<>(this.capacity);
+            queues[i] = queue;
+            threads[i] = new Thread(() -> runWorker(queue), "Ingest-" + name + "-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * 提交一条数据，不阻塞；队列满时丢弃该工作线程队列中最旧的一条
+     * @param key 分区键（设备ID），相同的键由同一个工作线程按顺序处理
+     */
+    public void submit(long key, T item) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return;
+        }
+        ArrayBlockingQueue<Entry<T>> queue = queues[(int) Math.floorMod(key, (long) queues.length)];
+        Entry<T> entry = new Entry<>(item, System.nanoTime());
+        submitted.incrementAndGet();
+        while (!queue.offer(entry)) {
+            if (queue.poll() != null) {
+                long total = dropped.incrementAndGet();
+                // 持续积压时按 2 的幂次记录日志，避免刷屏
+                if (Long.bitCount(total) == 1) {
+                    log.warn("处理阶段 {} 积压，已丢弃 {} 条最旧的数据", name, total);
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交一条数据，队列满时等待
+     * @param key 分区键（设备ID）
+     * @throws InterruptedException 等待时被中断
+     */
+    public void put(long key, T item) throws InterruptedException {
+        ArrayBlockingQueue<Entry<T>> queue = queues[(int) Math.floorMod(key, (long) queues.length)];
+        Entry<T> entry = new Entry<>(item, System.nanoTime());
+        while (running) {
+            if (queue.offer(entry, 200, TimeUnit.MILLISECONDS)) {
+                submitted.incrementAndGet();
+                return;
+            }
+        }
+        dropped.incrementAndGet();
+    }
+
+    private void runWorker(ArrayBlockingQueue<Entry<T>> queue) {
+        while (running || !queue.isEmpty()) {
+            Entry<T> entry;
+            try {
+                entry = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+                continue;
+            }
+            if (entry == null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            lag.record(start - entry.enqueuedNanos);
+            try {
+                handler.accept(entry.item);
+                processed.incrementAndGet();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.error("处理阶段 {} 处理失败: {}", name, e.getMessage(), e);
+            }
+            service.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 停止接收新数据，等待队列中的数据处理完，超时后中断工作线程
+     * @param timeoutMs 等待时间
+     */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread thread : threads) {
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int remaining = 0;
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i].isAlive()) {
+                threads[i].interrupt();
+            }
+            remaining += queues[i].size();
+        }
+        if (remaining > 0) {
+            log.warn("处理阶段 {} 停止时仍有 {} 条数据未处理", name, remaining);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前积压的数据条数
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (ArrayBlockingQueue<Entry<T>> queue : queues) {
+            queued += queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * 阶段统计：提交、处理、失败、丢弃的条数，积压条数和最旧一条的等待时间，吞吐量，等待和处理耗时分布
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (ArrayBlockingQueue<Entry<T>> queue : queues) {
+            Entry<T> head = queue.peek();
+            if (head != null) {
+                oldest = Math.max(oldest, now - head.enqueuedNanos);
+            }
+        }
+        long done = processed.get();
+        stats.put("workers", threads.length);
+        stats.put("capacity", capacity * queues.length);
+        stats.put("queued", getQueued());
+        stats.put("oldestQueuedMs", oldest / 1_000_000L);
+        stats.put("submitted", submitted.get());
+        stats.put("processed", done);
+        stats.put("failed", failed.get());
+        stats.put("dropped", dropped.get());
+        stats.put("processedPerSecond", Math.round(done / Math.max((now - startNanos) / 1e9, 1e-3)));
+        stats.put("lag", lag.snapshot());
+        stats.put("service", service.snapshot());
+        return stats;
+    }
+
+    private static class Entry<T> {
+        final T item;
+        final long enqueuedNanos;
+
+        Entry(T item, long enqueuedNanos) {
+            this.item = item;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
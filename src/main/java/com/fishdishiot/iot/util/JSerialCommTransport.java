@@ -0,0 +1,168 @@
+package com.fishdishiot.iot.util;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 基于 jSerialComm 的物理串口传输（默认实现）
+ * 打开成功时记录设备的序列号、VID/PID 和描述，USB 转串口适配器复位后系统分配了新的串口名时，
+ * 可以按这些标识重新找到同一个设备。
+ */
+public class JSerialCommTransport implements SerialTransport {
+
+    private volatile String portName;
+
+    private final int baudRate;
+
+    private SerialPort commPort;
+
+    /** 当前生效的读超时，避免每次读取都重复设置 */
+    private int currentReadTimeoutMs = -1;
+
+    /** 断开回调 */
+    private volatile Runnable disconnectListener;
+
+    // 上次成功打开时的设备标识
+    private String serialNumber;
+    private int vendorId;
+    private int productId;
+    private String portDescription;
+
+    public JSerialCommTransport(String portName, int baudRate) {
+        this.portName = portName;
+        this.baudRate = baudRate;
+    }
+
+    @Override
+    public String getName() {
+        return portName;
+    }
+
+    @Override
+    public boolean open() {
+        commPort = SerialPort.getCommPort(portName);
+        commPort.setBaudRate(baudRate);
+        currentReadTimeoutMs = -1;
+        if (!commPort.openPort()) {
+            return false;
+        }
+        serialNumber = commPort.getSerialNumber();
+        vendorId = commPort.getVendorID();
+        productId = commPort.getProductID();
+        portDescription = commPort.getPortDescription();
+        // 只监听断开事件，不影响同步读写
+        commPort.addDataListener(new SerialPortDataListener() {
+            @Override
+            public int getListeningEvents() {
+                return SerialPort.LISTENING_EVENT_PORT_DISCONNECTED;
+            }
+
+            @Override
+            public void serialEvent(SerialPortEvent event) {
+                Runnable listener = disconnectListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        if (commPort != null && commPort.isOpen()) {
+            commPort.removeDataListener();
+            return commPort.closePort();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return commPort != null && commPort.isOpen();
+    }
+
+    @Override
+    public int bytesAvailable() {
+        return commPort != null ? commPort.bytesAvailable() : -1;
+    }
+
+    @Override
+    public int write(byte[] data, int length) {
+        return commPort != null ? commPort.writeBytes(data, length) : -1;
+    }
+
+    @Override
+    public int read(byte[] buf, int length, int offset, int timeoutMs) {
+        if (commPort == null) {
+            return -1;
+        }
+        if (timeoutMs != currentReadTimeoutMs) {
+            // 半阻塞读：有数据立即返回，否则最多等待超时时间
+            commPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, timeoutMs, 0);
+            currentReadTimeoutMs = timeoutMs;
+        }
+        return commPort.readBytes(buf, length, offset);
+    }
+
+    @Override
+    public void setDisconnectListener(Runnable listener) {
+        this.disconnectListener = listener;
+    }
+
+    /**
+     * 原串口名已不存在时，优先按序列号、其次按 VID/PID 和描述（只有唯一匹配时）找到同一个适配器
+     */
+    @Override
+    public String relocate(Collection<String> excluded) {
+        if (vendorId <= 0 && !hasSerialNumber()) {
+            // 从未成功打开过，或不是 USB 设备，无法识别
+            return null;
+        }
+        List<SerialPort> candidates = new ArrayList<>();
+        for (SerialPort port : SerialPort.getCommPorts()) {
+            String name = port.getSystemPortName();
+            if (name.equals(portName)) {
+                return null;
+            }
+            if (!excluded.contains(name)) {
+                candidates.add(port);
+            }
+        }
+        SerialPort match = null;
+        if (hasSerialNumber()) {
+            for (SerialPort port : candidates) {
+                if (serialNumber.equals(port.getSerialNumber())) {
+                    match = port;
+                    break;
+                }
+            }
+        }
+        if (match == null && vendorId > 0) {
+            for (SerialPort port : candidates) {
+                if (port.getVendorID() == vendorId && port.getProductID() == productId
+                        && (portDescription == null || portDescription.equals(port.getPortDescription()))) {
+                    if (match != null) {
+                        // 多个相同型号的适配器，无法确定是哪一个
+                        return null;
+                    }
+                    match = port;
+                }
+            }
+        }
+        if (match == null) {
+            return null;
+        }
+        portName = match.getSystemPortName();
+        return portName;
+    }
+
+    private boolean hasSerialNumber() {
+        return serialNumber != null && !serialNumber.isEmpty() && !"Unknown".equalsIgnoreCase(serialNumber);
+    }
+}
@@ -0,0 +1,93 @@
+package com.fishdishiot.iot.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定分桶的耗时直方图
+ * 桶边界覆盖 Modbus 事务常见的 0.1ms ~ 5s 范围，记录时无锁、不分配内存；分位数按所在桶的上界估算。
+ */
+public class LatencyHistogram {
+
+    /** 桶上界（微秒），最后一个桶收集超出范围的值 */
+    private static final long[] BOUNDS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MICROS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param nanos 纳秒
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int i = 0;
+        while (i < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 估算分位数：返回累计数达到该比例的桶的上界（毫秒），不超过实际最大值
+     * @param quantile 0~1
+     */
+    public double quantileMillis(double quantile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(BOUNDS_MICROS[i], maxMicros.get()) / 1000.0;
+            }
+        }
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * 直方图快照：次数、平均值、最大值、P50/P95/P99 以及非空的桶
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long total = count.get();
+        result.put("count", total);
+        result.put("avgMs", total > 0 ? sumMicros.get() / total / 1000.0 : 0);
+        result.put("maxMs", maxMicros.get() / 1000.0);
+        result.put("p50Ms", quantileMillis(0.50));
+        result.put("p95Ms", quantileMillis(0.95));
+        result.put("p99Ms", quantileMillis(0.99));
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i <= BOUNDS_MICROS.length; i++) {
+            long n = buckets.get(i);
+            if (n > 0) {
+                String label = i < BOUNDS_MICROS.length
+                        ? "<=" + (BOUNDS_MICROS[i] / 1000.0) + "ms"
+                        : ">" + (BOUNDS_MICROS[BOUNDS_MICROS.length - 1] / 1000.0) + "ms";
+                histogram.put(label, n);
+            }
+        }
+        result.put("buckets", histogram);
+        return result;
+    }
+}
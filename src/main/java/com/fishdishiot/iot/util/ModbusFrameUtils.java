@@ -0,0 +1,104 @@
+package com.fishdishiot.iot.util;
+
+/**
+ * Modbus RTU 帧工具类
+ * 根据功能码、字节数和CRC判断一帧响应是否已经接收完整。
+ */
+public class ModbusFrameUtils {
+
+    /** 帧长度未知（字节不足或非标准功能码） */
+    public static final int UNKNOWN_LENGTH = -1;
+
+    private ModbusFrameUtils() {
+    }
+
+    /**
+     * 根据已收到的字节推算完整响应帧的长度。
+     * <ul>
+     *     <li>异常响应（功能码最高位为1）：地址 + 功能码 + 异常码 + CRC = 5 字节</li>
+     *     <li>01/02/03/04 读响应：地址 + 功能码 + 字节数 + 数据 + CRC</li>
+     *     <li>05/06/0F/10 写响应：固定 8 字节</li>
+     * </ul>
+     * @param buf 接收缓冲区
+     * @param len 已接收的字节数
+     * @return 完整帧长度；无法判断时返回 {@link #UNKNOWN_LENGTH}
+     */
+    public static int expectedResponseLength(byte[] buf, int len) {
+        if (len < 2) {
+            return UNKNOWN_LENGTH;
+        }
+        int function = buf[1] & 0xFF;
+        if ((function & 0x80) != 0) {
+            return 5;
+        }
+        switch (function) {
+            case 0x01:
+            case 0x02:
+            case 0x03:
+            case 0x04:
+                if (len < 3) {
+                    return UNKNOWN_LENGTH;
+                }
+                return 3 + (buf[2] & 0xFF) + 2;
+            case 0x05:
+            case 0x06:
+            case 0x0F:
+            case 0x10:
+                return 8;
+            default:
+                return UNKNOWN_LENGTH;
+        }
+    }
+
+    /**
+     * 计算 Modbus CRC16（多项式 0xA001，初值 0xFFFF）。
+     * @param buf 数据
+     * @param offset 起始位置
+     * @param length 参与计算的字节数
+     * @return CRC 值，低字节在前发送
+     */
+    public static int crc16(byte[] buf, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc ^= buf[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((crc & 0x0001) != 0) {
+                    crc = (crc >>> 1) ^ 0xA001;
+                } else {
+                    crc >>>= 1;
+                }
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    /**
+     * 检查缓冲区前 len 个字节是否构成一帧CRC正确的数据（末尾两字节为CRC，低字节在前）。
+     * @param buf 接收缓冲区
+     * @param len 帧长度
+     * @return CRC 是否正确
+     */
+    public static boolean hasValidCrc(byte[] buf, int len) {
+        if (len < 4) {
+            return false;
+        }
+        int crc = crc16(buf, 0, len - 2);
+        return (buf[len - 2] & 0xFF) == (crc & 0xFF)
+                && (buf[len - 1] & 0xFF) == ((crc >>> 8) & 0xFF);
+    }
+
+    /**
+     * 判断已接收的数据是否已经是一帧完整的响应。
+     * 能从功能码推算长度时按长度判断；否则退化为CRC校验通过即认为完整。
+     * @param buf 接收缓冲区
+     * @param len 已接收的字节数
+     * @return 是否完整
+     */
+    public static boolean isFrameComplete(byte[] buf, int len) {
+        int expected = expectedResponseLength(buf, len);
+        if (expected != UNKNOWN_LENGTH) {
+            return len >= expected;
+        }
+        return hasValidCrc(buf, len);
+    }
+}
@@ -0,0 +1,138 @@
+package com.fishdishiot.iot.util;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modbus 合并读取规划
+ * 同一总线上从站地址、功能码相同且寄存器范围相邻（或重叠、间隔不超过 maxGap）的读请求
+ * 合并为一次 03/04 读取，响应再按寄存器偏移拆回各个设备。
+ */
+public class ModbusReadPlanner {
+
+    /** 单次读寄存器的最大数量 */
+    public static final int MAX_REGISTERS = 125;
+
+    private ModbusReadPlanner() {
+    }
+
+    /**
+     * 生成读取计划
+     * @param reads 同一总线上的读请求
+     * @param maxGap 允许合并的最大寄存器间隔；小于0表示不合并
+     * @return 读取计划，每个计划对应一次总线事务
+     */
+    public static List<ReadPlan> plan(List<Member> reads, int maxGap) {
+        List<ReadPlan> plans = new ArrayList<>();
+        Map<Integer, List<Member>> groups = new LinkedHashMap<>();
+        for (Member member : reads) {
+            ModbusRequest request = member.getRequest();
+            if (maxGap < 0 || !request.isRegisterRead()) {
+                plans.add(ReadPlan.single(member));
+                continue;
+            }
+            int key = (request.getSlaveAddress() << 8) | request.getFunctionCode();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(member);
+        }
+        for (List<Member> group : groups.values()) {
+            group.sort(Comparator.comparingInt(Member::getStart));
+            List<Member> current = new ArrayList<>();
+            int start = 0;
+            int end = 0;
+            for (Member member : group) {
+                if (!current.isEmpty() && member.getStart() <= end + maxGap
+                        && Math.max(end, member.getEnd()) - start <= MAX_REGISTERS) {
+                    current.add(member);
+                    end = Math.max(end, member.getEnd());
+                    continue;
+                }
+                if (!current.isEmpty()) {
+                    plans.add(ReadPlan.of(current, start, end));
+                }
+                current = new ArrayList<>();
+                current.add(member);
+                start = member.getStart();
+                end = member.getEnd();
+            }
+            if (!current.isEmpty()) {
+                plans.add(ReadPlan.of(current, start, end));
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * 一个设备的读请求
+     */
+    @Getter
+    public static class Member {
+        private final Long deviceId;
+        private final ModbusRequest request;
+
+        public Member(Long deviceId, ModbusRequest request) {
+            this.deviceId = deviceId;
+            this.request = request;
+        }
+
+        /** 起始寄存器 */
+        public int getStart() {
+            return request.getStartAddress();
+        }
+
+        /** 结束寄存器（不含） */
+        public int getEnd() {
+            return request.getStartAddress() + request.getQuantityOrValue();
+        }
+    }
+
+    /**
+     * 一次总线事务的读取计划
+     */
+    @Getter
+    public static class ReadPlan {
+        /** 实际发送的请求；只有一个成员时就是该设备原始配置的指令帧 */
+        private final ModbusRequest request;
+        private final List<Member> members;
+
+        private ReadPlan(ModbusRequest request, List<Member> members) {
+            this.request = request;
+            this.members = members;
+        }
+
+        static ReadPlan single(Member member) {
+            List<Member> members = new ArrayList<>();
+            members.add(member);
+            return new ReadPlan(member.getRequest(), members);
+        }
+
+        static ReadPlan of(List<Member> members, int start, int end) {
+            if (members.size() == 1) {
+                return single(members.get(0));
+            }
+            ModbusRequest first = members.get(0).getRequest();
+            ModbusRequest merged = ModbusRequest.readRegisters(first.getSlaveAddress(), first.getFunctionCode(),
+                    start, end - start);
+            return new ReadPlan(merged, members);
+        }
+
+        /** 是否由多个设备合并而成 */
+        public boolean isCoalesced() {
+            return members.size() > 1;
+        }
+
+        /**
+         * 从合并读取的响应中拆出某个成员的响应
+         */
+        public ModbusResponse split(ModbusResponse response, Member member) {
+            if (!isCoalesced()) {
+                return response;
+            }
+            return response.slice(member.getStart() - request.getStartAddress(), member.getRequest().getQuantityOrValue());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.fishdishiot.iot.util;
+
+import lombok.Getter;
+
+/**
+ * Modbus RTU 请求帧
+ * 可由从站地址、功能码、寄存器地址构造（自动追加CRC），也可由数据库中配置的完整指令帧解析（校验CRC）。
+ * 部分继电器使用的不是标准 Modbus 帧，这类开关指令按原始帧保存（{@link #raw(String)}），只写入、不等待回显。
+ */
+@Getter
+public class ModbusRequest {
+
+    public static final int READ_COILS = 0x01;
+    public static final int READ_DISCRETE_INPUTS = 0x02;
+    public static final int READ_HOLDING_REGISTERS = 0x03;
+    public static final int READ_INPUT_REGISTERS = 0x04;
+    public static final int WRITE_SINGLE_COIL = 0x05;
+    public static final int WRITE_SINGLE_REGISTER = 0x06;
+    public static final int WRITE_MULTIPLE_COILS = 0x0F;
+    public static final int WRITE_MULTIPLE_REGISTERS = 0x10;
+
+    /** 从站地址 */
+    private final int slaveAddress;
+
+    /** 功能码 */
+    private final int functionCode;
+
+    /** 起始寄存器（或线圈）地址 */
+    private final int startAddress;
+
+    /** 读：寄存器（或线圈）数量；写单个：写入值 */
+    private final int quantityOrValue;
+
+    /** 含CRC的完整帧（原始帧为配置的原样字节） */
+    private final byte[] frame;
+
+    /** 是否为未校验CRC的原始帧 */
+    private final boolean raw;
+
+    private ModbusRequest(byte[] frame) {
+        this(frame, false);
+    }
+
+    private ModbusRequest(byte[] frame, boolean raw) {
+        this.frame = frame;
+        this.raw = raw;
+        this.slaveAddress = frame.length > 0 ? frame[0] & 0xFF : 0;
+        this.functionCode = frame.length > 1 ? frame[1] & 0xFF : 0;
+        if (frame.length >= 8) {
+            this.startAddress = ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+            this.quantityOrValue = ((frame[4] & 0xFF) << 8) | (frame[5] & 0xFF);
+        } else {
+            this.startAddress = 0;
+            this.quantityOrValue = 0;
+        }
+    }
+
+    /**
+     * 构造 03 读保持寄存器请求
+     * @param slaveAddress 从站地址
+     * @param startAddress 起始寄存器
+     * @param quantity 寄存器数量（1~125）
+     */
+    public static ModbusRequest readHoldingRegisters(int slaveAddress, int startAddress, int quantity) {
+        return readRegisters(slaveAddress, READ_HOLDING_REGISTERS, startAddress, quantity);
+    }
+
+    /**
+     * 构造 03/04 读寄存器请求
+     * @param slaveAddress 从站地址
+     * @param functionCode 03 读保持寄存器 / 04 读输入寄存器
+     * @param startAddress 起始寄存器
+     * @param quantity 寄存器数量（1~125）
+     */
+    public static ModbusRequest readRegisters(int slaveAddress, int functionCode, int startAddress, int quantity) {
+        if (functionCode != READ_HOLDING_REGISTERS && functionCode != READ_INPUT_REGISTERS) {
+            throw new IllegalArgumentException("不是读寄存器功能码: " + functionCode);
+        }
+        if (quantity < 1 || quantity > 125) {
+            throw new IllegalArgumentException("寄存器数量超出范围: " + quantity);
+        }
+        return build(slaveAddress, functionCode, startAddress, quantity);
+    }
+
+    /**
+     * 构造 05 写单个线圈请求
+     * @param slaveAddress 从站地址
+     * @param coilAddress 线圈地址
+     * @param on true=FF00（闭合），false=0000（断开）
+     */
+    public static ModbusRequest writeSingleCoil(int slaveAddress, int coilAddress, boolean on) {
+        return build(slaveAddress, WRITE_SINGLE_COIL, coilAddress, on ? 0xFF00 : 0x0000);
+    }
+
+    private static ModbusRequest build(int slaveAddress, int functionCode, int address, int value) {
+        byte[] frame = new byte[8];
+        frame[0] = (byte) slaveAddress;
+        frame[1] = (byte) functionCode;
+        frame[2] = (byte) (address >> 8);
+        frame[3] = (byte) address;
+        frame[4] = (byte) (value >> 8);
+        frame[5] = (byte) value;
+        int crc = ModbusFrameUtils.crc16(frame, 0, 6);
+        frame[6] = (byte) crc;
+        frame[7] = (byte) (crc >> 8);
+        return new ModbusRequest(frame);
+    }
+
+    /**
+     * 解析已含CRC的完整指令帧（如 sensor_command / command_on 中配置的指令）
+     * @param frame 指令帧
+     * @return 请求对象
+     * @throws IllegalArgumentException 帧过短或CRC错误
+     */
+    public static ModbusRequest fromFrame(byte[] frame) {
+        if (frame == null || frame.length < 4) {
+            throw new IllegalArgumentException("Modbus指令帧长度不足");
+        }
+        if (!ModbusFrameUtils.hasValidCrc(frame, frame.length)) {
+            throw new IllegalArgumentException("Modbus指令帧CRC校验失败");
+        }
+        return new ModbusRequest(frame.clone());
+    }
+
+    /**
+     * 解析16进制文本形式的完整指令帧（如 "01 03 00 00 00 02 C4 0B"），忽略空白字符并校验CRC。
+     * @param hex 16进制指令文本
+     * @return 请求对象
+     * @throws IllegalArgumentException 含非法字符、位数为奇数、帧过短或CRC错误
+     */
+    public static ModbusRequest fromHex(String hex) {
+        if (hex == null) {
+            throw new IllegalArgumentException("Modbus指令为空");
+        }
+        byte[] frame;
+        try {
+            frame = HexCodec.decode(hex);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Modbus指令" + e.getMessage());
+        }
+        if (frame.length < 4) {
+            throw new IllegalArgumentException("Modbus指令帧长度不足");
+        }
+        if (!ModbusFrameUtils.hasValidCrc(frame, frame.length)) {
+            throw new IllegalArgumentException("Modbus指令帧CRC校验失败");
+        }
+        return new ModbusRequest(frame);
+    }
+
+    /**
+     * 解析16进制文本形式的原始指令帧，不要求是CRC正确的 Modbus 帧，用于只写入不确认的开关指令
+     * @param hex 16进制指令文本
+     * @return 请求对象；CRC正确时与 {@link #fromHex(String)} 的结果相同
+     * @throws IllegalArgumentException 为空、含非法字符或位数为奇数
+     */
+    public static ModbusRequest raw(String hex) {
+        if (hex == null) {
+            throw new IllegalArgumentException("指令为空");
+        }
+        byte[] frame;
+        try {
+            frame = HexCodec.decode(hex);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("指令" + e.getMessage());
+        }
+        if (frame.length == 0) {
+            throw new IllegalArgumentException("指令为空");
+        }
+        boolean crcValid = frame.length >= 4 && ModbusFrameUtils.hasValidCrc(frame, frame.length);
+        return new ModbusRequest(frame, !crcValid);
+    }
+
+    /**
+     * 是否为CRC正确、长度与功能码相符的标准 Modbus 写指令（05/06/0F/10），只有这类指令能按回显确认
+     */
+    public boolean isStandardWrite() {
+        if (raw) {
+            return false;
+        }
+        switch (functionCode) {
+            case WRITE_SINGLE_COIL:
+            case WRITE_SINGLE_REGISTER:
+                return frame.length == 8;
+            case WRITE_MULTIPLE_COILS:
+            case WRITE_MULTIPLE_REGISTERS:
+                return frame.length >= 11 && frame.length == 9 + (frame[6] & 0xFF);
+            default:
+                return false;
+        }
+    }
+
+    /** 是否为 03/04 读寄存器请求 */
+    public boolean isRegisterRead() {
+        return !raw && (functionCode == READ_HOLDING_REGISTERS || functionCode == READ_INPUT_REGISTERS);
+    }
+
+    /**
+     * 判断响应是否与本请求对应：从站地址、功能码一致，且数据长度或回显内容与请求相符。
+     * 异常响应（功能码 | 0x80）只要地址和功能码对应即视为匹配。
+     * @param response 已通过CRC校验的响应
+     * @return 是否匹配
+     */
+    public boolean matches(ModbusResponse response) {
+        return matches(response.getFrame(), response.getFrame().length);
+    }
+
+    /**
+     * 在接收缓冲区上原地判断响应是否与本请求对应
+     * @param resp 已通过CRC校验的响应帧所在缓冲区
+     * @param length 帧长度
+     * @return 是否匹配
+     */
+    public boolean matches(byte[] resp, int length) {
+        if ((resp[0] & 0xFF) != slaveAddress) {
+            return false;
+        }
+        int responseFunction = resp[1] & 0xFF;
+        if ((responseFunction & 0x80) != 0) {
+            return (responseFunction & 0x7F) == functionCode;
+        }
+        if (responseFunction != functionCode) {
+            return false;
+        }
+        int byteCount = resp[2] & 0xFF;
+        switch (functionCode) {
+            case READ_COILS:
+            case READ_DISCRETE_INPUTS:
+                return byteCount == (quantityOrValue + 7) / 8;
+            case READ_HOLDING_REGISTERS:
+            case READ_INPUT_REGISTERS:
+                return byteCount == quantityOrValue * 2;
+            case WRITE_SINGLE_COIL:
+            case WRITE_SINGLE_REGISTER:
+                // 写单个的正常响应是请求的原样回显
+                return length == frame.length && resp[2] == frame[2] && resp[3] == frame[3]
+                        && resp[4] == frame[4] && resp[5] == frame[5];
+            case WRITE_MULTIPLE_COILS:
+            case WRITE_MULTIPLE_REGISTERS:
+                return length == 8 && resp[2] == frame[2] && resp[3] == frame[3]
+                        && resp[4] == frame[4] && resp[5] == frame[5];
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 以 "01 03 00 00 00 02 C4 0B" 的形式输出指令帧，用于日志
+     */
+    @Override
+    public String toString() {
+        return HexCodec.encode(frame);
+    }
+}
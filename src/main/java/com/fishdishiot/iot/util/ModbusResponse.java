@@ -0,0 +1,118 @@
+package com.fishdishiot.iot.util;
+
+import lombok.Getter;
+
+/**
+ * Modbus RTU 响应帧
+ * 只有CRC校验通过的完整帧才能构造出响应对象，解析方法可以放心按偏移读取数据。
+ */
+@Getter
+public class ModbusResponse {
+
+    /** 含CRC的完整帧 */
+    private final byte[] frame;
+
+    private final int slaveAddress;
+
+    private final int functionCode;
+
+    private ModbusResponse(byte[] frame) {
+        this.frame = frame;
+        this.slaveAddress = frame[0] & 0xFF;
+        this.functionCode = frame[1] & 0xFF;
+    }
+
+    /**
+     * 解析串口读到的数据
+     * @param data 串口数据
+     * @return 响应对象；长度不符或CRC错误时返回 null
+     */
+    public static ModbusResponse parse(byte[] data) {
+        if (data == null || !isValidFrame(data, data.length)) {
+            return null;
+        }
+        return new ModbusResponse(data);
+    }
+
+    /**
+     * 在接收缓冲区上原地检查前 length 个字节是否为一帧完整且CRC正确的响应
+     * @param buf 接收缓冲区
+     * @param length 帧长度
+     * @return 是否有效
+     */
+    public static boolean isValidFrame(byte[] buf, int length) {
+        if (length < 5) {
+            return false;
+        }
+        int expected = ModbusFrameUtils.expectedResponseLength(buf, length);
+        if (expected != ModbusFrameUtils.UNKNOWN_LENGTH && expected != length) {
+            return false;
+        }
+        return ModbusFrameUtils.hasValidCrc(buf, length);
+    }
+
+    /**
+     * 从已通过 {@link #isValidFrame(byte[], int)} 校验的接收缓冲区复制出一帧响应
+     * @param buf 接收缓冲区
+     * @param length 帧长度
+     */
+    public static ModbusResponse copyOf(byte[] buf, int length) {
+        byte[] frame = new byte[length];
+        System.arraycopy(buf, 0, frame, 0, length);
+        return new ModbusResponse(frame);
+    }
+
+    /** 是否为异常响应 */
+    public boolean isException() {
+        return (functionCode & 0x80) != 0;
+    }
+
+    /** 异常码，非异常响应返回 0 */
+    public int getExceptionCode() {
+        return isException() ? frame[2] & 0xFF : 0;
+    }
+
+    /** 读响应的数据字节数 */
+    public int getByteCount() {
+        return frame[2] & 0xFF;
+    }
+
+    /** 读响应中寄存器的个数 */
+    public int getRegisterCount() {
+        return getByteCount() / 2;
+    }
+
+    /**
+     * 读取第 index 个寄存器的无符号值（读寄存器响应）
+     * @param index 寄存器序号，从0开始
+     */
+    public int getRegister(int index) {
+        if (index < 0 || index >= getRegisterCount()) {
+            throw new IndexOutOfBoundsException("寄存器序号越界: " + index);
+        }
+        int offset = 3 + index * 2;
+        return ((frame[offset] & 0xFF) << 8) | (frame[offset + 1] & 0xFF);
+    }
+
+    /**
+     * 从读寄存器响应中截取一段寄存器，生成一帧独立的响应（重新计算CRC），
+     * 用于把合并读取的结果拆回各个设备，帧格式与设备单独读取时完全一致。
+     * @param registerOffset 起始寄存器序号
+     * @param quantity 寄存器数量
+     */
+    public ModbusResponse slice(int registerOffset, int quantity) {
+        if (registerOffset < 0 || quantity < 1 || registerOffset + quantity > getRegisterCount()) {
+            throw new IndexOutOfBoundsException("寄存器范围越界: " + registerOffset + "+" + quantity);
+        }
+        int byteCount = quantity * 2;
+        byte[] sliced = new byte[3 + byteCount + 2];
+        sliced[0] = frame[0];
+        sliced[1] = frame[1];
+        sliced[2] = (byte) byteCount;
+        System.arraycopy(frame, 3 + registerOffset * 2, sliced, 3, byteCount);
+        int crc = ModbusFrameUtils.crc16(sliced, 0, 3 + byteCount);
+        sliced[3 + byteCount] = (byte) crc;
+        sliced[4 + byteCount] = (byte) (crc >> 8);
+        return new ModbusResponse(sliced);
+    }
+}
@@ -0,0 +1,61 @@
+package com.fishdishiot.iot.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 参数名驻留表
+ * 每个参数名（如 temperature、ph_value）在进程内分配一个固定的下标，读数按下标存放在数组中，
+ * 解析和后续处理都按下标访问，不再按字符串查找。下标只增不减。
+ */
+public final class ParamIndex {
+
+    private static final Map<String, Integer> INDEX = new ConcurrentHashMap<>();
+
+    private static volatile String[] names = new String[0];
+
+    private ParamIndex() {
+    }
+
+    /**
+     * 获取参数名的下标，不存在时分配一个新下标
+     */
+    public static int of(String name) {
+        Integer index = INDEX.get(name);
+        if (index != null) {
+            return index;
+        }
+        synchronized (ParamIndex.class) {
+            index = INDEX.get(name);
+            if (index != null) {
+                return index;
+            }
+            String[] grown = Arrays.copyOf(names, names.length + 1);
+            grown[names.length] = name;
+            names = grown;
+            INDEX.put(name, names.length - 1);
+            return names.length - 1;
+        }
+    }
+
+    /**
+     * 查找参数名的下标，不分配
+     * @return 下标，未登记时返回 -1
+     */
+    public static int find(String name) {
+        Integer index = INDEX.get(name);
+        return index != null ? index : -1;
+    }
+
+    public static String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * 已登记的参数个数
+     */
+    public static int size() {
+        return names.length;
+    }
+}
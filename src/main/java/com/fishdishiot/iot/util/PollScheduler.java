@@ -0,0 +1,247 @@
+package com.fishdishiot.iot.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轮询调度器
+ * 所有设备的轮询计划放在同一个延迟队列中，由一个调度线程按下次到期时间依次取出，
+ * 把到期的轮询交给设备所在总线的执行器（只负责投递，不在调度线程中做串口通信）。
+ * 无论设备数量多少，调度只占用一个线程；每个计划有自己的轮询间隔。
+ * 计划可以按 {@link #phaseDelayMs} 错开相位，并在每轮加上随机抖动（不累积到后续周期）。
+ */
+public class PollScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(PollScheduler.class);
+
+    public static final String THREAD_NAME = "Sensor-Poll-Scheduler";
+
+    /** 黄金分割比例的小数部分，连续的计划标识按它取相位时在周期内分布最均匀 */
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    private final DelayQueue<ScheduledPoll> queue = new DelayQueue<>();
+
+    /** 计划标识（通常为设备ID） -> 计划 */
+    private final Map<Long, ScheduledPoll> polls = new ConcurrentHashMap<>();
+
+    private final Thread schedulerThread;
+
+    public PollScheduler() {
+        schedulerThread = new Thread(this::runLoop, THREAD_NAME);
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+    }
+
+    private void runLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ScheduledPoll poll = queue.take();
+                if (poll.cancelled) {
+                    continue;
+                }
+                try {
+                    poll.task.run();
+                } catch (Throwable t) {
+                    log.error("[PollScheduler] 投递轮询 {} 失败: {}", poll.key, t.getMessage(), t);
+                }
+                poll.dispatched++;
+                // 固定频率：下次到期时间按计划时间累加，调度落后超过一个周期时从当前时间重新起算
+                long now = System.nanoTime();
+                long next = poll.dueNanos + poll.intervalNanos;
+                if (next <= now) {
+                    next = now + poll.intervalNanos;
+                }
+                poll.dueNanos = next;
+                poll.nextJitter();
+                if (!poll.cancelled) {
+                    queue.offer(poll);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 添加（或替换）一个周期轮询计划
+     * @param key 计划标识，通常为设备ID
+     * @param intervalMs 轮询间隔
+     * @param initialDelayMs 首次执行前的延迟
+     * @param task 到期时执行的投递动作，应当快速返回
+     */
+    public void schedule(Long key, long intervalMs, long initialDelayMs, Runnable task) {
+        schedule(key, intervalMs, initialDelayMs, 0, task);
+    }
+
+    /**
+     * 添加（或替换）一个周期轮询计划
+     * @param key 计划标识，通常为设备ID
+     * @param intervalMs 轮询间隔
+     * @param initialDelayMs 首次执行前的延迟
+     * @param jitterMs 每轮在计划时间之后随机推迟 [0, jitterMs) 毫秒，0 表示不抖动
+     * @param task 到期时执行的投递动作，应当快速返回
+     */
+    public void schedule(Long key, long intervalMs, long initialDelayMs, long jitterMs, Runnable task) {
+        ScheduledPoll poll = new ScheduledPoll(key, intervalMs, System.nanoTime() + initialDelayMs * 1_000_000L, jitterMs, task);
+        ScheduledPoll previous = polls.put(key, poll);
+        if (previous != null) {
+            cancel(previous);
+        }
+        queue.offer(poll);
+    }
+
+    /**
+     * 取消一个计划
+     * @return 计划是否存在
+     */
+    public boolean cancel(Long key) {
+        ScheduledPoll poll = polls.remove(key);
+        if (poll == null) {
+            return false;
+        }
+        cancel(poll);
+        return true;
+    }
+
+    private void cancel(ScheduledPoll poll) {
+        poll.cancelled = true;
+        queue.remove(poll);
+    }
+
+    /**
+     * 取消所有计划
+     */
+    public void cancelAll() {
+        for (Long key : polls.keySet()) {
+            cancel(key);
+        }
+    }
+
+    /**
+     * 调整计划的轮询间隔。
+     * 间隔变长时从下一次到期后生效；间隔变短且下次到期时间比新间隔更远时，下次到期时间提前到
+     * 上次投递后一个新间隔（不早于现在），避免在旧的长间隔上等待。
+     * @return 计划是否存在
+     */
+    public boolean setInterval(Long key, long intervalMs) {
+        ScheduledPoll poll = polls.get(key);
+        if (poll == null) {
+            return false;
+        }
+        long intervalNanos = intervalMs * 1_000_000L;
+        long previousInterval = poll.intervalNanos;
+        poll.intervalNanos = intervalNanos;
+        // 只有仍在队列中的计划才能调整到期时间；正在投递的计划会按新间隔计算下次到期
+        if (intervalNanos < previousInterval && queue.remove(poll)) {
+            long now = System.nanoTime();
+            long earlier = Math.max(now, poll.dueNanos - previousInterval + intervalNanos);
+            poll.dueNanos = Math.min(poll.dueNanos, earlier);
+            if (!poll.cancelled) {
+                queue.offer(poll);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计划的相位延迟：把计划标识按黄金分割序列映射到周期内的固定相位，返回从现在到下一个相位点的毫秒数。
+     * 相位只取决于计划标识和间隔，以墙上时钟为基准，重载、新增设备或重启后各计划的相对位置不变；
+     * 连续的设备ID会均匀地分布在整个周期内，不会在周期开始时集中到达。
+     * @param key 计划标识
+     * @param intervalMs 轮询间隔
+     */
+    public static long phaseDelayMs(long key, long intervalMs) {
+        if (intervalMs <= 0) {
+            return 0;
+        }
+        double fraction = (key * GOLDEN_RATIO_FRACTION) % 1.0;
+        if (fraction < 0) {
+            fraction += 1.0;
+        }
+        long phaseMs = (long) (fraction * intervalMs);
+        return Math.floorMod(phaseMs - System.currentTimeMillis(), intervalMs);
+    }
+
+    public boolean contains(Long key) {
+        return polls.containsKey(key);
+    }
+
+    public int size() {
+        return polls.size();
+    }
+
+    /**
+     * 停止调度线程
+     */
+    public void shutdown() {
+        cancelAll();
+        schedulerThread.interrupt();
+    }
+
+    /**
+     * 各计划的间隔、距下次到期的时间和已投递次数
+     */
+    public Map<Long, Map<String, Object>> getStats() {
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (ScheduledPoll poll : polls.values()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("intervalMs", poll.intervalNanos / 1_000_000);
+            stats.put("nextDueInMs", Math.max(0, (poll.dueNanos + poll.jitterOffsetNanos - now) / 1_000_000));
+            if (poll.jitterNanos > 0) {
+                stats.put("jitterMs", poll.jitterNanos / 1_000_000);
+            }
+            stats.put("dispatched", poll.dispatched);
+            result.put(poll.key, stats);
+        }
+        return result;
+    }
+
+    /**
+     * 延迟队列中的一个周期计划
+     */
+    private static class ScheduledPoll implements Delayed {
+        final Long key;
+        final Runnable task;
+        final long jitterNanos;
+        volatile long intervalNanos;
+        /** 本轮的计划时间，按间隔累加，不含抖动 */
+        volatile long dueNanos;
+        /** 本轮的随机推迟，只在计划不在队列中时修改 */
+        volatile long jitterOffsetNanos;
+        volatile boolean cancelled;
+        volatile long dispatched;
+
+        ScheduledPoll(Long key, long intervalMs, long dueNanos, long jitterMs, Runnable task) {
+            this.key = key;
+            this.intervalNanos = intervalMs * 1_000_000L;
+            this.dueNanos = dueNanos;
+            this.jitterNanos = Math.max(0, jitterMs) * 1_000_000L;
+            this.task = task;
+            nextJitter();
+        }
+
+        void nextJitter() {
+            jitterOffsetNanos = jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos + jitterOffsetNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            ScheduledPoll that = (ScheduledPoll) other;
+            return Long.compare(dueNanos + jitterOffsetNanos, that.dueNanos + that.jitterOffsetNanos);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.fishdishiot.iot.util;
+
+import com.fishdishiot.iot.domain.AgricultureDevice;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一次传感器读数
+ * 按 {@link ParamIndex} 的参数下标把数值存放在 double 数组中，用位图标记哪些参数本次有值，
+ * 另一个位图标记其中哪些是补充的模拟值（不是传感器测得的）。
+ * 读数从解析一直传到入库、推送、预警和自动调节，各环节按参数下标取值，不再按参数名查找、装箱或解析文本。
+ * 需要 Map 的地方（即时读取的结果、未知类型数据的推送）用 {@link #toMap} 转换。
+ */
+public class SensorReading {
+
+    private long deviceId;
+    private long timestamp;
+    private double[] values = new double[Math.max(16, ParamIndex.size())];
+    private long[] valid = new long[Math.max(1, (ParamIndex.size() + 63) >>> 6)];
+    private long[] filled = new long[valid.length];
+
+    /** 产生读数的设备，提供名称、大棚和分区 */
+    private AgricultureDevice device;
+
+    /** 数据分类：weather / water / other / unknown，决定存储到哪张表 */
+    private String type;
+
+    /** 产生本读数的解码器，用于输出标签和原始数据 */
+    private FrameDecoder decoder;
+
+    /** 原始响应帧，只在输出原始数据时使用 */
+    private byte[] frame;
+
+    /** 是否为抓包回放产生的读数 */
+    private boolean replayed;
+
+    /**
+     * 清空读数，准备写入新的一帧
+     */
+    public void reset(AgricultureDevice device, long timestamp, FrameDecoder decoder, byte[] frame) {
+        this.device = device;
+        this.deviceId = device.getId();
+        this.timestamp = timestamp;
+        this.decoder = decoder;
+        this.frame = frame;
+        this.replayed = false;
+        Arrays.fill(valid, 0L);
+        Arrays.fill(filled, 0L);
+    }
+
+    public void set(int param, double value) {
+        put(param, value);
+        filled[param >>> 6] &= ~(1L << param);
+    }
+
+    /**
+     * 补充传感器没有的指标（模拟值），照常入库和推送，但不算测量值，见 {@link #isMeasured}
+     */
+    public void fill(int param, double value) {
+        put(param, value);
+        filled[param >>> 6] |= 1L << param;
+    }
+
+    private void put(int param, double value) {
+        if (param >= values.length) {
+            values = Arrays.copyOf(values, Math.max(param + 1, values.length * 2));
+        }
+        int word = param >>> 6;
+        if (word >= valid.length) {
+            valid = Arrays.copyOf(valid, word + 1);
+            filled = Arrays.copyOf(filled, word + 1);
+        }
+        values[param] = value;
+        valid[word] |= 1L << param;
+    }
+
+    public boolean isValid(int param) {
+        int word = param >>> 6;
+        return param >= 0 && word < valid.length && (valid[word] & (1L << param)) != 0;
+    }
+
+    /**
+     * 参数本次有值且是测量值（不是风向这类枚举字段）
+     */
+    public boolean isNumeric(int param) {
+        return isValid(param) && (decoder == null || !decoder.isLabel(param));
+    }
+
+    /**
+     * 参数本次是解码器从响应帧中解析出的数值（不是补充的模拟值，也不是枚举字段）
+     */
+    public boolean isMeasured(int param) {
+        return isNumeric(param) && (filled[param >>> 6] & (1L << param)) == 0;
+    }
+
+    /**
+     * 参数值，调用前先用 {@link #isValid} 判断
+     */
+    public double get(int param) {
+        return values[param];
+    }
+
+    /**
+     * 参数值
+     * @return 参数本次没有值时返回 defaultValue
+     */
+    public Double get(int param, Double defaultValue) {
+        // 不能写成条件表达式：double 与 Double 混用时 defaultValue 会被拆箱，为 null 时抛出空指针
+        if (isValid(param)) {
+            return values[param];
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 枚举字段的标签
+     * @return 标签，参数没有值或不是枚举字段时返回 null
+     */
+    public String getLabel(int param) {
+        return isValid(param) && decoder != null ? decoder.label(param, values[param]) : null;
+    }
+
+    /**
+     * 从 from（含）开始的下一个有值的参数下标
+     * @return 下标，没有时返回 -1
+     */
+    public int nextValid(int from) {
+        int word = from >>> 6;
+        if (word >= valid.length) {
+            return -1;
+        }
+        long bits = valid[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word >= valid.length) {
+                return -1;
+            }
+            bits = valid[word];
+        }
+    }
+
+    public boolean isEmpty() {
+        for (long bits : valid) {
+            if (bits != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getDeviceId() {
+        return deviceId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public AgricultureDevice getDevice() {
+        return device;
+    }
+
+    public String getDeviceName() {
+        return device != null ? device.getDeviceName() : null;
+    }
+
+    public String getPastureId() {
+        return device != null ? device.getPastureId() : null;
+    }
+
+    public String getBatchId() {
+        return device != null ? device.getBatchId() : null;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public boolean isReplayed() {
+        return replayed;
+    }
+
+    public void setReplayed(boolean replayed) {
+        this.replayed = replayed;
+    }
+
+    public FrameDecoder getDecoder() {
+        return decoder;
+    }
+
+    public byte[] getFrame() {
+        return frame;
+    }
+
+    /**
+     * 转换为参数名 -> 值的 Map：设备信息在前，整数字段输出 Integer，枚举字段输出标签，原始数据型号输出十六进制帧
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("deviceId", deviceId);
+        result.put("deviceName", getDeviceName());
+        result.put("type", type);
+        result.put("pastureId", getPastureId());
+        result.put("batchId", getBatchId());
+        for (int param = nextValid(0); param >= 0; param = nextValid(param + 1)) {
+            result.put(ParamIndex.name(param), decoder != null ? decoder.format(param, values[param]) : values[param]);
+        }
+        if (decoder != null && decoder.isRaw() && frame != null) {
+            result.put("raw_data", HexCodec.encode(frame));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
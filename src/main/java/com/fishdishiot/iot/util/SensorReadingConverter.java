@@ -0,0 +1,76 @@
+package com.fishdishiot.iot.util;
+
+import com.fishdishiot.iot.domain.AgricultureWaterQualityData;
+import com.fishdishiot.iot.domain.AgricultureWeatherData;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 传感器读数与数据表实体之间的转换
+ * 参数下标在类加载时登记一次，转换时按下标直接取值。
+ */
+public final class SensorReadingConverter {
+
+    public static final int PH_VALUE = ParamIndex.of("ph_value");
+    public static final int WATER_TEMPERATURE = ParamIndex.of("water_temperature");
+    public static final int DISSOLVED_OXYGEN = ParamIndex.of("dissolved_oxygen");
+    public static final int AMMONIA_NITROGEN = ParamIndex.of("ammonia_nitrogen");
+    public static final int CONDUCTIVITY = ParamIndex.of("conductivity");
+
+    public static final int TEMPERATURE = ParamIndex.of("temperature");
+    public static final int HUMIDITY = ParamIndex.of("humidity");
+    public static final int WIND_SPEED = ParamIndex.of("wind_speed");
+    public static final int WIND_DIRECTION = ParamIndex.of("wind_direction");
+    public static final int LIGHT_INTENSITY = ParamIndex.of("light_intensity");
+    public static final int RAINFALL = ParamIndex.of("rainfall");
+    public static final int AIR_PRESSURE = ParamIndex.of("air_pressure");
+
+    private SensorReadingConverter() {
+    }
+
+    /**
+     * 转换为水质数据，读数中没有的指标为 null
+     */
+    public static AgricultureWaterQualityData toWaterQualityData(SensorReading reading) {
+        AgricultureWaterQualityData waterData = new AgricultureWaterQualityData();
+        waterData.setDeviceId(reading.getDeviceId());
+        waterData.setPastureId(reading.getPastureId());
+        waterData.setBatchId(reading.getBatchId());
+        waterData.setPhValue(reading.get(PH_VALUE, null));
+        waterData.setWaterTemperature(reading.get(WATER_TEMPERATURE, null));
+        waterData.setDissolvedOxygen(reading.get(DISSOLVED_OXYGEN, null));
+        waterData.setAmmoniaNitrogen(reading.get(AMMONIA_NITROGEN, null));
+        waterData.setConductivity(reading.get(CONDUCTIVITY, null));
+        waterData.setCollectTime(collectTime(reading));
+        return waterData;
+    }
+
+    /**
+     * 转换为气象数据，读数中没有的指标记为 0，没有风向时记为空字符串
+     */
+    public static AgricultureWeatherData toWeatherData(SensorReading reading) {
+        AgricultureWeatherData weatherData = new AgricultureWeatherData();
+        weatherData.setDeviceId(reading.getDeviceId());
+        weatherData.setPastureId(reading.getPastureId());
+        weatherData.setBatchId(reading.getBatchId());
+        weatherData.setTemperature(reading.get(TEMPERATURE, 0.0));
+        weatherData.setHumidity(reading.get(HUMIDITY, 0.0));
+        weatherData.setWindSpeed(reading.get(WIND_SPEED, 0.0));
+        weatherData.setLightIntensity(reading.get(LIGHT_INTENSITY, 0.0));
+        weatherData.setRainfall(reading.get(RAINFALL, 0.0));
+        weatherData.setAirPressure(reading.get(AIR_PRESSURE, 0.0));
+        String windDirection = reading.getLabel(WIND_DIRECTION);
+        weatherData.setWindDirection(windDirection != null ? windDirection : "");
+        weatherData.setCollectTime(collectTime(reading));
+        return weatherData;
+    }
+
+    /**
+     * 采集时间取读数的接收时间
+     */
+    private static LocalDateTime collectTime(SensorReading reading) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(reading.getTimestamp()), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,223 @@
+package com.fishdishiot.iot.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 传感器采集任务注册表
+ * 记录每个传感器采集任务的当前状态、所在总线和读取计划、轮询间隔，以及最近一次轮询时间和成功/失败计数，
+ * 供配置重载时比对差异和状态接口查询。计数在总线工作线程中更新，查询时读取快照。
+ */
+public class SensorTaskRegistry {
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        /** 已加入轮询调度 */
+        RUNNING,
+        /** 没有配置采集指令，未调度 */
+        STOPPED,
+        /** 采集指令无效（格式或CRC错误），未调度 */
+        INVALID,
+        /** 所在总线预计利用率超过上限，拒绝调度 */
+        REJECTED
+    }
+
+    private final Map<Long, SensorTask> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * 获取（不存在时创建）设备的任务记录
+     */
+    public SensorTask register(Long deviceId) {
+        return tasks.computeIfAbsent(deviceId, SensorTask::new);
+    }
+
+    public SensorTask get(Long deviceId) {
+        return tasks.get(deviceId);
+    }
+
+    public SensorTask remove(Long deviceId) {
+        return tasks.remove(deviceId);
+    }
+
+    /**
+     * 当前登记的所有设备ID
+     */
+    public List<Long> getDeviceIds() {
+        return new ArrayList<>(tasks.keySet());
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * 记录一次轮询开始
+     */
+    public void recordPoll(Long deviceId) {
+        SensorTask task = tasks.get(deviceId);
+        if (task != null) {
+            task.lastPollTime = System.currentTimeMillis();
+            task.pollCount++;
+        }
+    }
+
+    /**
+     * 记录一次成功的读取
+     */
+    public void recordSuccess(Long deviceId) {
+        SensorTask task = tasks.get(deviceId);
+        if (task != null) {
+            task.lastSuccessTime = System.currentTimeMillis();
+            task.successCount++;
+            task.consecutiveErrors = 0;
+        }
+    }
+
+    /**
+     * 记录一次失败的读取（无响应、异常响应或采集异常）
+     * @param reason 失败原因
+     */
+    public void recordFailure(Long deviceId, String reason) {
+        SensorTask task = tasks.get(deviceId);
+        if (task != null) {
+            task.errorCount++;
+            task.consecutiveErrors++;
+            task.lastError = reason;
+            task.lastErrorTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 所有任务的状态快照，按设备ID排序
+     */
+    public Map<Long, Map<String, Object>> snapshot() {
+        Map<Long, Map<String, Object>> result = new TreeMap<>();
+        for (SensorTask task : tasks.values()) {
+            result.put(task.deviceId, task.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 单个传感器的采集任务
+     * 配置字段只在重载时（持有服务的重载锁）修改，计数字段只在设备所在总线的工作线程中修改。
+     */
+    public static class SensorTask {
+        private final Long deviceId;
+        private volatile String deviceName;
+        private volatile State state = State.STOPPED;
+        private volatile String reason;
+        private volatile String busName;
+        /** 所在读取计划的标识（计划中第一个设备的ID） */
+        private volatile Long planKey;
+        private volatile String command;
+        private volatile long intervalMs;
+        private volatile long startedTime;
+
+        private volatile long lastPollTime;
+        private volatile long lastSuccessTime;
+        private volatile long lastErrorTime;
+        private volatile String lastError;
+        private volatile long pollCount;
+        private volatile long successCount;
+        private volatile long errorCount;
+        private volatile int consecutiveErrors;
+
+        SensorTask(Long deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        /**
+         * 标记为运行中
+         * @param command 采集指令（十六进制），用于下次重载时判断指令是否变化
+         */
+        public void running(String deviceName, String busName, Long planKey, String command, long intervalMs) {
+            if (state != State.RUNNING) {
+                startedTime = System.currentTimeMillis();
+            }
+            this.deviceName = deviceName;
+            this.busName = busName;
+            this.planKey = planKey;
+            this.command = command;
+            this.intervalMs = intervalMs;
+            this.state = State.RUNNING;
+            this.reason = null;
+        }
+
+        /**
+         * 标记为未调度
+         * @param state STOPPED、INVALID 或 REJECTED
+         * @param reason 原因
+         */
+        public void stopped(String deviceName, State state, String reason) {
+            this.deviceName = deviceName;
+            this.state = state;
+            this.reason = reason;
+            this.planKey = null;
+            this.command = null;
+        }
+
+        /**
+         * 更新轮询间隔（自适应轮询调整计划间隔时）
+         */
+        public void updateInterval(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        public Long getDeviceId() {
+            return deviceId;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public Long getPlanKey() {
+            return planKey;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public int getConsecutiveErrors() {
+            return consecutiveErrors;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("deviceName", deviceName);
+            result.put("state", state.name());
+            if (reason != null) {
+                result.put("reason", reason);
+            }
+            if (state == State.RUNNING) {
+                result.put("bus", busName);
+                result.put("planKey", planKey);
+                result.put("intervalMs", intervalMs);
+                result.put("startedTime", startedTime);
+            }
+            result.put("lastPollTime", lastPollTime > 0 ? lastPollTime : null);
+            result.put("lastSuccessTime", lastSuccessTime > 0 ? lastSuccessTime : null);
+            result.put("pollCount", pollCount);
+            result.put("successCount", successCount);
+            result.put("errorCount", errorCount);
+            result.put("consecutiveErrors", consecutiveErrors);
+            if (lastError != null) {
+                result.put("lastError", lastError);
+                result.put("lastErrorTime", lastErrorTime);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.fishdishiot.iot.util;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 串口总线运行指标
+ * 每条总线一个实例，由 ModbusRtuClient 记录事务结果和收发字节，由 SerialCommandExecutor 记录排队等待和队列深度。
+ * 用于判断采集变慢是卡在总线（利用率高、排队久）、设备（周转慢、超时多）还是后续处理上。
+ */
+public class SerialBusMetrics {
+
+    /** 速率和利用率的统计窗口（秒） */
+    private static final int WINDOW_SECONDS = 60;
+
+    private final long startNanos = System.nanoTime();
+
+    private final Counters total = new Counters();
+    private final Map<Long, Counters> devices = new ConcurrentHashMap<>();
+
+    private final RateWindow bytesOutWindow = new RateWindow();
+    private final RateWindow bytesInWindow = new RateWindow();
+    private final RateWindow busyWindow = new RateWindow();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    private final Map<SerialTaskPriority, LatencyHistogram> queueWait = new EnumMap<>(SerialTaskPriority.class);
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    /** 工作线程执行任务期间分配的内存，-1 表示 JVM 不支持按线程统计 */
+    private final AtomicLong measuredTasks = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    public SerialBusMetrics() {
+        for (SerialTaskPriority priority : SerialTaskPriority.values()) {
+            queueWait.put(priority, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * 记录一次请求发送
+     */
+    public void recordWrite(Long deviceId, int bytes) {
+        long now = System.nanoTime();
+        bytesOutWindow.add(now, bytes);
+        total.bytesOut.addAndGet(bytes);
+        device(deviceId).bytesOut.addAndGet(bytes);
+    }
+
+    /**
+     * 记录一次读取：bytes 为 0 表示空读（首字节超时）
+     */
+    public void recordRead(Long deviceId, int bytes) {
+        if (bytes <= 0) {
+            total.emptyReads.incrementAndGet();
+            device(deviceId).emptyReads.incrementAndGet();
+            return;
+        }
+        bytesInWindow.add(System.nanoTime(), bytes);
+        total.bytesIn.addAndGet(bytes);
+        device(deviceId).bytesIn.addAndGet(bytes);
+    }
+
+    /** 记录一次CRC错误或不完整的响应 */
+    public void recordCrcFailure(Long deviceId) {
+        total.crcFailures.incrementAndGet();
+        device(deviceId).crcFailures.incrementAndGet();
+    }
+
+    /** 记录一次与请求不匹配的响应 */
+    public void recordMismatch(Long deviceId) {
+        total.mismatches.incrementAndGet();
+        device(deviceId).mismatches.incrementAndGet();
+    }
+
+    /**
+     * 记录一次事务结束
+     * @param deviceId 设备ID
+     * @param latencyNanos 成功时为最后一次请求发出到收到完整响应的耗时
+     * @param busyNanos 整个事务（含重试）占用总线的时间
+     * @param success 是否得到有效响应
+     * @param exception 是否为 Modbus 异常响应
+     */
+    public void recordTransaction(Long deviceId, long latencyNanos, long busyNanos, boolean success, boolean exception) {
+        Counters d = device(deviceId);
+        total.transactions.incrementAndGet();
+        d.transactions.incrementAndGet();
+        if (success) {
+            total.latency.record(latencyNanos);
+            d.latency.record(latencyNanos);
+            if (exception) {
+                total.exceptions.incrementAndGet();
+                d.exceptions.incrementAndGet();
+            }
+        } else {
+            total.timeouts.incrementAndGet();
+            d.timeouts.incrementAndGet();
+        }
+        this.busyNanos.addAndGet(busyNanos);
+        d.busyNanos.addAndGet(busyNanos);
+        busyWindow.add(System.nanoTime(), busyNanos);
+    }
+
+    /**
+     * 记录任务从入队到开始执行的等待时间
+     */
+    public void recordQueueWait(SerialTaskPriority priority, long waitNanos) {
+        queueWait.get(priority).record(waitNanos);
+    }
+
+    /**
+     * 记录入队后的队列深度
+     */
+    public void recordQueueDepth(int depth) {
+        long max = maxQueueDepth.get();
+        while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+            max = maxQueueDepth.get();
+        }
+    }
+
+    /**
+     * 记录工作线程执行一个任务期间分配的字节数
+     */
+    public void recordTaskAllocation(long bytes) {
+        measuredTasks.incrementAndGet();
+        allocatedBytes.addAndGet(bytes);
+    }
+
+    private Counters device(Long deviceId) {
+        return devices.computeIfAbsent(deviceId != null ? deviceId : 0L, k -> new Counters());
+    }
+
+    /**
+     * 总线指标快照
+     * @param includeDevices 是否包含每个设备的明细
+     */
+    public Map<String, Object> snapshot(boolean includeDevices) {
+        long now = System.nanoTime();
+        double windowSeconds = Math.min(WINDOW_SECONDS, Math.max(1.0, (now - startNanos) / 1e9));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("uptimeSeconds", (now - startNanos) / 1_000_000_000L);
+        result.put("bytesOutPerSecond", round(bytesOutWindow.sum(now) / windowSeconds));
+        result.put("bytesInPerSecond", round(bytesInWindow.sum(now) / windowSeconds));
+        // 利用率：最近窗口内总线被事务占用的时间比例
+        result.put("utilization", round(Math.min(1.0, busyWindow.sum(now) / (windowSeconds * 1e9))));
+        result.put("utilizationSinceStart", round(Math.min(1.0, busyNanos.get() / (double) Math.max(1, now - startNanos))));
+        result.putAll(total.snapshot());
+        Map<String, Object> waits = new LinkedHashMap<>();
+        for (Map.Entry<SerialTaskPriority, LatencyHistogram> entry : queueWait.entrySet()) {
+            waits.put(entry.getKey().name(), entry.getValue().snapshot());
+        }
+        result.put("queueWait", waits);
+        result.put("maxQueueDepth", maxQueueDepth.get());
+        long measured = measuredTasks.get();
+        result.put("allocatedBytesPerTask", measured > 0 ? allocatedBytes.get() / measured : -1);
+        if (includeDevices) {
+            Map<Long, Object> perDevice = new TreeMap<>();
+            for (Map.Entry<Long, Counters> entry : devices.entrySet()) {
+                perDevice.put(entry.getKey(), entry.getValue().snapshot());
+            }
+            result.put("devices", perDevice);
+        }
+        return result;
+    }
+
+    /**
+     * 单个设备的指标快照，设备没有记录时返回 null
+     */
+    public Map<String, Object> deviceSnapshot(Long deviceId) {
+        Counters counters = devices.get(deviceId);
+        return counters != null ? counters.snapshot() : null;
+    }
+
+    /**
+     * 设备事务数（含超时）
+     */
+    public long deviceTransactions(Long deviceId) {
+        Counters counters = devices.get(deviceId);
+        return counters != null ? counters.transactions.get() : 0;
+    }
+
+    /**
+     * 设备平均每次事务（含重试和超时）占用总线的时间，没有记录时返回 -1
+     */
+    public double deviceMeanBusyMillis(Long deviceId) {
+        Counters counters = devices.get(deviceId);
+        long transactions = counters != null ? counters.transactions.get() : 0;
+        return transactions > 0 ? counters.busyNanos.get() / 1e6 / transactions : -1;
+    }
+
+    /**
+     * 设备成功事务的响应耗时分位数，没有记录时返回 -1
+     */
+    public double deviceLatencyMillis(Long deviceId, double quantile) {
+        Counters counters = devices.get(deviceId);
+        return counters != null && counters.latency.getCount() > 0 ? counters.latency.quantileMillis(quantile) : -1;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    /**
+     * 一组计数器（总线合计或单个设备）
+     */
+    private static class Counters {
+        final AtomicLong transactions = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong exceptions = new AtomicLong();
+        final AtomicLong emptyReads = new AtomicLong();
+        final AtomicLong crcFailures = new AtomicLong();
+        final AtomicLong mismatches = new AtomicLong();
+        final AtomicLong bytesOut = new AtomicLong();
+        final AtomicLong bytesIn = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("transactions", transactions.get());
+            result.put("timeouts", timeouts.get());
+            result.put("exceptions", exceptions.get());
+            result.put("emptyReads", emptyReads.get());
+            result.put("crcFailures", crcFailures.get());
+            result.put("mismatches", mismatches.get());
+            result.put("bytesOut", bytesOut.get());
+            result.put("bytesIn", bytesIn.get());
+            result.put("busyMs", busyNanos.get() / 1_000_000);
+            result.put("latency", latency.snapshot());
+            return result;
+        }
+    }
+
+    /**
+     * 按秒分槽的滑动窗口累加器，用于计算最近一段时间的速率
+     */
+    private static class RateWindow {
+        private final long[] seconds = new long[WINDOW_SECONDS];
+        private final long[] values = new long[WINDOW_SECONDS];
+
+        synchronized void add(long nowNanos, long amount) {
+            long second = nowNanos / 1_000_000_000L;
+            int slot = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+            if (seconds[slot] != second) {
+                seconds[slot] = second;
+                values[slot] = 0;
+            }
+            values[slot] += amount;
+        }
+
+        synchronized long sum(long nowNanos) {
+            long second = nowNanos / 1_000_000_000L;
+            long sum = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if (second - seconds[i] < WINDOW_SECONDS) {
+                    sum += values[i];
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -1,54 +1,300 @@
 // src/main/java/com/fishdishiot/iot/util/SerialCommandExecutor.java
 package com.fishdishiot.iot.util;
 
-import org.springframework.stereotype.Component;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-@Component
+/**
+ * 串口指令执行器
+ * 每条总线一个实例，所有对该总线的读写任务都在同一个工作线程中串行执行。
+ * 任务之间的间隔按 Modbus RTU 要求的帧间静默时间（3.5 个字符时间）计算，
+ * 个别需要更长恢复时间的设备可以单独配置固定间隔。
+ * 任务按优先级调度：人工控制 > 自动调节 > 后台轮询，过期的轮询直接丢弃。
+ * 各优先级队列有容量上限：控制指令在队列满时被拒绝（抛出 RejectedExecutionException），
+ * 轮询在队列满时挤掉最旧的轮询，同一设备的轮询只保留一个在排队。
+ * 串口故障恢复期间执行器被暂停，新任务直接被拒绝。
+ */
 public class SerialCommandExecutor {
-    private final BlockingQueue<Runnable> commandQueue = new LinkedBlockingQueue<>();
+    private static final Logger log = LoggerFactory.getLogger(SerialCommandExecutor.class);
+
+    public static final String THREAD_NAME_PREFIX = "Serial-Command-Executor-";
+
+    /** 每个字符的位数：1 起始位 + 8 数据位 + 校验/停止共 2 位 */
+    public static final int BITS_PER_CHAR = 11;
+
+    private final String busName;
+    private final SerialTaskQueue taskQueue;
     private final Thread workerThread;
 
-    private static final long MIN_INTERVAL_MS = 500; // 500ms安全间隔
-    private long lastTaskTime = 0;
+    /** 帧间静默时间（纳秒） */
+    private final long silenceNanos;
+
+    /** 按设备覆盖的固定间隔：设备ID -> 毫秒 */
+    private final Map<Long, Integer> deviceGapMs;
+
+    /** 上一个任务结束的时间（System.nanoTime），只在 hasRunTask 为 true 时有效 */
+    private long lastTaskEndNanos;
+
+    /** 是否已执行过任务；nanoTime 的起点任意，不能用 lastTaskEndNanos 的取值判断 */
+    private boolean hasRunTask;
+
+    /** 暂停期间（串口重连中）拒绝所有新任务 */
+    private volatile boolean paused;
+
+    // 实际插入的间隔统计
+    private final AtomicLong taskCount = new AtomicLong();
+    private final AtomicLong appliedGapCount = new AtomicLong();
+    private final AtomicLong appliedGapNanos = new AtomicLong();
+    private volatile long lastAppliedGapNanos = 0;
+
+    /** 按线程统计内存分配（HotSpot 支持），用于观察串口收发路径的分配速率 */
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = allocationMXBean();
+
+    /** 所在总线的运行指标：排队等待时间和队列深度 */
+    private final SerialBusMetrics metrics;
+
+    public SerialCommandExecutor(String busName, int baudRate, Map<Long, Integer> deviceGapMs, SerialBusMetrics metrics) {
+        this(busName, baudRate, deviceGapMs, null, metrics);
+    }
 
-    public SerialCommandExecutor() {
+    /**
+     * @param queueCapacities 各优先级的队列容量，为 null 或未配置的优先级不限容量
+     */
+    public SerialCommandExecutor(String busName, int baudRate, Map<Long, Integer> deviceGapMs,
+                                 Map<SerialTaskPriority, Integer> queueCapacities, SerialBusMetrics metrics) {
+        this.busName = busName;
+        this.taskQueue = new SerialTaskQueue(queueCapacities);
+        this.metrics = metrics;
+        this.silenceNanos = silenceNanos(baudRate);
+        this.deviceGapMs = deviceGapMs != null ? deviceGapMs : Collections.<Long, Integer>emptyMap();
         workerThread = new Thread(() -> {
-            while (true) {
+            while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    Runnable task = commandQueue.take();
-                    long now = System.currentTimeMillis();
-                    long wait = lastTaskTime + MIN_INTERVAL_MS - now;
-                    if (wait > 0) {
-                        Thread.sleep(wait);
+                    SerialTask task = taskQueue.take();
+                    if (task.isCancelled()) {
+                        log.debug("[SerialCommandExecutor] 任务 {} 已被取消，跳过", task);
+                        continue;
+                    }
+                    Long deviceId = task.getDeviceId();
+                    awaitGap(deviceId);
+                    if (task.isExpired(System.nanoTime())) {
+                        log.warn("[SerialCommandExecutor] 任务 {} 已超过截止时间，延迟 {}ms 执行", task,
+                                (System.nanoTime() - task.getDeadlineNanos()) / 1_000_000);
                     }
-                    lastTaskTime = System.currentTimeMillis();
+                    metrics.recordQueueWait(task.getPriority(), System.nanoTime() - task.getEnqueueNanos());
+                    long allocatedBefore = allocatedBytes();
                     try {
-                        System.out.println("[SerialCommandExecutor] 执行任务: " + task + ", 线程: " + Thread.currentThread().getName() + ", 时间: " + java.time.LocalDateTime.now());
+                        log.debug("[SerialCommandExecutor] 执行任务: {}, 设备: {}", task, deviceId);
                         task.run();
-                        System.out.println("[SerialCommandExecutor] 任务完成: " + task + ", 线程: " + Thread.currentThread().getName() + ", 时间: " + java.time.LocalDateTime.now());
                     } catch (Throwable t) {
-                        t.printStackTrace();
-                        System.err.println("[SerialCommandExecutor] 任务异常: " + t.getMessage());
+                        log.error("[SerialCommandExecutor] 任务异常: {}", t.getMessage(), t);
+                    } finally {
+                        lastTaskEndNanos = System.nanoTime();
+                        hasRunTask = true;
+                        taskCount.incrementAndGet();
+                        if (allocatedBefore >= 0) {
+                            metrics.recordTaskAllocation(allocatedBytes() - allocatedBefore);
+                        }
                     }
-                } catch (InterruptedException ignored) {}
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
-        }, "Serial-Command-Executor");
+        }, THREAD_NAME_PREFIX + busName);
         workerThread.setDaemon(true);
         workerThread.start();
     }
 
+    /**
+     * Modbus RTU 帧间静默时间：3.5 个字符时间；波特率高于 19200 时规范规定固定为 1.75ms。
+     * @param baudRate 波特率
+     * @return 纳秒
+     */
+    public static long silenceNanos(int baudRate) {
+        if (baudRate <= 0 || baudRate > 19200) {
+            return 1_750_000L;
+        }
+        return (long) Math.ceil(3.5 * BITS_PER_CHAR * 1_000_000_000L / baudRate);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationMXBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) bean;
+                if (mxBean.isThreadAllocatedMemorySupported() && mxBean.isThreadAllocatedMemoryEnabled()) {
+                    return mxBean;
+                }
+            }
+        } catch (Throwable t) {
+            log.debug("当前JVM不支持按线程统计内存分配: {}", t.getMessage());
+        }
+        return null;
+    }
+
+    /** 当前线程累计分配的字节数，不支持时返回 -1 */
+    private static long allocatedBytes() {
+        return THREAD_MX_BEAN != null ? THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * 执行该设备的任务前需要保持的线路空闲时间：帧间静默，设备配置了固定间隔时取两者较大值
+     */
+    public long getGapNanos(Long deviceId) {
+        Integer overrideMs = deviceId != null ? deviceGapMs.get(deviceId) : null;
+        return overrideMs != null ? Math.max(silenceNanos, overrideMs * 1_000_000L) : silenceNanos;
+    }
+
+    /**
+     * 距上一个任务结束至少保持所需的线路静默时间，设备配置了固定间隔时取两者较大值。
+     */
+    private void awaitGap(Long deviceId) throws InterruptedException {
+        if (!hasRunTask) {
+            return;
+        }
+        long wait = lastTaskEndNanos + getGapNanos(deviceId) - System.nanoTime();
+        if (wait > 0) {
+            long until = System.nanoTime() + wait;
+            long remaining = wait;
+            while (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                remaining = until - System.nanoTime();
+            }
+            appliedGapCount.incrementAndGet();
+            appliedGapNanos.addAndGet(wait);
+            lastAppliedGapNanos = wait;
+        }
+    }
+
+    /**
+     * 当前线程是否就是本执行器的工作线程（在工作线程内提交并等待任务会死锁）
+     */
+    public boolean isWorkerThread() {
+        return Thread.currentThread() == workerThread;
+    }
+
+    /**
+     * 停止工作线程，未执行的任务将被丢弃
+     */
+    public void shutdown() {
+        workerThread.interrupt();
+        taskQueue.clear();
+    }
+
+    /**
+     * 暂停接收任务并清空排队中的任务（串口故障时，排队的指令已经过时）
+     * @return 清空的任务数
+     */
+    public int pause() {
+        paused = true;
+        return taskQueue.clear();
+    }
+
+    /**
+     * 恢复接收任务
+     */
+    public void resume() {
+        paused = false;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * 提交人工操作任务
+     */
     public void submit(Runnable task) {
-        commandQueue.offer(task);
+        submit(SerialTaskPriority.INTERACTIVE, null, task);
     }
 
+    /**
+     * 提交人工操作任务
+     */
     public <T> Future<T> submit(Callable<T> task) {
+        return submit(SerialTaskPriority.INTERACTIVE, null, task);
+    }
+
+    /**
+     * 按优先级提交针对某个设备的任务，使用该优先级的默认截止时间
+     */
+    public void submit(SerialTaskPriority priority, Long deviceId, Runnable task) {
+        submit(priority, deviceId, priority.getDefaultDeadlineMs(), task);
+    }
+
+    /**
+     * 按优先级提交针对某个设备的任务
+     * @param deadlineMs 截止时间（自入队起算），轮询任务超过截止时间未执行将被丢弃
+     * @return 入队结果（合并、挤掉最旧的任务等）
+     * @throws RejectedExecutionException 该优先级的队列已满且溢出策略为拒绝，或执行器已暂停
+     */
+    public SerialTaskQueue.OfferResult submit(SerialTaskPriority priority, Long deviceId, long deadlineMs, Runnable task) {
+        return enqueue(new SerialTask(priority, deviceId, deadlineMs, task));
+    }
+
+    /**
+     * 按优先级提交针对某个设备的任务，使用该优先级的默认截止时间
+     * @throws RejectedExecutionException 该优先级的队列已满且溢出策略为拒绝
+     */
+    public <T> Future<T> submit(SerialTaskPriority priority, Long deviceId, Callable<T> task) {
         FutureTask<T> futureTask = new FutureTask<>(task);
-        commandQueue.offer(futureTask);
+        enqueue(new SerialTask(priority, deviceId, priority.getDefaultDeadlineMs(), futureTask));
         return futureTask;
     }
-}
\ No newline at end of file
+
+    private SerialTaskQueue.OfferResult enqueue(SerialTask task) {
+        if (paused) {
+            throw new RejectedExecutionException("总线 " + busName + " 串口正在重新连接");
+        }
+        SerialTaskQueue.OfferResult result = taskQueue.offer(task);
+        metrics.recordQueueDepth(taskQueue.size());
+        if (result == SerialTaskQueue.OfferResult.REJECTED) {
+            log.warn("[SerialCommandExecutor] 总线 {} 的 {} 队列已满（容量 {}），拒绝任务: {}", busName, task.getPriority(),
+                    taskQueue.getCapacity(task.getPriority()), task);
+            throw new RejectedExecutionException("总线 " + busName + " 繁忙，" + task.getPriority() + " 队列已满（容量 "
+                    + taskQueue.getCapacity(task.getPriority()) + "）");
+        }
+        if (result == SerialTaskQueue.OfferResult.ACCEPTED_DROPPED_OLDEST) {
+            log.debug("[SerialCommandExecutor] 总线 {} 的 {} 队列已满，丢弃了最旧的任务", busName, task.getPriority());
+        }
+        return result;
+    }
+
+    /**
+     * 各优先级队列长度、容量和过载丢弃统计
+     */
+    public Map<String, Object> getQueueStats() {
+        return taskQueue.getStats();
+    }
+
+    /**
+     * 实际插入的任务间隔统计
+     */
+    public Map<String, Object> getSpacingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long gaps = appliedGapCount.get();
+        long total = appliedGapNanos.get();
+        stats.put("silenceMicros", silenceNanos / 1000);
+        stats.put("tasks", taskCount.get());
+        stats.put("appliedGaps", gaps);
+        stats.put("totalAppliedGapMs", total / 1_000_000);
+        stats.put("avgAppliedGapMicros", gaps > 0 ? total / gaps / 1000 : 0);
+        stats.put("lastAppliedGapMicros", lastAppliedGapNanos / 1000);
+        stats.put("deviceGapOverridesMs", deviceGapMs);
+        return stats;
+    }
+}
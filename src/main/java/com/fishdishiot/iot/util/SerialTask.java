@@ -0,0 +1,73 @@
+package com.fishdishiot.iot.util;
+
+import lombok.Getter;
+
+import java.util.concurrent.Future;
+
+/**
+ * 串口任务：带优先级、目标设备和截止时间的可执行单元
+ */
+@Getter
+public class SerialTask implements Runnable {
+
+    private final SerialTaskPriority priority;
+
+    /** 目标设备ID，可为 null */
+    private final Long deviceId;
+
+    /** 入队时间（System.nanoTime） */
+    private final long enqueueNanos;
+
+    /** 截止时间（System.nanoTime），合并时更新为新任务的截止时间 */
+    private volatile long deadlineNanos;
+
+    private volatile Runnable delegate;
+
+    public SerialTask(SerialTaskPriority priority, Long deviceId, long deadlineMs, Runnable delegate) {
+        this.priority = priority;
+        this.deviceId = deviceId;
+        this.enqueueNanos = System.nanoTime();
+        this.deadlineNanos = enqueueNanos + deadlineMs * 1_000_000L;
+        this.delegate = delegate;
+    }
+
+    /**
+     * 合并同一设备的重复任务：保留排队位置，执行内容和截止时间换成新任务的
+     * @param newer 新提交的任务
+     */
+    void replaceWith(SerialTask newer) {
+        cancel();
+        this.delegate = newer.delegate;
+        this.deadlineNanos = newer.deadlineNanos;
+    }
+
+    /**
+     * 任务在排队期间已被提交方取消（如等待结果超时），执行时直接跳过
+     */
+    public boolean isCancelled() {
+        return delegate instanceof Future && ((Future<?>) delegate).isCancelled();
+    }
+
+    public boolean isExpired(long nowNanos) {
+        return nowNanos - deadlineNanos > 0;
+    }
+
+    /**
+     * 任务被丢弃时取消对应的 Future，避免调用方一直等待
+     */
+    public void cancel() {
+        if (delegate instanceof Future) {
+            ((Future<?>) delegate).cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        delegate.run();
+    }
+
+    @Override
+    public String toString() {
+        return priority + "(device=" + deviceId + ")";
+    }
+}
@@ -0,0 +1,64 @@
+package com.fishdishiot.iot.util;
+
+/**
+ * 串口任务优先级
+ * 按声明顺序从高到低调度；每类任务带默认截止时间，轮询任务过期后直接丢弃而不是延迟执行。
+ * 每类任务的队列有容量上限，满了之后按各自的溢出策略处理：控制指令拒绝并报错，轮询丢弃最旧的一个；
+ * 同一设备已在排队的轮询不重复入队，而是用新任务替换排队中的任务（位置不变）。
+ */
+public enum SerialTaskPriority {
+
+    /** 人工操作（接口下发的开关控制） */
+    INTERACTIVE(10_000L, false, OverflowPolicy.REJECT, false),
+
+    /** 自动调节策略触发的控制 */
+    AUTO_CONTROL(30_000L, false, OverflowPolicy.REJECT, false),
+
+    /** 后台传感器轮询 */
+    POLLING(5_000L, true, OverflowPolicy.DROP_OLDEST, true);
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum OverflowPolicy {
+        /** 拒绝新任务，提交方收到 RejectedExecutionException */
+        REJECT,
+        /** 丢弃队列中最旧的任务，接收新任务 */
+        DROP_OLDEST
+    }
+
+    /** 默认截止时间（毫秒，自入队起算） */
+    private final long defaultDeadlineMs;
+
+    /** 过期后是否丢弃 */
+    private final boolean dropWhenExpired;
+
+    /** 队列满时的处理方式 */
+    private final OverflowPolicy overflowPolicy;
+
+    /** 同一设备的任务是否合并（只保留一个在排队） */
+    private final boolean coalescePerDevice;
+
+    SerialTaskPriority(long defaultDeadlineMs, boolean dropWhenExpired, OverflowPolicy overflowPolicy, boolean coalescePerDevice) {
+        this.defaultDeadlineMs = defaultDeadlineMs;
+        this.dropWhenExpired = dropWhenExpired;
+        this.overflowPolicy = overflowPolicy;
+        this.coalescePerDevice = coalescePerDevice;
+    }
+
+    public long getDefaultDeadlineMs() {
+        return defaultDeadlineMs;
+    }
+
+    public boolean isDropWhenExpired() {
+        return dropWhenExpired;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public boolean isCoalescePerDevice() {
+        return coalescePerDevice;
+    }
+}
@@ -0,0 +1,277 @@
+package com.fishdishiot.iot.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 串口任务优先级队列
+ * 每个优先级一个有界 FIFO 队列，取任务时优先取高优先级；
+ * 低优先级队列连续被跳过 {@link #MAX_SKIPS} 次后强制取一次，防止轮询被控制指令饿死；
+ * 允许过期丢弃的任务（轮询）在出队前检查截止时间，过期直接丢弃。
+ * 入队时同一设备的重复轮询合并为一个，队列满时按优先级的溢出策略拒绝新任务或丢弃最旧的任务。
+ */
+public class SerialTaskQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(SerialTaskQueue.class);
+
+    /** 低优先级任务连续被跳过的上限 */
+    static final int MAX_SKIPS = 8;
+
+    /**
+     * 入队结果
+     */
+    public enum OfferResult {
+        /** 已入队 */
+        ACCEPTED,
+        /** 同一设备已有任务在排队，已合并到排队中的任务 */
+        COALESCED,
+        /** 队列已满，丢弃了最旧的任务后入队 */
+        ACCEPTED_DROPPED_OLDEST,
+        /** 队列已满，拒绝 */
+        REJECTED
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final SerialTaskPriority[] priorities = SerialTaskPriority.values();
+    private final ArrayDeque<SerialTask>[] queues;
+    private final int[] capacities;
+    private final int[] skips;
+
+    /** 需要按设备合并的优先级中，正在排队的任务：设备ID -> 任务 */
+    private final Map<Long, SerialTask>[] pendingByDevice;
+
+    private final AtomicLong expiredDropped = new AtomicLong();
+    private final AtomicLongArray coalesced;
+    private final AtomicLongArray droppedOldest;
+    private final AtomicLongArray rejected;
+
+    /**
+     * 不限容量的队列
+     */
+    public SerialTaskQueue() {
+        this(null);
+    }
+
+    /**
+     * @param capacities 各优先级的队列容量，未配置的优先级不限容量
+     */
+    @SuppressWarnings("unchecked")
+    public SerialTaskQueue(Map<SerialTaskPriority, Integer> capacities) {
+        queues = new ArrayDeque[priorities.length];
+        pendingByDevice = new Map[priorities.length];
+        this.capacities = new int[priorities.length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+            Integer capacity = capacities != null ? capacities.get(priorities[i]) : null;
+            this.capacities[i] = capacity != null && capacity > 0 ? capacity : Integer.MAX_VALUE;
+            if (priorities[i].isCoalescePerDevice()) {
+                pendingByDevice[i] = new HashMap<>();
+            }
+        }
+        skips = new int[priorities.length];
+        coalesced = new AtomicLongArray(priorities.length);
+        droppedOldest = new AtomicLongArray(priorities.length);
+        rejected = new AtomicLongArray(priorities.length);
+    }
+
+    /**
+     * 任务入队
+     * @return 入队结果；REJECTED 表示任务没有入队，由调用方处理
+     */
+    public OfferResult offer(SerialTask task) {
+        int i = task.getPriority().ordinal();
+        lock.lock();
+        try {
+            Map<Long, SerialTask> pending = pendingByDevice[i];
+            if (pending != null && task.getDeviceId() != null) {
+                SerialTask queued = pending.get(task.getDeviceId());
+                if (queued != null) {
+                    queued.replaceWith(task);
+                    coalesced.incrementAndGet(i);
+                    return OfferResult.COALESCED;
+                }
+            }
+            OfferResult result = OfferResult.ACCEPTED;
+            if (queues[i].size() >= capacities[i]) {
+                if (task.getPriority().getOverflowPolicy() == SerialTaskPriority.OverflowPolicy.REJECT) {
+                    rejected.incrementAndGet(i);
+                    return OfferResult.REJECTED;
+                }
+                SerialTask oldest = removed(i, queues[i].pollFirst());
+                oldest.cancel();
+                droppedOldest.incrementAndGet(i);
+                log.debug("[SerialTaskQueue] 队列已满，丢弃最旧的任务: {}", oldest);
+                result = OfferResult.ACCEPTED_DROPPED_OLDEST;
+            }
+            queues[i].addLast(task);
+            if (pending != null && task.getDeviceId() != null) {
+                pending.put(task.getDeviceId(), task);
+            }
+            notEmpty.signal();
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出下一个要执行的任务，队列为空时阻塞
+     */
+    public SerialTask take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                dropExpired(System.nanoTime());
+                SerialTask task = next();
+                if (task != null) {
+                    return task;
+                }
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SerialTask next() {
+        // 饥饿保护：被跳过次数达到上限的低优先级队列先取一次
+        for (int i = queues.length - 1; i > 0; i--) {
+            if (!queues[i].isEmpty() && skips[i] >= MAX_SKIPS) {
+                skips[i] = 0;
+                return removed(i, queues[i].pollFirst());
+            }
+        }
+        for (int i = 0; i < queues.length; i++) {
+            if (!queues[i].isEmpty()) {
+                for (int j = i + 1; j < queues.length; j++) {
+                    if (!queues[j].isEmpty()) {
+                        skips[j]++;
+                    }
+                }
+                skips[i] = 0;
+                return removed(i, queues[i].pollFirst());
+            }
+        }
+        return null;
+    }
+
+    /** 任务离开队列时同步清理按设备合并的索引 */
+    private SerialTask removed(int i, SerialTask task) {
+        if (pendingByDevice[i] != null && task != null && task.getDeviceId() != null) {
+            pendingByDevice[i].remove(task.getDeviceId(), task);
+        }
+        return task;
+    }
+
+    private void dropExpired(long nowNanos) {
+        for (int i = 0; i < queues.length; i++) {
+            if (!priorities[i].isDropWhenExpired()) {
+                continue;
+            }
+            Iterator<SerialTask> it = queues[i].iterator();
+            while (it.hasNext()) {
+                SerialTask task = it.next();
+                if (task.isExpired(nowNanos)) {
+                    it.remove();
+                    removed(i, task);
+                    task.cancel();
+                    expiredDropped.incrementAndGet();
+                    log.debug("[SerialTaskQueue] 任务已过期丢弃: {}", task);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            int size = 0;
+            for (ArrayDeque<SerialTask> queue : queues) {
+                size += queue.size();
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity(SerialTaskPriority priority) {
+        return capacities[priority.ordinal()];
+    }
+
+    /**
+     * 取消并清空所有排队的任务
+     * @return 清空的任务数
+     */
+    public int clear() {
+        lock.lock();
+        try {
+            int cleared = 0;
+            for (int i = 0; i < queues.length; i++) {
+                for (SerialTask task : queues[i]) {
+                    task.cancel();
+                }
+                cleared += queues[i].size();
+                queues[i].clear();
+                if (pendingByDevice[i] != null) {
+                    pendingByDevice[i].clear();
+                }
+            }
+            return cleared;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 各优先级队列长度、容量，以及合并、丢弃最旧、拒绝和过期丢弃的次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Object> capacity = new LinkedHashMap<>();
+        Map<String, Long> coalescedStats = new LinkedHashMap<>();
+        Map<String, Long> droppedOldestStats = new LinkedHashMap<>();
+        Map<String, Long> rejectedStats = new LinkedHashMap<>();
+        long shed = expiredDropped.get();
+        lock.lock();
+        try {
+            for (int i = 0; i < queues.length; i++) {
+                String name = priorities[i].name();
+                stats.put(name, queues[i].size());
+                capacity.put(name, capacities[i] == Integer.MAX_VALUE ? "unbounded" : capacities[i]);
+                if (priorities[i].isCoalescePerDevice()) {
+                    coalescedStats.put(name, coalesced.get(i));
+                }
+                if (priorities[i].getOverflowPolicy() == SerialTaskPriority.OverflowPolicy.DROP_OLDEST) {
+                    droppedOldestStats.put(name, droppedOldest.get(i));
+                    shed += droppedOldest.get(i);
+                } else {
+                    rejectedStats.put(name, rejected.get(i));
+                    shed += rejected.get(i);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        stats.put("capacity", capacity);
+        stats.put("coalesced", coalescedStats);
+        stats.put("droppedOldest", droppedOldestStats);
+        stats.put("rejected", rejectedStats);
+        stats.put("expiredDropped", expiredDropped.get());
+        // 因过载而没有执行的任务总数（不含合并，合并的轮询仍会执行一次）
+        stats.put("shed", shed);
+        return stats;
+    }
+}
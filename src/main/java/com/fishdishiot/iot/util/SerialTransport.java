@@ -0,0 +1,68 @@
+package com.fishdishiot.iot.util;
+
+import java.util.Collection;
+
+/**
+ * 串口传输层
+ * SerialPortService 只通过该接口收发字节，默认实现为 jSerialComm 物理串口（{@link JSerialCommTransport}），
+ * 也可以换成内存中的虚拟 Modbus 总线（{@link VirtualModbusTransport}），在没有硬件的机器上压测整个采集链路。
+ */
+public interface SerialTransport {
+
+    /**
+     * 传输名称，物理串口为串口名（如 COM3），虚拟总线为 virtual:总线名
+     */
+    String getName();
+
+    /**
+     * 打开传输
+     * @return 是否成功
+     */
+    boolean open();
+
+    /**
+     * 关闭传输
+     * @return 是否成功
+     */
+    boolean close();
+
+    boolean isOpen();
+
+    /**
+     * 当前接收缓冲区中可立即读取的字节数
+     */
+    int bytesAvailable();
+
+    /**
+     * 写入数据
+     * @param data 数据
+     * @param length 写入长度
+     * @return 写入的字节数，失败返回 -1
+     */
+    int write(byte[] data, int length);
+
+    /**
+     * 半阻塞读：有数据立即返回已到达的部分，否则最多等待 timeoutMs
+     * @param buf 接收缓冲区
+     * @param length 最多读取的字节数
+     * @param offset 写入缓冲区的起始位置
+     * @param timeoutMs 等待数据到达的超时时间
+     * @return 读取的字节数，超时返回 0，出错返回 -1
+     */
+    int read(byte[] buf, int length, int offset, int timeoutMs);
+
+    /**
+     * 注册断开回调：传输层能感知设备被拔出（如 USB 转串口适配器复位）时调用，默认不支持
+     */
+    default void setDisconnectListener(Runnable listener) {
+    }
+
+    /**
+     * 重新查找设备：原名称已不存在时，按上次打开时记录的设备标识找到新的名称并切换过去，默认不支持
+     * @param excluded 不能选用的名称（其他总线正在使用的串口）
+     * @return 切换后的新名称，原名称仍存在或找不到时返回 null
+     */
+    default String relocate(Collection<String> excluded) {
+        return null;
+    }
+}
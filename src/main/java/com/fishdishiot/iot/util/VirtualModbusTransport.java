@@ -0,0 +1,302 @@
+package com.fishdishiot.iot.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 内存中的虚拟 Modbus RTU 总线
+ * 模拟挂在一条 RS-485 线路上的一组从站，用于在没有串口适配器和传感器的机器上压测采集、处理链路：
+ * <ul>
+ *     <li>按波特率计算每个字符的传输时间，请求发出、从站处理（周转时间 + 抖动）、响应逐字节到达都按真实时序发生</li>
+ *     <li>支持 01/02/03/04 读、05/06/0F/10 写，写入的值会被记住，后续读取可见</li>
+ *     <li>按错误率随机丢弃响应（超时）或翻转一个比特（CRC错误）</li>
+ *     <li>寄存器初值可配置，未配置的寄存器返回由从站地址和寄存器地址决定的固定值</li>
+ * </ul>
+ */
+public class VirtualModbusTransport implements SerialTransport {
+
+    private final String name;
+
+    /** 每个字符（11 位）的传输时间 */
+    private final long charNanos;
+
+    /** 从站处理时间（周转时间） */
+    private final long latencyNanos;
+
+    /** 周转时间的随机抖动上限 */
+    private final long jitterNanos;
+
+    /** 出错概率（0~1），一半为无响应，一半为CRC错误 */
+    private final double errorRate;
+
+    /** 在线的从站地址，为空表示 1~247 全部在线 */
+    private final Set<Integer> slaves;
+
+    /** 所有从站共用的寄存器初值：寄存器地址 -> 值 */
+    private final Map<Integer, Integer> initialRegisters;
+
+    /** 写入过的寄存器和线圈：从站地址 -> (地址 -> 值) */
+    private final Map<Integer, Map<Integer, Integer>> writtenRegisters = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Boolean>> writtenCoils = new ConcurrentHashMap<>();
+
+    private final Random random = new Random();
+
+    private volatile boolean open;
+
+    /** 正在“线路上”传回的响应（复用同一个缓冲区），及其首字节开始到达的时间 */
+    private final byte[] responseBuffer = new byte[256];
+    private int pendingLength;
+    private long pendingStartNanos;
+    private int pendingConsumed;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong corrupted = new AtomicLong();
+
+    public VirtualModbusTransport(String name, int baudRate, int latencyMs, int jitterMs, double errorRate,
+                                  Set<Integer> slaves, Map<Integer, Integer> initialRegisters) {
+        this.name = name;
+        this.charNanos = SerialCommandExecutor.BITS_PER_CHAR * 1_000_000_000L / baudRate;
+        this.latencyNanos = latencyMs * 1_000_000L;
+        this.jitterNanos = jitterMs * 1_000_000L;
+        this.errorRate = errorRate;
+        this.slaves = slaves != null ? slaves : Collections.<Integer>emptySet();
+        this.initialRegisters = initialRegisters != null ? initialRegisters : Collections.<Integer, Integer>emptyMap();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean open() {
+        open = true;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean close() {
+        open = false;
+        pendingLength = 0;
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized int bytesAvailable() {
+        if (!open) {
+            return -1;
+        }
+        return arrivedBytes(System.nanoTime()) - pendingConsumed;
+    }
+
+    @Override
+    public synchronized int write(byte[] data, int length) {
+        if (!open) {
+            return -1;
+        }
+        requests.incrementAndGet();
+        long now = System.nanoTime();
+        pendingConsumed = 0;
+        int responseLength = respond(data, length);
+        if (responseLength > 0 && errorRate > 0 && random.nextDouble() < errorRate) {
+            if (random.nextBoolean()) {
+                dropped.incrementAndGet();
+                responseLength = 0;
+            } else {
+                corrupted.incrementAndGet();
+                responseBuffer[random.nextInt(responseLength)] ^= (byte) (1 << random.nextInt(8));
+            }
+        }
+        pendingLength = responseLength;
+        if (responseLength > 0) {
+            long jitter = jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0;
+            // 请求在线路上的传输时间 + 从站处理时间之后，响应开始逐字节到达
+            pendingStartNanos = now + length * charNanos + latencyNanos + jitter;
+        }
+        return length;
+    }
+
+    @Override
+    public int read(byte[] buf, int length, int offset, int timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (true) {
+            long wakeAt;
+            synchronized (this) {
+                if (!open) {
+                    return -1;
+                }
+                long now = System.nanoTime();
+                int available = arrivedBytes(now) - pendingConsumed;
+                if (available > 0) {
+                    int n = Math.min(available, length);
+                    System.arraycopy(responseBuffer, pendingConsumed, buf, offset, n);
+                    pendingConsumed += n;
+                    return n;
+                }
+                if (now >= deadline) {
+                    return 0;
+                }
+                wakeAt = deadline;
+                if (pendingConsumed < pendingLength) {
+                    wakeAt = Math.min(deadline, pendingStartNanos + (pendingConsumed + 1) * charNanos);
+                }
+                wakeAt -= now;
+            }
+            LockSupport.parkNanos(wakeAt);
+        }
+    }
+
+    /** 截至 now 已经完整到达的响应字节数 */
+    private int arrivedBytes(long now) {
+        if (pendingLength == 0 || now < pendingStartNanos) {
+            return 0;
+        }
+        long arrived = (now - pendingStartNanos) / charNanos;
+        return (int) Math.min(arrived, pendingLength);
+    }
+
+    /**
+     * 模拟从站处理一帧请求，响应写入 responseBuffer
+     * @return 响应长度；广播、从站不在线或请求帧无效时无响应，返回 0
+     */
+    private int respond(byte[] data, int length) {
+        if (length < 4 || !ModbusFrameUtils.hasValidCrc(data, length)) {
+            return 0;
+        }
+        int slave = data[0] & 0xFF;
+        if (slave == 0 || (!slaves.isEmpty() && !slaves.contains(slave))) {
+            return 0;
+        }
+        int function = data[1] & 0xFF;
+        if (length < 8) {
+            return exception(slave, function, 0x03);
+        }
+        int address = ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+        int value = ((data[4] & 0xFF) << 8) | (data[5] & 0xFF);
+        byte[] out = responseBuffer;
+        switch (function) {
+            case ModbusRequest.READ_COILS:
+            case ModbusRequest.READ_DISCRETE_INPUTS: {
+                if (value < 1 || value > 2000) {
+                    return exception(slave, function, 0x03);
+                }
+                int byteCount = (value + 7) / 8;
+                Arrays.fill(out, 3, 3 + byteCount, (byte) 0);
+                Map<Integer, Boolean> coils = writtenCoils.get(slave);
+                for (int i = 0; coils != null && i < value; i++) {
+                    Boolean on = coils.get(address + i);
+                    if (on != null && on) {
+                        out[3 + i / 8] |= (byte) (1 << (i % 8));
+                    }
+                }
+                return readResponse(slave, function, byteCount);
+            }
+            case ModbusRequest.READ_HOLDING_REGISTERS:
+            case ModbusRequest.READ_INPUT_REGISTERS: {
+                if (value < 1 || value > 125) {
+                    return exception(slave, function, 0x03);
+                }
+                for (int i = 0; i < value; i++) {
+                    int register = registerValue(slave, address + i);
+                    out[3 + i * 2] = (byte) (register >> 8);
+                    out[4 + i * 2] = (byte) register;
+                }
+                return readResponse(slave, function, value * 2);
+            }
+            case ModbusRequest.WRITE_SINGLE_COIL:
+                coils(slave).put(address, value == 0xFF00);
+                System.arraycopy(data, 0, out, 0, 8);
+                return 8;
+            case ModbusRequest.WRITE_SINGLE_REGISTER:
+                registers(slave).put(address, value);
+                System.arraycopy(data, 0, out, 0, 8);
+                return 8;
+            case ModbusRequest.WRITE_MULTIPLE_COILS:
+            case ModbusRequest.WRITE_MULTIPLE_REGISTERS:
+                if (function == ModbusRequest.WRITE_MULTIPLE_REGISTERS && length >= 9 + value * 2) {
+                    Map<Integer, Integer> registers = registers(slave);
+                    for (int i = 0; i < value; i++) {
+                        registers.put(address + i, ((data[7 + i * 2] & 0xFF) << 8) | (data[8 + i * 2] & 0xFF));
+                    }
+                }
+                System.arraycopy(data, 0, out, 0, 6);
+                return withCrc(8);
+            default:
+                return exception(slave, function, 0x01);
+        }
+    }
+
+    private int registerValue(int slave, int address) {
+        Map<Integer, Integer> written = writtenRegisters.isEmpty() ? null : writtenRegisters.get(slave);
+        Integer value = written != null ? written.get(address) : null;
+        if (value == null && !initialRegisters.isEmpty()) {
+            value = initialRegisters.get(address);
+        }
+        if (value == null) {
+            return (slave * 100 + address) & 0xFFFF;
+        }
+        return value;
+    }
+
+    private Map<Integer, Integer> registers(int slave) {
+        return writtenRegisters.computeIfAbsent(slave, k -> new ConcurrentHashMap<>());
+    }
+
+    private Map<Integer, Boolean> coils(int slave) {
+        return writtenCoils.computeIfAbsent(slave, k -> new ConcurrentHashMap<>());
+    }
+
+    /** 数据已写在 responseBuffer[3..] 中，补上帧头和CRC */
+    private int readResponse(int slave, int function, int byteCount) {
+        responseBuffer[0] = (byte) slave;
+        responseBuffer[1] = (byte) function;
+        responseBuffer[2] = (byte) byteCount;
+        return withCrc(3 + byteCount + 2);
+    }
+
+    private int exception(int slave, int function, int code) {
+        responseBuffer[0] = (byte) slave;
+        responseBuffer[1] = (byte) (function | 0x80);
+        responseBuffer[2] = (byte) code;
+        return withCrc(5);
+    }
+
+    private int withCrc(int length) {
+        int crc = ModbusFrameUtils.crc16(responseBuffer, 0, length - 2);
+        responseBuffer[length - 2] = (byte) crc;
+        responseBuffer[length - 1] = (byte) (crc >> 8);
+        return length;
+    }
+
+    /**
+     * 虚拟总线统计：请求数、模拟丢失的响应数、模拟CRC错误数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("dropped", dropped.get());
+        stats.put("corrupted", corrupted.get());
+        stats.put("slaves", slaves.isEmpty() ? "1-247" : slaves.size());
+        Map<String, Object> config = new HashMap<>();
+        config.put("charMicros", charNanos / 1000);
+        config.put("latencyMs", latencyNanos / 1_000_000);
+        config.put("jitterMs", jitterNanos / 1_000_000);
+        config.put("errorRate", errorRate);
+        stats.put("config", config);
+        return stats;
+    }
+}
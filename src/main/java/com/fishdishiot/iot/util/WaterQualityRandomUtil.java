@@ -2,6 +2,9 @@ package com.fishdishiot.iot.util;
 
 import java.util.Random;
 
+/**
+ * 水质模拟值生成，各总线采集线程和回放线程都会调用，方法加锁保护上一次的值
+ */
 public class WaterQualityRandomUtil {
     private static final Random RANDOM = new Random();
     // 初始值
@@ -10,19 +13,19 @@ public class WaterQualityRandomUtil {
     private static double lastConductivity = 290.0; // 电导率   μS/cm
 
     // 溶解氧
-    public static double getNextDissolvedOxygen() {
+    public static synchronized double getNextDissolvedOxygen() {
         lastDissolvedOxygen = nextSmoothValue(lastDissolvedOxygen, 6.0, 7.2, 0.05);
         return round(lastDissolvedOxygen, 2);
     }
 
     // 氨氮
-    public static double getNextAmmoniaNitrogen() {
+    public static synchronized double getNextAmmoniaNitrogen() {
         lastAmmoniaNitrogen = nextSmoothValue(lastAmmoniaNitrogen, 0.45, 0.52, 0.005);
         return round(lastAmmoniaNitrogen, 2);
     }
 
     // 电导率
-    public static double getNextConductivity() {
+    public static synchronized double getNextConductivity() {
         lastConductivity = nextSmoothValue(lastConductivity, 280.0, 310.0, 1);
         return round(lastConductivity, 2);
     }
@@ -0,0 +1,202 @@
+package com.fishdishiot.iot.benchmark;
+
+import com.fishdishiot.iot.config.ExecutionProperties;
+import com.fishdishiot.iot.config.SerialBusProperties;
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import com.fishdishiot.iot.domain.AjaxResult;
+import com.fishdishiot.iot.service.AgricultureDeviceService;
+import com.fishdishiot.iot.service.AgricultureWaterQualityDataService;
+import com.fishdishiot.iot.service.DeviceCommandRegistry;
+import com.fishdishiot.iot.service.SerialBusManager;
+import com.fishdishiot.iot.service.impl.DataProcessingServiceImpl;
+import com.fishdishiot.iot.service.impl.DeviceOperationServiceImpl;
+import com.fishdishiot.iot.util.BlockingTaskExecutor;
+import com.fishdishiot.iot.util.ModbusRequest;
+import com.fishdishiot.iot.util.SensorReading;
+import com.fishdishiot.iot.util.SensorReadingConverter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行模式对比压测
+ * 在阻塞任务执行器上并发执行真实的手动控制和入库流程：DeviceOperationServiceImpl.controlDevice
+ * （经总线指令队列、在虚拟 Modbus 总线上完成写线圈事务并等待回显，再更新设备状态）和
+ * DataProcessingServiceImpl.persist（转换并保存水质数据）。数据库访问用按固定耗时阻塞的桩代替，
+ * 分别用平台线程池和虚拟线程执行，输出总耗时、吞吐量、峰值并发交互数、峰值平台线程数和反压时由提交线程执行的次数。
+ * 虚拟线程模式需要在 JDK 21+ 上运行，低版本 JDK 只输出平台线程池的结果。
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;依赖&gt; com.fishdishiot.iot.benchmark.ExecutionModeBenchmark [交互数] [总线数] [数据库ms] [线程池大小]
+ * </pre>
+ */
+public class ExecutionModeBenchmark {
+
+    /** 每条总线上的从站数 */
+    private static final int SLAVES_PER_BUS = 8;
+
+    public static void main(String[] args) throws Exception {
+        int interactions = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int buses = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long storeMs = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        int poolSize = args.length > 3 ? Integer.parseInt(args[3]) : new ExecutionProperties().getPlatformPoolSize();
+
+        System.out.printf("JDK %s, %d 次交互, %d 条虚拟总线(115200bps, 周转5ms), 每次交互写库两次、每次 %dms%n",
+                System.getProperty("java.version"), interactions, buses, storeMs);
+        System.out.printf("%-16s %10s %10s %10s %10s %10s %8s%n", "模式", "总耗时ms", "交互/秒", "峰值并发", "峰值平台线程",
+                "提交方执行", "失败");
+
+        run("platform(" + poolSize + ")", BlockingTaskExecutor.MODE_PLATFORM, poolSize, interactions, buses, storeMs);
+        run("platform(" + poolSize * 16 + ")", BlockingTaskExecutor.MODE_PLATFORM, poolSize * 16, interactions, buses, storeMs);
+        BlockingTaskExecutor probe = new BlockingTaskExecutor("Benchmark-Probe", BlockingTaskExecutor.MODE_VIRTUAL, 1, 1);
+        boolean virtualSupported = probe.isVirtual();
+        probe.shutdown();
+        if (virtualSupported) {
+            run("virtual", BlockingTaskExecutor.MODE_VIRTUAL, poolSize, interactions, buses, storeMs);
+        } else {
+            System.out.printf("%-16s 当前JDK不支持虚拟线程，请在 JDK 21+ 上运行%n", "virtual");
+        }
+    }
+
+    private static void run(String label, String mode, int poolSize, int interactions, int busCount,
+                            long storeMs) throws Exception {
+        // 虚拟总线，每条总线 SLAVES_PER_BUS 个可控设备，写指令等待回显
+        SerialBusProperties properties = new SerialBusProperties();
+        properties.setTransport(SerialBusProperties.TRANSPORT_VIRTUAL);
+        properties.setBaudRate(115200);
+        properties.getVirtual().setLatencyMs(5);
+        properties.getQueueCapacity().setInteractive(interactions);
+        Map<Long, AgricultureDevice> devices = new HashMap<>();
+        for (int b = 0; b < busCount; b++) {
+            SerialBusProperties.Bus bus = new SerialBusProperties.Bus();
+            bus.setName("bench-" + b);
+            for (int s = 1; s <= SLAVES_PER_BUS; s++) {
+                long id = (long) b * SLAVES_PER_BUS + s;
+                AgricultureDevice device = new AgricultureDevice();
+                device.setId(id);
+                device.setDeviceName("relay-" + id);
+                device.setIsControllable("1");
+                device.setCommandOn(ModbusRequest.writeSingleCoil(s, 0, true).toString());
+                device.setCommandOff(ModbusRequest.writeSingleCoil(s, 0, false).toString());
+                devices.put(id, device);
+                bus.getDeviceIds().add(id);
+                properties.getControl().getConfirmDeviceIds().add(id);
+            }
+            properties.getBuses().add(bus);
+        }
+        SerialBusManager busManager = new SerialBusManager();
+        inject(busManager, "properties", properties);
+        busManager.init();
+
+        AgricultureDeviceService deviceService = stub(AgricultureDeviceService.class, storeMs, devices);
+        DeviceCommandRegistry commandRegistry = new DeviceCommandRegistry();
+        inject(commandRegistry, "deviceService", deviceService);
+        inject(commandRegistry, "serialBusProperties", properties);
+
+        BlockingTaskExecutor executor = new BlockingTaskExecutor("Benchmark", mode, poolSize,
+                new ExecutionProperties().getPlatformQueueCapacity());
+        DeviceOperationServiceImpl operationService = new DeviceOperationServiceImpl();
+        inject(operationService, "deviceService", deviceService);
+        inject(operationService, "serialBusManager", busManager);
+        inject(operationService, "commandRegistry", commandRegistry);
+        inject(operationService, "blockingTaskExecutor", executor);
+        DataProcessingServiceImpl dataProcessingService = new DataProcessingServiceImpl();
+        inject(dataProcessingService, "waterQualityDataService",
+                stub(AgricultureWaterQualityDataService.class, storeMs, devices));
+
+        PlatformThreadSampler sampler = new PlatformThreadSampler();
+        sampler.start();
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<Boolean>> futures = new ArrayList<>(interactions);
+        long start = System.nanoTime();
+        for (int i = 0; i < interactions; i++) {
+            AgricultureDevice device = devices.get((long) (i % devices.size()) + 1);
+            String action = (i / devices.size()) % 2 == 0 ? "on" : "off";
+            futures.add(executor.submit(() -> {
+                AjaxResult result = operationService.controlDevice(device.getId(), action, 0);
+                SensorReading reading = new SensorReading();
+                reading.reset(device, System.currentTimeMillis(), null, null);
+                reading.setType("water");
+                reading.set(SensorReadingConverter.PH_VALUE, 7.2);
+                reading.set(SensorReadingConverter.WATER_TEMPERATURE, 25.0);
+                dataProcessingService.persist(reading);
+                if (!result.isSuccess()) {
+                    failures.incrementAndGet();
+                }
+                return result.isSuccess();
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            future.get();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        sampler.interrupt();
+        sampler.join();
+        Map<String, Object> stats = executor.getStats();
+        executor.shutdown();
+        busManager.destroy();
+        System.out.printf("%-16s %10d %10.0f %10s %10d %10s %8d%n", label, elapsedMs,
+                interactions * 1000.0 / Math.max(1, elapsedMs), stats.get("maxInFlight"), sampler.peak,
+                stats.getOrDefault("callerRuns", "-"), failures.get());
+    }
+
+    /**
+     * 定时采样存活的平台线程数（Thread.getAllStackTraces 不包含虚拟线程）
+     */
+    private static class PlatformThreadSampler extends Thread {
+        volatile int peak;
+
+        PlatformThreadSampler() {
+            super("Benchmark-Sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peak = Math.max(peak, Thread.getAllStackTraces().size());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 数据库服务桩：getById 按ID返回设备，save / updateById 阻塞 storeMs 模拟一次写库
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, long storeMs, Map<Long, AgricultureDevice> devices) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getById":
+                    return devices.get(((Number) args[0]).longValue());
+                case "save":
+                case "updateById":
+                    Thread.sleep(storeMs);
+                    return true;
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+            }
+        });
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
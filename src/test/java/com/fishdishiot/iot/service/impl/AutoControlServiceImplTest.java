@@ -0,0 +1,126 @@
+package com.fishdishiot.iot.service.impl;
+
+import com.fishdishiot.iot.domain.AgricultureAutoControlStrategy;
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import com.fishdishiot.iot.service.AgricultureAutoControlStrategyService;
+import com.fishdishiot.iot.service.AgricultureDeviceService;
+import com.fishdishiot.iot.service.DeviceCommandRegistry;
+import com.fishdishiot.iot.service.DeviceOperationService;
+import com.fishdishiot.iot.service.SerialBus;
+import com.fishdishiot.iot.service.SerialBusManager;
+import com.fishdishiot.iot.util.BlockingTaskExecutor;
+import com.fishdishiot.iot.util.FrameDecoder;
+import com.fishdishiot.iot.util.SensorReading;
+import com.fishdishiot.iot.util.SensorReadingConverter;
+import com.fishdishiot.iot.util.SerialCommandExecutor;
+import com.fishdishiot.iot.util.SerialTaskPriority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AutoControlServiceImplTest {
+
+    private static final long AERATOR_ID = 10L;
+
+    @Mock
+    private AgricultureAutoControlStrategyService strategyService;
+
+    @Mock
+    private DeviceOperationService deviceOperationService;
+
+    @Mock
+    private AgricultureDeviceService deviceService;
+
+    @Mock
+    private SerialBusManager serialBusManager;
+
+    @Mock
+    private DeviceCommandRegistry commandRegistry;
+
+    @Mock
+    private BlockingTaskExecutor blockingTaskExecutor;
+
+    @Mock
+    private SerialBus bus;
+
+    @Mock
+    private SerialCommandExecutor executor;
+
+    @InjectMocks
+    private AutoControlServiceImpl autoControlService;
+
+    private SensorReading reading;
+
+    @BeforeEach
+    void setUp() {
+        AgricultureDevice sensor = new AgricultureDevice();
+        sensor.setId(1L);
+        reading = new SensorReading();
+        reading.reset(sensor, System.currentTimeMillis(), null, null);
+    }
+
+    private void givenStrategy(String parameter, String operator, String conditionValue) {
+        AgricultureAutoControlStrategy strategy = new AgricultureAutoControlStrategy();
+        strategy.setId(100L);
+        strategy.setDeviceId(String.valueOf(AERATOR_ID));
+        strategy.setParameter(parameter);
+        strategy.setConditionOperator(operator);
+        strategy.setConditionValue(new BigDecimal(conditionValue));
+        strategy.setAction("on");
+        when(strategyService.getAllActiveStrategies()).thenReturn(Collections.singletonList(strategy));
+    }
+
+    private void givenBus() {
+        when(serialBusManager.getBusForDevice(AERATOR_ID)).thenReturn(bus);
+        when(bus.getExecutor()).thenReturn(executor);
+    }
+
+    @Test
+    void filledValueDoesNotTriggerStrategy() {
+        // 溶解氧低于 5 时开启增氧机
+        givenStrategy("dissolved_oxygen", "<", "5");
+        reading.fill(SensorReadingConverter.DISSOLVED_OXYGEN, 4.0);
+
+        autoControlService.checkAndExecuteStrategy(reading);
+
+        verifyNoInteractions(deviceService, serialBusManager, deviceOperationService);
+    }
+
+    @Test
+    void measuredValueTriggersStrategy() {
+        givenStrategy("dissolved_oxygen", "<", "5");
+        givenBus();
+        reading.set(SensorReadingConverter.DISSOLVED_OXYGEN, 4.0);
+
+        autoControlService.checkAndExecuteStrategy(reading);
+
+        verify(executor).submit(eq(SerialTaskPriority.AUTO_CONTROL), eq(AERATOR_ID), any(Runnable.class));
+    }
+
+    @Test
+    void scaledValueMatchesEqualCondition() {
+        givenStrategy("ph_value", "=", "7.10");
+        givenBus();
+        FrameDecoder decoder = FrameDecoder.builder("ph").field("ph_value", 0, "u16", 0.01, null, null, null).build();
+        // pH 寄存器值 710
+        byte[] frame = {0x01, 0x03, 0x02, 0x02, (byte) 0xC6, 0x00, 0x00};
+        decoder.decode(frame, reading);
+
+        autoControlService.checkAndExecuteStrategy(reading);
+
+        verify(executor).submit(eq(SerialTaskPriority.AUTO_CONTROL), eq(AERATOR_ID), any(Runnable.class));
+    }
+}
@@ -0,0 +1,59 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BusCapacityPlannerTest {
+
+    private static BusCapacityPlanner.PlanLoad load(long key, long intervalMs, double costMs) {
+        return new BusCapacityPlanner.PlanLoad(key, Collections.singletonList(key), intervalMs, costMs, "measured");
+    }
+
+    private static ModbusRequest readCoils(int quantity) {
+        byte[] frame = {1, ModbusRequest.READ_COILS, 0, 0, 0, (byte) quantity, 0, 0};
+        int crc = ModbusFrameUtils.crc16(frame, 0, 6);
+        frame[6] = (byte) crc;
+        frame[7] = (byte) (crc >> 8);
+        return ModbusRequest.fromFrame(frame);
+    }
+
+    @Test
+    void estimatesTransactionTimeFromFrameLength() {
+        // 8 字节请求 + 9 字节响应，9600bps 下每字节 11 位
+        assertEquals(17 * 11000.0 / 9600 + 5 + 2, BusCapacityPlanner.estimateTransactionMs(8, 9, 9600, 5, 2), 1e-9);
+    }
+
+    @Test
+    void expectedResponseBytesByFunctionCode() {
+        assertEquals(9, BusCapacityPlanner.expectedResponseBytes(ModbusRequest.readHoldingRegisters(1, 0, 2)));
+        assertEquals(6, BusCapacityPlanner.expectedResponseBytes(readCoils(8)));
+        assertEquals(7, BusCapacityPlanner.expectedResponseBytes(readCoils(9)));
+        assertEquals(8, BusCapacityPlanner.expectedResponseBytes(ModbusRequest.writeSingleCoil(1, 0, true)));
+    }
+
+    @Test
+    void boundsResponseAndStaleness() {
+        BusCapacityPlanner.BusReport report = BusCapacityPlanner.analyze("bus", Arrays.asList(load(1, 100, 10), load(2, 100, 10)));
+        assertEquals(0.2, report.getUtilization(), 1e-9);
+        assertEquals(10, report.getMaxTransactionMs(), 1e-9);
+        for (BusCapacityPlanner.PlanReport plan : report.getPlans()) {
+            // 自身 10ms + 被正在进行的事务阻塞 10ms + 另一个计划抢先 10ms
+            assertEquals(30, plan.getWorstResponseMs(), 1e-9);
+            assertEquals(130, plan.getWorstStalenessMs(), 1e-9);
+        }
+    }
+
+    @Test
+    void overloadedBusDoesNotConverge() {
+        BusCapacityPlanner.BusReport report = BusCapacityPlanner.analyze("bus", Arrays.asList(load(1, 100, 60), load(2, 100, 60)));
+        assertEquals(1.2, report.getUtilization(), 1e-9);
+        for (BusCapacityPlanner.PlanReport plan : report.getPlans()) {
+            assertEquals(-1, plan.getWorstResponseMs(), 1e-9);
+            assertEquals(-1, plan.getWorstStalenessMs(), 1e-9);
+        }
+    }
+}
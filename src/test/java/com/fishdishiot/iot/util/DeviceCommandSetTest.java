@@ -0,0 +1,76 @@
+package com.fishdishiot.iot.util;
+
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceCommandSetTest {
+
+    private static final String COIL_ON = ModbusRequest.writeSingleCoil(1, 0, true).toString();
+    private static final String COIL_OFF = ModbusRequest.writeSingleCoil(1, 0, false).toString();
+
+    private static AgricultureDevice device(String sensorCommand, String commandOn, String commandOff) {
+        AgricultureDevice device = new AgricultureDevice();
+        device.setId(1L);
+        device.setSensorCommand(sensorCommand);
+        device.setCommandOn(commandOn);
+        device.setCommandOff(commandOff);
+        return device;
+    }
+
+    @Test
+    void compilesPollAndControlGroups() {
+        DeviceCommandSet commands = DeviceCommandSet.compile(device("01 03 00 00 00 02 C4 0B",
+                COIL_ON + "|" + ModbusRequest.writeSingleCoil(1, 1, true) + "|", COIL_OFF), true);
+        assertFalse(commands.hasErrors());
+        assertEquals(2, commands.getPollRequest().getQuantityOrValue());
+        // 末尾的 "|" 不算一组
+        assertEquals(2, commands.getOnRequests().size());
+        assertEquals(1, commands.getOffRequests().size());
+        assertTrue(commands.isMultiGroup());
+        assertTrue(commands.getOnRequests().get(0).isStandardWrite());
+    }
+
+    @Test
+    void invalidGroupDisablesAllGroups() {
+        DeviceCommandSet commands = DeviceCommandSet.compile(device(null, COIL_ON + "|01 05 00 01 FF 00 00 00", COIL_OFF), true);
+        assertTrue(commands.hasErrors());
+        assertTrue(commands.getOnRequests().isEmpty());
+        assertTrue(commands.hasOnCommand());
+        assertEquals(1, commands.getOffRequests().size());
+    }
+
+    @Test
+    void nonConfirmingDevicesAcceptRawCommands() {
+        DeviceCommandSet commands = DeviceCommandSet.compile(device("null", "A0 01 01 A2", "A0 01 00 A1"));
+        assertFalse(commands.hasErrors());
+        assertNull(commands.getPollRequest());
+        assertTrue(commands.getOnRequests().get(0).isRaw());
+
+        DeviceCommandSet strict = DeviceCommandSet.compile(device("null", "A0 01 01 A2", "A0 01 00 A1"), true);
+        assertEquals(2, strict.getErrors().size());
+    }
+
+    @Test
+    void invalidPollCommandIsReported() {
+        DeviceCommandSet commands = DeviceCommandSet.compile(device("01 03 00 00 00 02 C4 0C", null, ""));
+        assertNull(commands.getPollRequest());
+        assertEquals(1, commands.getErrors().size());
+        assertFalse(commands.hasOnCommand());
+        assertFalse(commands.hasOffCommand());
+    }
+
+    @Test
+    void detectsSourceChanges() {
+        AgricultureDevice device = device("01 03 00 00 00 02 C4 0B", COIL_ON, COIL_OFF);
+        DeviceCommandSet commands = DeviceCommandSet.compile(device, true);
+        assertTrue(commands.isSameSource(device, true));
+        assertFalse(commands.isSameSource(device, false));
+        device.setCommandOff(COIL_ON);
+        assertFalse(commands.isSameSource(device, true));
+    }
+}
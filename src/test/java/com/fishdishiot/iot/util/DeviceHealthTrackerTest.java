@@ -0,0 +1,64 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceHealthTrackerTest {
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        DeviceHealthTracker tracker = new DeviceHealthTracker(3, 60_000, 600_000, 2);
+        assertEquals(DeviceHealthTracker.State.CLOSED, tracker.recordFailure(1L));
+        assertEquals(DeviceHealthTracker.State.CLOSED, tracker.recordFailure(1L));
+        assertEquals(DeviceHealthTracker.State.OPEN, tracker.recordFailure(1L));
+        assertEquals(60_000, tracker.getBackoffMs(1L));
+        assertFalse(tracker.isPollAllowed(1L));
+        assertFalse(tracker.tryAcquire(1L));
+        assertEquals(1, tracker.countByState().get("OPEN"));
+        // 其他设备不受影响
+        assertTrue(tracker.tryAcquire(2L));
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        DeviceHealthTracker tracker = new DeviceHealthTracker(2, 60_000, 600_000, 2);
+        tracker.recordFailure(1L);
+        assertEquals(DeviceHealthTracker.State.CLOSED, tracker.recordSuccess(1L));
+        assertEquals(DeviceHealthTracker.State.CLOSED, tracker.recordFailure(1L));
+    }
+
+    @Test
+    void probesAfterBackoffAndRecoversOnSuccess() throws InterruptedException {
+        DeviceHealthTracker tracker = new DeviceHealthTracker(1, 10, 1000, 2);
+        tracker.recordFailure(1L);
+        Thread.sleep(20);
+        assertTrue(tracker.isPollAllowed(1L));
+        assertTrue(tracker.tryAcquire(1L));
+        assertEquals(DeviceHealthTracker.State.HALF_OPEN, tracker.getState(1L));
+        // 探测期间不再放行第二个请求
+        assertFalse(tracker.tryAcquire(1L));
+        assertEquals(DeviceHealthTracker.State.HALF_OPEN, tracker.recordSuccess(1L));
+        assertEquals(DeviceHealthTracker.State.CLOSED, tracker.getState(1L));
+        assertEquals(0, tracker.getBackoffMs(1L));
+        assertEquals(0, tracker.countByState().get("HALF_OPEN"));
+    }
+
+    @Test
+    void failedProbesGrowBackoffUpToLimit() throws InterruptedException {
+        DeviceHealthTracker tracker = new DeviceHealthTracker(1, 10, 30, 2);
+        tracker.recordFailure(1L);
+        Thread.sleep(15);
+        assertTrue(tracker.tryAcquire(1L));
+        assertEquals(DeviceHealthTracker.State.OPEN, tracker.recordFailure(1L));
+        assertEquals(20, tracker.getBackoffMs(1L));
+        tracker.recordFailure(1L);
+        assertEquals(30, tracker.getBackoffMs(1L));
+        tracker.recordFailure(1L);
+        assertEquals(30, tracker.getBackoffMs(1L));
+        assertEquals("OPEN", tracker.snapshot(1L).get("state"));
+        assertEquals(1L, tracker.snapshot(1L).get("trips"));
+    }
+}
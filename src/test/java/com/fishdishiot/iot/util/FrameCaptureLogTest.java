@@ -0,0 +1,105 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCaptureLogTest {
+
+    @TempDir
+    Path dir;
+
+    private final byte[] request = ModbusRequest.readHoldingRegisters(1, 0, 2).getFrame();
+    private final byte[] response = ModbusRequestTest.response("01 03 04 02 BC 00 FD").getFrame();
+
+    @Test
+    void roundTripsRecords() throws IOException {
+        try (FrameCaptureLog capture = new FrameCaptureLog(dir, 4096, 2)) {
+            capture.append(1000L, 7L, FrameCaptureLog.STATUS_OK, request, response, response.length);
+            capture.append(2000L, -1L, FrameCaptureLog.STATUS_TIMEOUT, request, new byte[0], 0);
+            assertEquals(2L, capture.getStats().get("records"));
+        }
+        List<Path> files = FrameCaptureLog.listFiles(dir);
+        assertEquals(1, files.size());
+        try (FrameCaptureLog.Reader reader = new FrameCaptureLog.Reader(files.get(0))) {
+            FrameCaptureLog.Record record = new FrameCaptureLog.Record();
+            assertTrue(reader.next(record));
+            assertEquals(1000L, record.getTimestamp());
+            assertEquals(7L, record.getDeviceId());
+            assertEquals(FrameCaptureLog.STATUS_OK, record.getStatus());
+            assertArrayEquals(request, record.copyRequest());
+            assertArrayEquals(response, record.copyResponse());
+
+            assertTrue(reader.next(record));
+            assertEquals(FrameCaptureLog.STATUS_TIMEOUT, record.getStatus());
+            assertEquals(-1L, record.getDeviceId());
+            assertEquals(0, record.getResponseLength());
+            assertFalse(reader.next(record));
+        }
+    }
+
+    @Test
+    void rotatesAndKeepsNewestFiles() throws IOException {
+        int perFile;
+        try (FrameCaptureLog capture = new FrameCaptureLog(dir, 4096, 2)) {
+            // 每条记录 4 + 21 + 8 + 9 = 42 字节，写满三个多文件
+            perFile = (4096 - FrameCaptureLog.FILE_HEADER_BYTES) / 42;
+            for (int i = 0; i < perFile * 3 + 1; i++) {
+                capture.append(i, 1L, FrameCaptureLog.STATUS_OK, request, response, response.length);
+            }
+            assertEquals(3L, capture.getStats().get("rotations"));
+        }
+        List<Path> files = FrameCaptureLog.listFiles(dir);
+        assertEquals(2, files.size());
+        int count = 0;
+        long first = -1;
+        FrameCaptureLog.Record record = new FrameCaptureLog.Record();
+        for (Path file : files) {
+            try (FrameCaptureLog.Reader reader = new FrameCaptureLog.Reader(file)) {
+                while (reader.next(record)) {
+                    if (first < 0) {
+                        first = record.getTimestamp();
+                    }
+                    count++;
+                }
+            }
+        }
+        assertEquals(perFile + 1, count);
+        assertEquals(perFile * 2L, first);
+    }
+
+    @Test
+    void stopsAtTruncatedTailRecord() throws IOException {
+        try (FrameCaptureLog capture = new FrameCaptureLog(dir, 4096, 1)) {
+            capture.append(1L, 1L, FrameCaptureLog.STATUS_OK, request, response, response.length);
+            capture.append(2L, 1L, FrameCaptureLog.STATUS_OK, request, response, response.length);
+        }
+        Path file = FrameCaptureLog.listFiles(dir).get(0);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 5));
+        try (FrameCaptureLog.Reader reader = new FrameCaptureLog.Reader(file)) {
+            FrameCaptureLog.Record record = new FrameCaptureLog.Record();
+            assertTrue(reader.next(record));
+            assertFalse(reader.next(record));
+        }
+    }
+
+    @Test
+    void rejectsForeignFiles() throws IOException {
+        Path file = dir.resolve("other.cap");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> new FrameCaptureLog.Reader(file));
+        assertThrows(IllegalArgumentException.class, () -> new FrameCaptureLog(dir, 1024, 1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.fishdishiot.iot.util;
+
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameDecoderTest {
+
+    private static final int PH = ParamIndex.of("ph_value");
+    private static final int WATER_TEMPERATURE = ParamIndex.of("water_temperature");
+    private static final int TEMPERATURE = ParamIndex.of("temperature");
+    private static final int WIND_DIRECTION = ParamIndex.of("wind_direction");
+    private static final int LIGHT_INTENSITY = ParamIndex.of("light_intensity");
+
+    private final FrameDecoder decoder = FrameDecoder.builder("test")
+            .slaveAddress(1)
+            .field("ph_value", 0, "u16", 0.01, null, null, null)
+            .field("water_temperature", 1, "s16", 0.1, null, null, null)
+            .alias("temperature")
+            .field("wind_direction", 2, "u16", 1, null, Arrays.asList("北", "东", "南", "西"), "未知")
+            .field("light_intensity", 3, "u32", 1, null, null, null)
+            .build();
+
+    /** pH 7.00，水温 -10.0，风向“南”，光照 65536 */
+    private final byte[] frame = ModbusRequestTest.response("01 03 0A 02 BC FF 9C 00 02 00 01 00 00").getFrame();
+
+    private SensorReading decode(byte[] frame) {
+        AgricultureDevice device = new AgricultureDevice();
+        device.setId(1L);
+        SensorReading reading = new SensorReading();
+        reading.reset(device, 0, decoder, frame);
+        decoder.decode(frame, reading);
+        return reading;
+    }
+
+    @Test
+    void decodesScaledSignedAndWideFields() {
+        assertEquals(5, decoder.decode(frame, new SensorReading()));
+        SensorReading reading = decode(frame);
+        assertEquals(7.0, reading.get(PH));
+        assertEquals(-10.0, reading.get(WATER_TEMPERATURE));
+        assertEquals(-10.0, reading.get(TEMPERATURE));
+        assertEquals(65536.0, reading.get(LIGHT_INTENSITY));
+        assertEquals("南", reading.getLabel(WIND_DIRECTION));
+        assertTrue(reading.isMeasured(PH));
+        assertFalse(reading.isNumeric(WIND_DIRECTION));
+    }
+
+    @Test
+    void scaleByTenthDividesExactly() {
+        FrameDecoder tenth = FrameDecoder.builder("tenth").field("water_temperature", 0, "u16", 0.1, null, null, null).build();
+        SensorReading reading = new SensorReading();
+        tenth.decode(ModbusRequestTest.response("01 03 02 00 FD").getFrame(), reading);
+        assertEquals(25.3, reading.get(WATER_TEMPERATURE));
+    }
+
+    @Test
+    void decimalRegisterShiftsValue() {
+        FrameDecoder decimal = FrameDecoder.builder("decimal").field("ph_value", 0, "u16", 1, 1, null, null).build();
+        SensorReading reading = new SensorReading();
+        decimal.decode(ModbusRequestTest.response("01 03 04 02 BC 00 02").getFrame(), reading);
+        assertEquals(7.0, reading.get(PH));
+    }
+
+    @Test
+    void skipsFieldsBeyondShortFrame() {
+        SensorReading reading = decode(ModbusRequestTest.response("01 03 04 02 BC FF 9C").getFrame());
+        assertTrue(reading.isValid(WATER_TEMPERATURE));
+        assertFalse(reading.isValid(LIGHT_INTENSITY));
+    }
+
+    @Test
+    void matchesSlaveAddressAndLength() {
+        assertEquals(13, decoder.getMinLength());
+        assertTrue(decoder.matches(frame));
+        assertFalse(decoder.matches(ModbusRequestTest.response("02 03 0A 02 BC FF 9C 00 02 00 01 00 00").getFrame()));
+        assertFalse(decoder.matches(ModbusRequestTest.response("01 03 04 02 BC FF 9C").getFrame()));
+        assertFalse(decoder.matches(ModbusRequestTest.response("01 83 02").getFrame()));
+    }
+
+    @Test
+    void formatsLabelsAndIntegers() {
+        assertEquals("西", decoder.format(WIND_DIRECTION, 3));
+        assertEquals("未知", decoder.format(WIND_DIRECTION, 9));
+        assertEquals(65536L, decoder.format(LIGHT_INTENSITY, 65536));
+        assertEquals(7.0, decoder.format(PH, 7.0));
+        assertTrue(decoder.isLabel(WIND_DIRECTION));
+        assertFalse(decoder.isLabel(PH));
+        assertNull(decoder.label(PH, 1));
+    }
+
+    @Test
+    void rejectsInvalidDeclarations() {
+        FrameDecoder.Builder builder = FrameDecoder.builder("bad");
+        assertThrows(IllegalStateException.class, () -> builder.alias("temperature"));
+        assertThrows(IllegalArgumentException.class, () -> builder.field("ph_value", 0, "f32", 1, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> builder.field("ph_value", -1, "u16", 1, null, null, null));
+    }
+}
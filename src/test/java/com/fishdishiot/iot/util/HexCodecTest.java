@@ -0,0 +1,45 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HexCodecTest {
+
+    @Test
+    void encodeUsesUpperCaseSpaceSeparated() {
+        assertEquals("01 03 FF 0A", HexCodec.encode(new byte[]{1, 3, (byte) 0xFF, 10}));
+        assertEquals("03 FF", HexCodec.encode(new byte[]{1, 3, (byte) 0xFF, 10}, 1, 2));
+        assertEquals("", HexCodec.encode(new byte[0]));
+    }
+
+    @Test
+    void decodeIgnoresWhitespaceAndCase() {
+        assertArrayEquals(new byte[]{1, 3, (byte) 0xC4, 0x0B}, HexCodec.decode(" 01 03\tc4\n0B "));
+        assertArrayEquals(new byte[]{(byte) 0xAB, (byte) 0xCD}, HexCodec.decode("abcd"));
+    }
+
+    @Test
+    void decodeIntoBuffer() {
+        byte[] out = new byte[6];
+        assertEquals(2, HexCodec.decode("0102", out, 3));
+        assertArrayEquals(new byte[]{0, 0, 0, 1, 2, 0}, out);
+        assertThrows(IllegalArgumentException.class, () -> HexCodec.decode("010203", out, 4));
+    }
+
+    @Test
+    void rejectsInvalidText() {
+        assertThrows(IllegalArgumentException.class, () -> HexCodec.decode("01 0"));
+        assertThrows(IllegalArgumentException.class, () -> HexCodec.decode("01 0G"));
+        assertThrows(IllegalArgumentException.class, () -> HexCodec.decode("01 é"));
+    }
+
+    @Test
+    void appendReusesBuilder() {
+        StringBuilder sb = new StringBuilder("resp=");
+        HexCodec.append(sb, new byte[]{0x10, 0x20, 0x30}, 0, 3);
+        assertEquals("resp=10 20 30", sb.toString());
+    }
+}
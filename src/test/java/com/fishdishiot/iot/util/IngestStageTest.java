@@ -0,0 +1,93 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestStageTest {
+
+    private final List<Integer> handled = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private IngestStage<Integer> stage;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (stage != null) {
+            stage.shutdown(1000);
+        }
+    }
+
+    @Test
+    void processesInOrderPerKey() {
+        stage = new IngestStage<>("test", 2, 100, handled::add);
+        for (int i = 0; i < 50; i++) {
+            stage.submit(1, i);
+        }
+        stage.shutdown(2000);
+        assertEquals(50, handled.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, handled.get(i));
+        }
+        assertEquals(50L, stage.getStats().get("processed"));
+    }
+
+    @Test
+    void fullQueueDropsOldest() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        stage = new IngestStage<>("test", 1, 2, item -> {
+            started.countDown();
+            await(release);
+            handled.add(item);
+        });
+        stage.submit(1, 0);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) {
+            stage.submit(1, i);
+        }
+        assertEquals(2, stage.getQueued());
+        assertEquals(2L, stage.getStats().get("dropped"));
+        release.countDown();
+        stage.shutdown(2000);
+        assertEquals(List.of(0, 3, 4), handled);
+    }
+
+    @Test
+    void failuresAreCountedAndDoNotStopWorker() {
+        stage = new IngestStage<>("test", 1, 10, item -> {
+            if (item == 1) {
+                throw new IllegalStateException("boom");
+            }
+            handled.add(item);
+        });
+        stage.submit(1, 1);
+        stage.submit(1, 2);
+        stage.shutdown(2000);
+        assertEquals(List.of(2), handled);
+        assertEquals(1L, stage.getStats().get("failed"));
+    }
+
+    @Test
+    void submitAfterShutdownIsDropped() {
+        stage = new IngestStage<>("test", 1, 10, handled::add);
+        stage.shutdown(1000);
+        stage.submit(1, 1);
+        assertEquals(0L, stage.getStats().get("submitted"));
+        assertEquals(1L, stage.getStats().get("dropped"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModbusFrameUtilsTest {
+
+    @Test
+    void crc16MatchesKnownFrame() {
+        byte[] frame = HexCodec.decode("01 03 00 00 00 02 C4 0B");
+        assertEquals(0x0BC4, ModbusFrameUtils.crc16(frame, 0, 6));
+        assertTrue(ModbusFrameUtils.hasValidCrc(frame, frame.length));
+    }
+
+    @Test
+    void corruptedFrameFailsCrc() {
+        byte[] frame = HexCodec.decode("01 03 00 00 00 03 C4 0B");
+        assertFalse(ModbusFrameUtils.hasValidCrc(frame, frame.length));
+        assertFalse(ModbusFrameUtils.hasValidCrc(frame, 3));
+    }
+
+    @Test
+    void expectedLengthFollowsFunctionCode() {
+        byte[] read = HexCodec.decode("01 03 04 00 FD 00 01 00 00");
+        assertEquals(ModbusFrameUtils.UNKNOWN_LENGTH, ModbusFrameUtils.expectedResponseLength(read, 2));
+        assertEquals(9, ModbusFrameUtils.expectedResponseLength(read, 3));
+        assertEquals(8, ModbusFrameUtils.expectedResponseLength(HexCodec.decode("01 05 00 00 FF 00"), 2));
+        assertEquals(5, ModbusFrameUtils.expectedResponseLength(HexCodec.decode("01 83 02"), 2));
+        assertEquals(ModbusFrameUtils.UNKNOWN_LENGTH, ModbusFrameUtils.expectedResponseLength(HexCodec.decode("01 2B 0E"), 3));
+    }
+
+    @Test
+    void frameCompleteByLengthOrCrc() {
+        byte[] response = HexCodec.decode("01 03 04 00 FD 00 01 00 00");
+        int crc = ModbusFrameUtils.crc16(response, 0, 7);
+        response[7] = (byte) crc;
+        response[8] = (byte) (crc >> 8);
+        assertFalse(ModbusFrameUtils.isFrameComplete(response, 8));
+        assertTrue(ModbusFrameUtils.isFrameComplete(response, 9));
+
+        // 非标准功能码按CRC判断
+        byte[] custom = new byte[]{0x01, 0x41, 0x10, 0, 0};
+        int customCrc = ModbusFrameUtils.crc16(custom, 0, 3);
+        custom[3] = (byte) customCrc;
+        custom[4] = (byte) (customCrc >> 8);
+        assertFalse(ModbusFrameUtils.isFrameComplete(custom, 4));
+        assertTrue(ModbusFrameUtils.isFrameComplete(custom, 5));
+    }
+}
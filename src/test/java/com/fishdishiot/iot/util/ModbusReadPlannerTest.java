@@ -0,0 +1,79 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModbusReadPlannerTest {
+
+    private static ModbusReadPlanner.Member member(long deviceId, int slave, int start, int quantity) {
+        return new ModbusReadPlanner.Member(deviceId, ModbusRequest.readHoldingRegisters(slave, start, quantity));
+    }
+
+    @Test
+    void mergesAdjacentRangesOnSameSlave() {
+        ModbusReadPlanner.Member ph = member(1, 1, 0, 2);
+        ModbusReadPlanner.Member temp = member(2, 1, 3, 1);
+        List<ModbusReadPlanner.ReadPlan> plans = ModbusReadPlanner.plan(Arrays.asList(temp, ph), 1);
+        assertEquals(1, plans.size());
+        ModbusReadPlanner.ReadPlan plan = plans.get(0);
+        assertTrue(plan.isCoalesced());
+        assertEquals(0, plan.getRequest().getStartAddress());
+        assertEquals(4, plan.getRequest().getQuantityOrValue());
+        assertEquals(Arrays.asList(ph, temp), plan.getMembers());
+    }
+
+    @Test
+    void keepsDistantOrDifferentSlavesApart() {
+        List<ModbusReadPlanner.ReadPlan> plans = ModbusReadPlanner.plan(Arrays.asList(
+                member(1, 1, 0, 2), member(2, 1, 10, 2), member(3, 2, 2, 2)), 1);
+        assertEquals(3, plans.size());
+        for (ModbusReadPlanner.ReadPlan plan : plans) {
+            assertFalse(plan.isCoalesced());
+        }
+    }
+
+    @Test
+    void negativeGapDisablesMerging() {
+        ModbusReadPlanner.Member a = member(1, 1, 0, 2);
+        List<ModbusReadPlanner.ReadPlan> plans = ModbusReadPlanner.plan(Arrays.asList(a, member(2, 1, 2, 2)), -1);
+        assertEquals(2, plans.size());
+        // 单独读取时发送设备原始配置的指令帧
+        assertSame(a.getRequest(), plans.get(0).getRequest());
+    }
+
+    @Test
+    void mergedReadNeverExceedsRegisterLimit() {
+        List<ModbusReadPlanner.ReadPlan> plans = ModbusReadPlanner.plan(Arrays.asList(
+                member(1, 1, 0, 100), member(2, 1, 100, 20), member(3, 1, 120, 10)), 0);
+        assertEquals(2, plans.size());
+        assertEquals(120, plans.get(0).getRequest().getQuantityOrValue());
+        assertEquals(120, plans.get(1).getRequest().getStartAddress());
+    }
+
+    @Test
+    void splitsCoalescedResponse() {
+        ModbusReadPlanner.Member ph = member(1, 1, 0, 2);
+        ModbusReadPlanner.Member temp = member(2, 1, 3, 1);
+        ModbusReadPlanner.ReadPlan plan = ModbusReadPlanner.plan(Arrays.asList(ph, temp), 1).get(0);
+        ModbusResponse merged = ModbusRequestTest.response("01 03 08 00 01 00 02 00 03 00 FD");
+
+        ModbusResponse phResponse = plan.split(merged, ph);
+        assertTrue(ph.getRequest().matches(phResponse));
+        assertEquals(2, phResponse.getRegisterCount());
+        assertEquals(2, phResponse.getRegister(1));
+
+        ModbusResponse tempResponse = plan.split(merged, temp);
+        assertTrue(temp.getRequest().matches(tempResponse));
+        assertEquals(253, tempResponse.getRegister(0));
+        // 拆出的帧与设备单独读取时的响应完全一致
+        assertArrayEquals(ModbusRequestTest.response("01 03 02 00 FD").getFrame(), tempResponse.getFrame());
+    }
+}
@@ -0,0 +1,109 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModbusRequestTest {
+
+    @Test
+    void buildsReadRequestWithCrc() {
+        ModbusRequest request = ModbusRequest.readHoldingRegisters(1, 0, 2);
+        assertArrayEquals(new byte[]{0x01, 0x03, 0x00, 0x00, 0x00, 0x02, (byte) 0xC4, 0x0B}, request.getFrame());
+        assertEquals(1, request.getSlaveAddress());
+        assertEquals(2, request.getQuantityOrValue());
+        assertFalse(request.isStandardWrite());
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.readHoldingRegisters(1, 0, 126));
+    }
+
+    @Test
+    void fromFrameValidatesCrc() {
+        byte[] frame = ModbusRequest.readHoldingRegisters(1, 0, 2).getFrame().clone();
+        assertEquals(2, ModbusRequest.fromFrame(frame).getQuantityOrValue());
+        frame[7]++;
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.fromFrame(frame));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.fromFrame(new byte[]{0x01, 0x03}));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.fromFrame(null));
+    }
+
+    @Test
+    void fromHexValidatesCrc() {
+        assertArrayEquals(ModbusRequest.readHoldingRegisters(1, 0, 2).getFrame(),
+                ModbusRequest.fromHex("01 03 00 00 00 02 C4 0B").getFrame());
+        assertEquals("01 03 00 00 00 02 C4 0B", ModbusRequest.fromHex("010300000002c40b").toString());
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.fromHex("01 03 00 00 00 02 C4 0C"));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.fromHex("01 03"));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.fromHex(null));
+    }
+
+    @Test
+    void rawAcceptsNonStandardFrames() {
+        ModbusRequest relay = ModbusRequest.raw("A0 01 01 A2");
+        assertTrue(relay.isRaw());
+        assertFalse(relay.isStandardWrite());
+        assertFalse(relay.isRegisterRead());
+        assertEquals("A0 01 01 A2", relay.toString());
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.raw(" "));
+        assertThrows(IllegalArgumentException.class, () -> ModbusRequest.raw("A0 0"));
+    }
+
+    @Test
+    void rawWithValidCrcIsStandard() {
+        String coil = ModbusRequest.writeSingleCoil(2, 0, true).toString();
+        ModbusRequest request = ModbusRequest.raw(coil);
+        assertFalse(request.isRaw());
+        assertTrue(request.isStandardWrite());
+    }
+
+    @Test
+    void matchesReadResponseByByteCount() {
+        ModbusRequest request = ModbusRequest.readHoldingRegisters(1, 0, 2);
+        assertTrue(request.matches(response("01 03 04 00 FD 00 01")));
+        assertFalse(request.matches(response("01 03 02 00 FD")));
+        assertFalse(request.matches(response("02 03 04 00 FD 00 01")));
+        assertFalse(request.matches(response("01 04 04 00 FD 00 01")));
+    }
+
+    @Test
+    void matchesExceptionForSameFunction() {
+        ModbusRequest request = ModbusRequest.readHoldingRegisters(1, 0, 2);
+        assertTrue(request.matches(response("01 83 02")));
+        assertFalse(request.matches(response("01 84 02")));
+    }
+
+    @Test
+    void matchesWriteEcho() {
+        ModbusRequest on = ModbusRequest.writeSingleCoil(1, 3, true);
+        assertTrue(on.matches(ModbusResponse.parse(on.getFrame().clone())));
+        assertFalse(on.matches(ModbusResponse.parse(ModbusRequest.writeSingleCoil(1, 3, false).getFrame())));
+    }
+
+    @Test
+    void parseRejectsBadLengthOrCrc() {
+        byte[] frame = response("01 03 04 00 FD 00 01").getFrame().clone();
+        assertEquals(253, ModbusResponse.parse(frame).getRegister(0));
+        frame[8]++;
+        assertNull(ModbusResponse.parse(frame));
+        assertNull(ModbusResponse.parse(new byte[]{0x01, 0x03, 0x04, 0x00, 0x00}));
+    }
+
+    /** 按16进制文本拼出一帧带CRC的响应 */
+    static ModbusResponse response(String hexWithoutCrc) {
+        byte[] body = HexCodec.decode(hexWithoutCrc);
+        byte[] frame = new byte[body.length + 2];
+        System.arraycopy(body, 0, frame, 0, body.length);
+        int crc = ModbusFrameUtils.crc16(frame, 0, body.length);
+        frame[body.length] = (byte) crc;
+        frame[body.length + 1] = (byte) (crc >> 8);
+        ModbusResponse response = ModbusResponse.parse(frame);
+        if (response == null) {
+            throw new IllegalArgumentException("不是有效的响应帧: " + hexWithoutCrc);
+        }
+        return response;
+    }
+}
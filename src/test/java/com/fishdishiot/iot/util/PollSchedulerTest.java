@@ -0,0 +1,72 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PollSchedulerTest {
+
+    private final PollScheduler scheduler = new PollScheduler();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void dispatchesRepeatedly() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(3);
+        scheduler.schedule(1L, 10, 0, latch::countDown);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(scheduler.contains(1L));
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    void cancelStopsDispatching() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule(1L, 50, 50, runs::incrementAndGet);
+        assertTrue(scheduler.cancel(1L));
+        assertFalse(scheduler.cancel(1L));
+        Thread.sleep(150);
+        assertEquals(0, runs.get());
+        assertEquals(0, scheduler.size());
+        assertFalse(scheduler.setInterval(1L, 10));
+    }
+
+    @Test
+    void rescheduleReplacesPlan() throws InterruptedException {
+        AtomicInteger old = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(1L, 50, 50, old::incrementAndGet);
+        scheduler.schedule(1L, 50, 0, latch::countDown);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, old.get());
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    void shorterIntervalPullsNextDueForward() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(1L, 60_000, 60_000, latch::countDown);
+        assertTrue(scheduler.setInterval(1L, 10));
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void phaseDelayStaysWithinInterval() {
+        for (long key = -5; key < 200; key++) {
+            long delay = PollScheduler.phaseDelayMs(key, 1000);
+            assertTrue(delay >= 0 && delay < 1000, "key " + key + " -> " + delay);
+        }
+        assertEquals(0, PollScheduler.phaseDelayMs(1, 0));
+    }
+}
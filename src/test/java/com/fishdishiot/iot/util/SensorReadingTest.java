@@ -0,0 +1,51 @@
+package com.fishdishiot.iot.util;
+
+import com.fishdishiot.iot.domain.AgricultureDevice;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorReadingTest {
+
+    private static SensorReading reading() {
+        AgricultureDevice device = new AgricultureDevice();
+        device.setId(1L);
+        SensorReading reading = new SensorReading();
+        reading.reset(device, 0, null, null);
+        return reading;
+    }
+
+    @Test
+    void getReturnsDefaultForMissingParam() {
+        SensorReading reading = reading();
+        reading.set(SensorReadingConverter.PH_VALUE, 7.2);
+        assertEquals(7.2, reading.get(SensorReadingConverter.PH_VALUE, null));
+        assertNull(reading.get(SensorReadingConverter.WATER_TEMPERATURE, null));
+        assertEquals(0.0, reading.get(SensorReadingConverter.WATER_TEMPERATURE, 0.0));
+    }
+
+    @Test
+    void resetClearsValues() {
+        SensorReading reading = reading();
+        reading.set(SensorReadingConverter.PH_VALUE, 7.2);
+        reading.reset(reading.getDevice(), 1, null, null);
+        assertFalse(reading.isValid(SensorReadingConverter.PH_VALUE));
+        assertTrue(reading.isEmpty());
+    }
+
+    @Test
+    void filledValuesAreNotMeasured() {
+        SensorReading reading = reading();
+        reading.set(SensorReadingConverter.PH_VALUE, 7.2);
+        reading.fill(SensorReadingConverter.DISSOLVED_OXYGEN, 4.0);
+        assertTrue(reading.isMeasured(SensorReadingConverter.PH_VALUE));
+        assertTrue(reading.isNumeric(SensorReadingConverter.DISSOLVED_OXYGEN));
+        assertFalse(reading.isMeasured(SensorReadingConverter.DISSOLVED_OXYGEN));
+        // 解码器随后写入的测量值覆盖补充值
+        reading.set(SensorReadingConverter.DISSOLVED_OXYGEN, 6.0);
+        assertTrue(reading.isMeasured(SensorReadingConverter.DISSOLVED_OXYGEN));
+    }
+}
@@ -0,0 +1,125 @@
+package com.fishdishiot.iot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SerialTaskQueueTest {
+
+    private final List<String> log = new ArrayList<>();
+
+    private SerialTask task(SerialTaskPriority priority, Long deviceId, String name) {
+        return new SerialTask(priority, deviceId, priority.getDefaultDeadlineMs(), () -> log.add(name));
+    }
+
+    @Test
+    void takesHigherPriorityFirst() throws InterruptedException {
+        SerialTaskQueue queue = new SerialTaskQueue();
+        queue.offer(task(SerialTaskPriority.POLLING, 1L, "poll"));
+        queue.offer(task(SerialTaskPriority.AUTO_CONTROL, 2L, "auto"));
+        queue.offer(task(SerialTaskPriority.INTERACTIVE, 3L, "manual"));
+        for (int i = 0; i < 3; i++) {
+            queue.take().run();
+        }
+        assertEquals(List.of("manual", "auto", "poll"), log);
+    }
+
+    @Test
+    void coalescesPollsForSameDevice() throws InterruptedException {
+        SerialTaskQueue queue = new SerialTaskQueue();
+        assertEquals(SerialTaskQueue.OfferResult.ACCEPTED, queue.offer(task(SerialTaskPriority.POLLING, 1L, "first")));
+        assertEquals(SerialTaskQueue.OfferResult.ACCEPTED, queue.offer(task(SerialTaskPriority.POLLING, 2L, "other")));
+        assertEquals(SerialTaskQueue.OfferResult.COALESCED, queue.offer(task(SerialTaskPriority.POLLING, 1L, "second")));
+        assertEquals(2, queue.size());
+        queue.take().run();
+        queue.take().run();
+        // 合并后保留排队位置，执行新任务的内容
+        assertEquals(List.of("second", "other"), log);
+    }
+
+    @Test
+    void controlCommandsAreNotCoalesced() {
+        SerialTaskQueue queue = new SerialTaskQueue();
+        queue.offer(task(SerialTaskPriority.INTERACTIVE, 1L, "on"));
+        assertEquals(SerialTaskQueue.OfferResult.ACCEPTED, queue.offer(task(SerialTaskPriority.INTERACTIVE, 1L, "off")));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void fullPollingQueueDropsOldest() throws InterruptedException {
+        SerialTaskQueue queue = new SerialTaskQueue(capacity(SerialTaskPriority.POLLING, 2));
+        FutureTask<Void> oldest = new FutureTask<>(() -> log.add("1"), null);
+        queue.offer(new SerialTask(SerialTaskPriority.POLLING, 1L, 5000, oldest));
+        queue.offer(task(SerialTaskPriority.POLLING, 2L, "2"));
+        assertEquals(SerialTaskQueue.OfferResult.ACCEPTED_DROPPED_OLDEST, queue.offer(task(SerialTaskPriority.POLLING, 3L, "3")));
+        assertTrue(oldest.isCancelled());
+        queue.take().run();
+        queue.take().run();
+        assertEquals(List.of("2", "3"), log);
+        // 被挤掉的设备不再占用合并索引
+        assertEquals(SerialTaskQueue.OfferResult.ACCEPTED, queue.offer(task(SerialTaskPriority.POLLING, 1L, "1")));
+    }
+
+    @Test
+    void fullControlQueueRejects() {
+        SerialTaskQueue queue = new SerialTaskQueue(capacity(SerialTaskPriority.INTERACTIVE, 1));
+        queue.offer(task(SerialTaskPriority.INTERACTIVE, 1L, "a"));
+        assertEquals(SerialTaskQueue.OfferResult.REJECTED, queue.offer(task(SerialTaskPriority.INTERACTIVE, 2L, "b")));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void expiredPollsAreDroppedButControlsRun() throws InterruptedException {
+        SerialTaskQueue queue = new SerialTaskQueue();
+        FutureTask<Void> poll = new FutureTask<>(() -> log.add("poll"), null);
+        queue.offer(new SerialTask(SerialTaskPriority.POLLING, 1L, 0, poll));
+        queue.offer(new SerialTask(SerialTaskPriority.AUTO_CONTROL, 2L, 0, () -> log.add("auto")));
+        Thread.sleep(2);
+        queue.take().run();
+        assertEquals(0, queue.size());
+        assertTrue(poll.isCancelled());
+        assertEquals(List.of("auto"), log);
+        assertEquals(1L, queue.getStats().get("expiredDropped"));
+    }
+
+    @Test
+    void pollsAreNotStarvedByControls() throws InterruptedException {
+        SerialTaskQueue queue = new SerialTaskQueue();
+        queue.offer(task(SerialTaskPriority.POLLING, 1L, "poll"));
+        for (int i = 0; i < SerialTaskQueue.MAX_SKIPS + 2; i++) {
+            queue.offer(task(SerialTaskPriority.INTERACTIVE, null, "manual" + i));
+        }
+        int taken = 0;
+        while (!log.contains("poll")) {
+            queue.take().run();
+            taken++;
+        }
+        assertEquals(SerialTaskQueue.MAX_SKIPS + 1, taken);
+    }
+
+    @Test
+    void clearCancelsQueuedFutures() {
+        SerialTaskQueue queue = new SerialTaskQueue();
+        FutureTask<Void> manual = new FutureTask<>(() -> log.add("manual"), null);
+        queue.offer(new SerialTask(SerialTaskPriority.INTERACTIVE, 1L, 10_000, manual));
+        queue.offer(task(SerialTaskPriority.POLLING, 2L, "poll"));
+        assertEquals(2, queue.clear());
+        assertEquals(0, queue.size());
+        assertTrue(manual.isCancelled());
+        assertSame(SerialTaskQueue.OfferResult.ACCEPTED, queue.offer(task(SerialTaskPriority.POLLING, 2L, "poll")));
+    }
+
+    private static Map<SerialTaskPriority, Integer> capacity(SerialTaskPriority priority, int capacity) {
+        Map<SerialTaskPriority, Integer> capacities = new EnumMap<>(SerialTaskPriority.class);
+        capacities.put(priority, capacity);
+        return capacities;
+    }
+}